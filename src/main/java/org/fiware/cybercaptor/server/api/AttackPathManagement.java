@@ -22,7 +22,12 @@
 package org.fiware.cybercaptor.server.api;
 
 import org.fiware.cybercaptor.server.attackgraph.AttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.AttackGraphOverlay;
 import org.fiware.cybercaptor.server.attackgraph.AttackPath;
+import org.fiware.cybercaptor.server.attackgraph.AttackPathGenerationOptions;
+import org.fiware.cybercaptor.server.attackgraph.RiskPropagation;
+import org.fiware.cybercaptor.server.attackgraph.ScorableAttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.Vertex;
 import org.fiware.cybercaptor.server.database.Database;
 import org.fiware.cybercaptor.server.monitoring.Monitoring;
 import org.fiware.cybercaptor.server.properties.ProjectProperties;
@@ -46,10 +51,62 @@ public class AttackPathManagement {
      * @return the scores extracted from the attack graph in the information system
      */
     public static List<AttackPath> scoreAttackPaths(AttackGraph attackGraph, double previousMaxScore) {
+        return scoreAttackGraph(attackGraph, previousMaxScore);
+    }
+
+    /**
+     * Score a simulated attack graph
+     *
+     * @param simulatedAttackGraph the overlay of the simulated attack graph
+     * @param previousMaxScore     the previous maximum score
+     * @return the attack paths extracted from the simulated attack graph
+     */
+    public static List<AttackPath> scoreAttackPaths(AttackGraphOverlay simulatedAttackGraph, double previousMaxScore) {
+        return scoreAttackGraph(simulatedAttackGraph, previousMaxScore);
+    }
+
+    /**
+     * Score an attack graph with the scoring function, saving the attack graph and the scored attack paths in the
+     * output folder if the scoring debug output is enabled
+     *
+     * @param graphToScore     the attack graph or simulated attack graph to score
+     * @param previousMaxScore the previous maximum score
+     * @return the attack paths extracted from the attack graph, or null if the scoring failed
+     */
+    private static List<AttackPath> scoreAttackGraph(ScorableAttackGraph graphToScore, double previousMaxScore) {
+        try {
+            String scoredAttackPathsFilePath = null;
+            if (isScoringDebugOutputEnabled()) {
+                String outputFolderPath = ProjectProperties.getProperty("output-path");
+                graphToScore.saveToXmlFile(outputFolderPath + "/attack-graph-to-score.xml");
+                scoredAttackPathsFilePath = outputFolderPath + "/scored-attack-paths.xml";
+            }
+            return graphToScore.scoreAttackGraphAndGetAttackPaths(scoredAttackPathsFilePath, previousMaxScore);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the attack paths of an attack graph monitored after the initialization : all its attack paths scored by the
+     * scoring function, or if the property "attack-paths-best-number" of the project properties is set, only this number
+     * of attack paths with the highest scorings, found by a best-first search that does not enumerate the other ones.
+     * The global score of the attack graph is computed in both cases.
+     *
+     * @param attackGraph      the attack graph
+     * @param previousMaxScore the previous maximum score
+     * @return the attack paths to monitor
+     */
+    public static List<AttackPath> getAttackPathsToMonitor(AttackGraph attackGraph, double previousMaxScore) {
+        AttackPathGenerationOptions options = AttackPathGenerationOptions.fromProjectProperties();
+        if (options.getNumberOfBestAttackPaths() <= 0)
+            return scoreAttackPaths(attackGraph, previousMaxScore);
         try {
-            String outputFolderPath = ProjectProperties.getProperty("output-path");
-            attackGraph.saveToXmlFile(outputFolderPath + "/attack-graph-to-score.xml");
-            return attackGraph.scoreAttackGraphAndGetAttackPaths(outputFolderPath + "/scored-attack-paths.xml", previousMaxScore);
+            attackGraph.computeGlobalScore(previousMaxScore);
+            return attackGraph.generateAttackPaths(options);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -58,16 +115,35 @@ public class AttackPathManagement {
         return null;
     }
 
+    /**
+     * @return true if the property "scoring-debug-output" of the project properties is "true" : the attack graph
+     * given to the scoring function and the scored attack paths are then saved in XML files of the output folder
+     */
+    private static boolean isScoringDebugOutputEnabled() {
+        return Boolean.parseBoolean(ProjectProperties.getProperty("scoring-debug-output"));
+    }
+
     /**
      * @param monitoring a monitoring object
      * @return the XML element related to all the attack paths contained in the monitoring object
      */
     public static Element getAttackPathsXML(Monitoring monitoring) {
+        return getAttackPathsXML(monitoring, 0);
+    }
+
+    /**
+     * @param monitoring a monitoring object
+     * @param limit      the maximum number of attack paths to return (0 for all the attack paths)
+     * @return the XML element related to the first attack paths contained in the monitoring object
+     */
+    public static Element getAttackPathsXML(Monitoring monitoring, int limit) {
         if (monitoring == null)
             return null;
         List<AttackPath> attackPaths = monitoring.getAttackPathList();
         Element root = new Element("attack_paths");
         for (AttackPath attackPath : attackPaths) {
+            if (limit > 0 && root.getContentSize() >= limit)
+                break;
             Element element = attackPath.toDomXMLElement();
             root.addContent(element);
         }
@@ -75,6 +151,29 @@ public class AttackPathManagement {
         return root;
     }
 
+    /**
+     * @param monitoring              a monitoring object
+     * @param numberOfBestAttackPaths the number of attack paths to return
+     * @return the XML element related to the attack paths of the attack graph of the monitoring object with the
+     * highest scorings, found by a best-first search that does not enumerate the other attack paths
+     */
+    public static Element getBestAttackPathsXML(Monitoring monitoring, int numberOfBestAttackPaths) {
+        if (monitoring == null || monitoring.getAttackGraph() == null)
+            return null;
+        AttackPathGenerationOptions options = AttackPathGenerationOptions.fromProjectProperties();
+        options.setBestAttackPaths(numberOfBestAttackPaths, false);
+        Element root = new Element("attack_paths");
+        try {
+            for (AttackPath attackPath : monitoring.getAttackGraph().generateAttackPaths(options)) {
+                root.addContent(attackPath.toDomXMLElement());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return root;
+    }
+
     /**
      * @param monitoring a monitoring object
      * @param id         the id of the attack path to print
@@ -130,6 +229,43 @@ public class AttackPathManagement {
         throw new IllegalStateException("This attack path can not be found.");
     }
 
+    /**
+     * @param monitoring a monitoring object
+     * @param command    a Datalog command, or null to accept all the commands
+     * @param host       a host name or IP address, or null to accept all the hosts
+     * @param cve        a CVE identifier, or null to accept all the CVEs
+     * @return the XML element related to the vertices of the attack graph matching all the non null criteria
+     */
+    public static Element getAttackGraphVerticesXML(Monitoring monitoring, String command, String host, String cve) {
+        if (monitoring == null)
+            return null;
+        Element root = new Element("vertices");
+        for (Vertex vertex : monitoring.getAttackGraph().getVertices(command, host, cve)) {
+            root.addContent(AttackGraph.vertexToDomElement(vertex));
+        }
+        return root;
+    }
+
+    /**
+     * @param monitoring a monitoring object
+     * @return the XML element related to the vertices of the attack graph, with their probability of compromise
+     */
+    public static Element getAttackGraphRiskXML(Monitoring monitoring) {
+        if (monitoring == null)
+            return null;
+        AttackGraph attackGraph = monitoring.getAttackGraph();
+        RiskPropagation riskPropagation = attackGraph.getRiskPropagation();
+        Element root = new Element("vertices");
+        for (Vertex vertex : attackGraph.getVertices(null, null, null)) {
+            Element vertexElement = AttackGraph.vertexToDomElement(vertex);
+            Element probabilityElement = new Element("probability");
+            probabilityElement.setText(riskPropagation.getProbability(vertex) + "");
+            vertexElement.addContent(probabilityElement);
+            root.addContent(vertexElement);
+        }
+        return root;
+    }
+
     /**
      * @param monitoring a monitoring object
      * @param id         the id of the attack path to remediate
@@ -0,0 +1,221 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Adjacency index of the arcs of an attack graph.
+ * Gives the parents and the children of a vertex in O(degree) and the arc between two vertices in O(1).
+ * The index only reads the arc list it has been built on : the arcs keep their order, the duplicated arcs
+ * (same source and destination) included, and a deleted arc is removed without moving the other arcs.
+ */
+class AdjacencyIndex {
+    /**
+     * The arc list of the attack graph, kept in sync with the index
+     */
+    private final List<Arc> arcs;
+
+    /**
+     * The modification count of the arc list after the last modification made through this index
+     */
+    private int arcsModificationCount;
+
+    /**
+     * The arcs arriving to a vertex, in the order of the arc list : destination id -> arcs
+     */
+    private final HashMap<Integer, List<Arc>> incomingArcs = new HashMap<Integer, List<Arc>>();
+
+    /**
+     * The arcs leaving a vertex, in the order of the arc list : source id -> arcs
+     */
+    private final HashMap<Integer, List<Arc>> outgoingArcs = new HashMap<Integer, List<Arc>>();
+
+    /**
+     * The first arc of the arc list between two vertices, by (source, destination) key
+     */
+    private final HashMap<Long, Arc> firstArcs = new HashMap<Long, Arc>();
+
+    /**
+     * Build the index of an arc list, without modifying it
+     *
+     * @param arcs the arc list of the attack graph
+     */
+    AdjacencyIndex(List<Arc> arcs) {
+        this.arcs = arcs;
+        for (Arc arc : arcs) {
+            index(arc);
+        }
+        this.arcsModificationCount = getModificationCount(arcs);
+    }
+
+    /**
+     * @param source      the source vertex id
+     * @param destination the destination vertex id
+     * @return the key of the arc (source, destination)
+     */
+    private static long key(int source, int destination) {
+        return ((long) source << 32) | (destination & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param arcs an arc list
+     * @return the modification count of the list, or -1 if the list does not count its modifications
+     */
+    private static int getModificationCount(List<Arc> arcs) {
+        if (arcs instanceof ArcList)
+            return ((ArcList) arcs).getModificationCount();
+        return -1;
+    }
+
+    /**
+     * @param arcs the current arc list of the attack graph
+     * @return true if this index has been built on this list and the list has not been modified since,
+     * except through this index. Always false for a list that does not count its modifications.
+     */
+    boolean isUpToDateWith(List<Arc> arcs) {
+        return this.arcs == arcs && arcs instanceof ArcList
+                && this.arcsModificationCount == ((ArcList) arcs).getModificationCount();
+    }
+
+    /**
+     * Add an arc at the end of the arc list, if there is not already an arc between the same vertices
+     *
+     * @param arc the arc to add
+     * @return true if the arc has been added
+     */
+    boolean add(Arc arc) {
+        if (firstArcs.containsKey(key(arc.source.id, arc.destination.id)))
+            return false;
+        append(arc);
+        return true;
+    }
+
+    /**
+     * Add an arc at the end of the arc list, even if there is already an arc between the same vertices
+     *
+     * @param arc the arc to add
+     */
+    void append(Arc arc) {
+        arcs.add(arc);
+        index(arc);
+        arcsModificationCount = getModificationCount(arcs);
+    }
+
+    /**
+     * Delete all the arcs between two vertices. The other arcs keep their order in the arc list.
+     *
+     * @param source      the source vertex id
+     * @param destination the destination vertex id
+     * @return the first deleted arc or null if there was no such arc
+     */
+    Arc remove(int source, int destination) {
+        Arc removed = firstArcs.remove(key(source, destination));
+        if (removed == null)
+            return null;
+        int size = 0;
+        for (int i = 0; i < arcs.size(); i++) {
+            Arc arc = arcs.get(i);
+            if (arc.source.id != source || arc.destination.id != destination) {
+                if (size != i)
+                    arcs.set(size, arc);
+                size++;
+            }
+        }
+        arcs.subList(size, arcs.size()).clear();
+        removeArcsTo(outgoingArcs.get(source), destination, false);
+        removeArcsTo(incomingArcs.get(destination), source, true);
+        arcsModificationCount = getModificationCount(arcs);
+        return removed;
+    }
+
+    /**
+     * @param source      the source vertex id
+     * @param destination the destination vertex id
+     * @return the first arc between the two vertices or null
+     */
+    Arc get(int source, int destination) {
+        return firstArcs.get(key(source, destination));
+    }
+
+    /**
+     * @param vertexId the vertex id
+     * @return the arcs arriving to this vertex, in the order of the arc list
+     */
+    Collection<Arc> getIncomingArcs(int vertexId) {
+        List<Arc> result = incomingArcs.get(vertexId);
+        if (result == null)
+            return Collections.emptyList();
+        return result;
+    }
+
+    /**
+     * @param vertexId the vertex id
+     * @return the arcs leaving this vertex, in the order of the arc list
+     */
+    Collection<Arc> getOutgoingArcs(int vertexId) {
+        List<Arc> result = outgoingArcs.get(vertexId);
+        if (result == null)
+            return Collections.emptyList();
+        return result;
+    }
+
+    /**
+     * Add an arc of the arc list to the index
+     *
+     * @param arc the arc
+     */
+    private void index(Arc arc) {
+        long key = key(arc.source.id, arc.destination.id);
+        if (!firstArcs.containsKey(key))
+            firstArcs.put(key, arc);
+        getOrCreate(outgoingArcs, arc.source.id).add(arc);
+        getOrCreate(incomingArcs, arc.destination.id).add(arc);
+    }
+
+    /**
+     * Remove from the arcs of a vertex the arcs coming from or going to another vertex
+     *
+     * @param vertexArcs the arcs arriving to or leaving a vertex
+     * @param otherId    the id of the other vertex
+     * @param incoming   true if the arcs arrive to the vertex (the other vertex is their source)
+     */
+    private static void removeArcsTo(List<Arc> vertexArcs, int otherId, boolean incoming) {
+        for (int i = vertexArcs.size() - 1; i >= 0; i--) {
+            Arc arc = vertexArcs.get(i);
+            if ((incoming ? arc.source.id : arc.destination.id) == otherId)
+                vertexArcs.remove(i);
+        }
+    }
+
+    private static List<Arc> getOrCreate(HashMap<Integer, List<Arc>> map, int vertexId) {
+        List<Arc> result = map.get(vertexId);
+        if (result == null) {
+            result = new ArrayList<Arc>();
+            map.put(vertexId, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * The arc list of an attack graph. It counts all its modifications, including the replacements of an arc by
+ * another one, so that the adjacency index of the attack graph detects the modifications made directly on the list
+ * even when they do not change its size.
+ */
+class ArcList extends ArrayList<Arc> {
+
+    /**
+     * Create an empty arc list
+     */
+    ArcList() {
+        super();
+    }
+
+    /**
+     * Create an arc list containing the arcs of a collection
+     *
+     * @param arcs the initial arcs
+     */
+    ArcList(Collection<Arc> arcs) {
+        super(arcs);
+    }
+
+    /**
+     * @return the number of modifications of the list (additions, removals and replacements of arcs)
+     */
+    int getModificationCount() {
+        return modCount;
+    }
+
+    @Override
+    public Arc set(int index, Arc arc) {
+        modCount++;
+        return super.set(index, arc);
+    }
+}
@@ -21,8 +21,11 @@
 package org.fiware.cybercaptor.server.attackgraph;
 
 import org.fiware.cybercaptor.server.attackgraph.Vertex.VertexType;
+import org.fiware.cybercaptor.server.attackgraph.compact.CompactAttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.compact.EpochMarks;
+import org.fiware.cybercaptor.server.attackgraph.compact.ReachabilityIndex;
 import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand;
-import org.fiware.cybercaptor.server.attackgraph.fact.Fact;
+import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand.CommandType;
 import org.fiware.cybercaptor.server.attackgraph.fact.Fact.FactType;
 import org.fiware.cybercaptor.server.informationsystem.InformationSystem;
 import org.fiware.cybercaptor.server.informationsystem.InformationSystemHost;
@@ -37,30 +40,100 @@ import org.jdom2.output.XMLOutputter;
 
 import java.io.FileOutputStream;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Class to represent an attack graph
  *
  * @author Francois-Xavier Aguessy
  */
-public class AttackGraph implements Cloneable {
+public class AttackGraph implements Cloneable, ScorableAttackGraph {
     /**
      * A list of vertices
      */
-    public HashMap<Integer, Vertex> vertices = new HashMap<Integer, Vertex>();
+    public HashMap<Integer, Vertex> vertices = new VertexMap();
 
     /**
-     * A list of arcs between the vertices
+     * A list of arcs between the vertices. addArc adds at most one arc between two vertices, but the arcs read
+     * from a file are kept as they are, duplicates included : they count in the degrees given to the scoring function.
      */
-    public ArrayList<Arc> arcs = new ArrayList<Arc>();
+    public ArrayList<Arc> arcs = new ArcList();
 
     /**
      * The global score of the attack graph
      */
     public double globalScore = 0;
 
+    /**
+     * The index of the parents and children of the vertices, built on demand from the arcs
+     */
+    private AdjacencyIndex adjacencyIndex = null;
+
+    /**
+     * The number of modifications of the vertices and arcs made through the methods of the attack graph
+     */
+    private int modificationCount = 0;
+
+    /**
+     * The last compact snapshot of the attack graph
+     */
+    private CompactAttackGraph compactAttackGraph = null;
+
+    /**
+     * The modification count at the creation of the compact snapshot
+     */
+    private int compactAttackGraphModificationCount = -1;
+
+    /**
+     * The adjacency index at the creation of the compact snapshot, replaced if the arc list is modified directly
+     */
+    private AdjacencyIndex compactAttackGraphAdjacencyIndex = null;
+
+    /**
+     * The smallest prerequisite leaves of the vertices of the last compact snapshot, computed on demand
+     */
+    private MinimumPrerequisites minimumPrerequisites = null;
+
+    /**
+     * The probabilities of compromise of the vertices of the last compact snapshot, computed on demand
+     */
+    private RiskPropagation riskPropagation = null;
+
+    /**
+     * The last fingerprint of the vertices and arcs of the attack graph
+     */
+    private AttackPathFingerprint fingerprint = null;
+
+    /**
+     * The modification count and the number of vertices at the computation of the fingerprint
+     */
+    private int fingerprintModificationCount = -1;
+    private int fingerprintNumberOfVertices = -1;
+    private AdjacencyIndex fingerprintAdjacencyIndex = null;
+
+    /**
+     * The number of duplicate attack paths removed by the last generation of the attack paths
+     */
+    private int numberOfDuplicateAttackPaths = 0;
+
+    /**
+     * The index of the vertices by Datalog command, host and CVE, built on demand from the vertices
+     */
+    private VertexIndex vertexIndex = null;
+
+    /**
+     * The reachability index of the last compact snapshot, built on demand
+     */
+    private ReachabilityIndex reachabilityIndex = null;
+
     /**
      * Check if a vertex exists, if it doesn't, creates a new one
      *
@@ -68,18 +141,233 @@ public class AttackGraph implements Cloneable {
      * @return a vertex of identifier id_vertex
      */
     public Vertex getExistingOrCreateVertex(int id_vertex) {
+        materialize();
         Vertex result = vertices.get(id_vertex);
         if (result == null) {
             result = new Vertex(id_vertex);
             vertices.put(id_vertex, result);
+            modificationCount++;
+            vertexIndex = null; //the fact of the new vertex is not known yet
+        }
+        return result;
+    }
+
+    /**
+     * Compute the vertices and the arcs of the attack graph, if they are computed lazily.
+     * The public methods reading the vertices or the arcs call this method first, the code accessing directly
+     * the vertices and arcs fields should call it too.
+     */
+    public void materialize() {
+    }
+
+    /**
+     * @return the adjacency index of the arcs, (re)built if the arc list has been modified without using the
+     * methods of the attack graph. An arc list that is not an ArcList does not count its modifications : its index
+     * is built again on each call, and not kept.
+     */
+    private AdjacencyIndex getAdjacencyIndex() {
+        materialize();
+        if (!(this.arcs instanceof ArcList))
+            return new AdjacencyIndex(this.arcs);
+        if (adjacencyIndex == null || !adjacencyIndex.isUpToDateWith(this.arcs))
+            adjacencyIndex = new AdjacencyIndex(this.arcs);
+        return adjacencyIndex;
+    }
+
+    /**
+     * @return the index of the vertices by command, host and CVE, (re)built if the vertex map has been modified
+     * without using the methods of the attack graph or if the fact of a vertex has been reassigned
+     */
+    private VertexIndex getVertexIndex() {
+        materialize();
+        if (vertexIndex == null || !vertexIndex.isUpToDateWith(this.vertices)) {
+            if (!(this.vertices instanceof VertexMap))
+                this.vertices = new VertexMap(this.vertices);
+            vertexIndex = new VertexIndex((VertexMap) this.vertices);
+        }
+        return vertexIndex;
+    }
+
+    /**
+     * @param command a Datalog command (ex "execCode", "hacl", ...)
+     * @return the vertices whose fact has this command, sorted by increasing id
+     */
+    public List<Vertex> getVerticesByCommand(String command) {
+        return new ArrayList<Vertex>(getVertexIndex().getByCommand(command));
+    }
+
+    /**
+     * @param host a host name or IP address, as written in the facts
+     * @return the vertices whose fact concerns this host, sorted by increasing id
+     */
+    public List<Vertex> getVerticesByHost(String host) {
+        return new ArrayList<Vertex>(getVertexIndex().getByHost(host));
+    }
+
+    /**
+     * @param cve a CVE identifier
+     * @return the vertices whose fact (vulExists, cvss) or related vulnerability concerns this CVE,
+     * sorted by increasing id
+     */
+    public List<Vertex> getVerticesByCve(String cve) {
+        return new ArrayList<Vertex>(getVertexIndex().getByCve(cve));
+    }
+
+    /**
+     * @param command a Datalog command, or null to accept all the commands
+     * @param host    a host name or IP address, or null to accept all the hosts
+     * @param cve     a CVE identifier, or null to accept all the CVEs
+     * @return the vertices matching all the non null criteria, sorted by increasing id
+     */
+    public List<Vertex> getVertices(String command, String host, String cve) {
+        return getVertexIndex().get(command, host, cve);
+    }
+
+    /**
+     * Add an arc to the attack graph, if there is not already an arc between the same vertices
+     *
+     * @param arc the arc to add
+     * @return true if the arc has been added
+     */
+    public boolean addArc(Arc arc) {
+        if (getAdjacencyIndex().add(arc)) {
+            modificationCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add an arc at the end of the arc list, even if there is already an arc between the same vertices,
+     * to keep the arcs of a file or of another attack graph as they are
+     *
+     * @param arc the arc to add
+     */
+    void appendArc(Arc arc) {
+        getAdjacencyIndex().append(arc);
+        modificationCount++;
+    }
+
+    /**
+     * @param fromVertex the source vertex
+     * @param toVertex   the destination vertex
+     * @return the first arc from fromVertex to toVertex or null if it does not exist
+     */
+    public Arc getArc(Vertex fromVertex, Vertex toVertex) {
+        return getAdjacencyIndex().get(fromVertex.id, toVertex.id);
+    }
+
+    /**
+     * @param vertex a vertex of the attack graph
+     * @return the sources of the arcs arriving to this vertex
+     */
+    public List<Vertex> getParents(Vertex vertex) {
+        Collection<Arc> incomingArcs = getAdjacencyIndex().getIncomingArcs(vertex.id);
+        List<Vertex> result = new ArrayList<Vertex>(incomingArcs.size());
+        for (Arc arc : incomingArcs) {
+            result.add(arc.source);
         }
         return result;
     }
 
+    /**
+     * @param vertex a vertex of the attack graph
+     * @return the destinations of the arcs leaving this vertex
+     */
+    public List<Vertex> getChildren(Vertex vertex) {
+        Collection<Arc> outgoingArcs = getAdjacencyIndex().getOutgoingArcs(vertex.id);
+        List<Vertex> result = new ArrayList<Vertex>(outgoingArcs.size());
+        for (Arc arc : outgoingArcs) {
+            result.add(arc.destination);
+        }
+        return result;
+    }
+
+    /**
+     * Get a compact snapshot of the attack graph, for the analytics that only read it.
+     * The snapshot is cached until the attack graph is modified.
+     *
+     * @return the compact snapshot of the current attack graph
+     */
+    public CompactAttackGraph getCompactAttackGraph() {
+        AdjacencyIndex index = getAdjacencyIndex(); //a new index after the direct modifications of the arc list
+        if (compactAttackGraph == null || compactAttackGraphModificationCount != modificationCount
+                || compactAttackGraphAdjacencyIndex != index
+                || compactAttackGraph.getNumberOfVertices() != vertices.size()) {
+            compactAttackGraph = new CompactAttackGraph(this);
+            compactAttackGraphModificationCount = modificationCount;
+            compactAttackGraphAdjacencyIndex = index;
+        }
+        return compactAttackGraph;
+    }
+
+    /**
+     * Get the probabilities of compromise of all the vertices of the attack graph, the leaf probabilities being taken
+     * from CVSS and the cycles handled as configured in the project properties. They are computed on the first call
+     * and computed again after a modification of the attack graph.
+     *
+     * @return the risk propagation of the current attack graph
+     */
+    public RiskPropagation getRiskPropagation() {
+        CompactAttackGraph compact = getCompactAttackGraph();
+        RiskPropagation.CycleHandling cycleHandling = RiskPropagation.getConfiguredCycleHandling();
+        if (riskPropagation == null || riskPropagation.getCompactAttackGraph() != compact
+                || riskPropagation.getCycleHandling() != cycleHandling)
+            riskPropagation = new RiskPropagation(this, RiskPropagation.CVSS, cycleHandling);
+        return riskPropagation;
+    }
+
+    /**
+     * Get the fingerprint of the vertices and arcs of the attack graph. The fingerprint is cached until the attack
+     * graph is modified.
+     *
+     * @return the fingerprint of the current attack graph
+     */
+    public AttackPathFingerprint getFingerprint() {
+        AdjacencyIndex index = getAdjacencyIndex(); //a new index after the direct modifications of the arc list
+        if (fingerprint == null || fingerprintModificationCount != modificationCount
+                || fingerprintAdjacencyIndex != index || fingerprintNumberOfVertices != vertices.size()) {
+            fingerprint = AttackPathFingerprint.of(this);
+            fingerprintModificationCount = modificationCount;
+            fingerprintNumberOfVertices = vertices.size();
+            fingerprintAdjacencyIndex = index;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Get the reachability index of the attack graph, telling in O(1) whether a vertex can contribute to another.
+     * The index is built on the first call and rebuilt after a modification of the attack graph (for example
+     * a deletion of vertices).
+     *
+     * @return the reachability index of the current attack graph
+     */
+    public ReachabilityIndex getReachabilityIndex() {
+        CompactAttackGraph compact = getCompactAttackGraph();
+        if (reachabilityIndex == null || reachabilityIndex.getCompactAttackGraph() != compact)
+            reachabilityIndex = new ReachabilityIndex(compact);
+        return reachabilityIndex;
+    }
+
+    /**
+     * @param vertex a vertex of the attack graph
+     * @param goal   another vertex of the attack graph
+     * @return true if there is a path of arcs from the vertex to the goal, so that the vertex can contribute to it
+     * (true if they are the same vertex)
+     */
+    public boolean canContributeTo(Vertex vertex, Vertex goal) {
+        ReachabilityIndex index = getReachabilityIndex();
+        CompactAttackGraph compact = index.getCompactAttackGraph();
+        int from = compact.indexOf(vertex.id);
+        int to = compact.indexOf(goal.id);
+        return from >= 0 && to >= 0 && index.canReach(from, to);
+    }
+
     /**
      * Compute the parents and the children of the whole attack graph
      */
     public void computeAllParentsAndChildren() {
+        materialize();
         for (Integer key : vertices.keySet()) {
             vertices.get(key).computeParentsAndChildren(this);
         }
@@ -91,6 +379,7 @@ public class AttackGraph implements Cloneable {
      * @throws Exception
      */
     public Vertex getVertexFromId(int id) throws Exception {
+        materialize();
         Vertex vertex = this.vertices.get(id);
         if (vertex == null)
             throw new Exception("The vertex " + id + " is not in this attack graph");
@@ -104,65 +393,92 @@ public class AttackGraph implements Cloneable {
      * @throws Exception
      */
     public void deleteVertex(Vertex vertex) throws Exception {
-        if (!this.vertices.containsKey(vertex.id)) //If the vertex has already been deleted
-            return;
-
-        //In all case (AND, OR and LEAF), we delete the vertex
-        this.vertices.remove(vertex.id);
-
-        vertex.computeParentsAndChildren(this);
-
-        for (int i = 0; i < vertex.children.size(); i++) {
-            Vertex child = vertex.children.get(i);
-
-            deleteArc(vertex, child); //We delete the arc from this vertex to the child
-            if (child.type == VertexType.AND) //If the child is an "AND" he must be remove
-                deleteVertex(child);
-            else if (child.type == VertexType.OR) { //If the child is an "OR" he must be remove only if it was it last parent
-
-                child.computeParentsAndChildren(this);
+        deleteVertices(Collections.singletonList(vertex));
+    }
 
-                if (child.parents.size() == 0) { //If it is the last parent
+    /**
+     * Simulate the deletion of several vertices (for example all the vertices remediated by the actions
+     * of a remediation) and propagate these deletions on the whole attack graph.
+     * The removals are first marked on the compact snapshot of the attack graph and propagated in one pass :
+     * the AND children of a deleted vertex are deleted, the OR children are deleted when all their parents
+     * are deleted. The vertices that can no longer be reached from the leaves are then found in a single sweep,
+     * and the parents without parents whose children have all been deleted are deleted too.
+     * The vertices and arcs are finally removed at once, so that the cost is linear in the size of the attack graph.
+     *
+     * @param verticesToDelete the vertices to delete
+     * @throws Exception
+     */
+    public void deleteVertices(Collection<Vertex> verticesToDelete) throws Exception {
+        AttackGraphOverlay overlay = new AttackGraphOverlay(this);
+        overlay.deleteVertices(verticesToDelete);
+        removeDeletedVertices(overlay);
+    }
 
-                    deleteVertex(child);
-                }
-            }
+    /**
+     * Remove from the attack graph the vertices deleted in an overlay, and their arcs
+     *
+     * @param overlay an overlay of this attack graph
+     */
+    private void removeDeletedVertices(AttackGraphOverlay overlay) {
+        CompactAttackGraph compact = overlay.getCompactAttackGraph();
+        int numberOfVertices = compact.getNumberOfVertices();
+        if (overlay.getNumberOfVertices() == numberOfVertices)
+            return;
+        BitSet deleted = new BitSet(numberOfVertices);
+        for (int i = 0; i < numberOfVertices; i++) {
+            if (overlay.isDeleted(i))
+                deleted.set(i);
         }
 
-        for (int i = 0; i < vertex.parents.size(); i++) { //We delete all vertices from the parents to the vertex
-            Vertex parent = vertex.parents.get(i);
-            parent.computeParentsAndChildren(this);
-            if (parent.children.size() == 1 && parent.children.get(0) == vertex && parent.parents.size() == 0) {//We delete a parent if he has no child remaining and no parents
-                deleteVertex(parent);
+        //Remove the deleted vertices and their arcs
+        List<Arc> remainingArcs = new ArrayList<Arc>(this.arcs.size());
+        for (Arc arc : this.arcs) {
+            int source = compact.indexOf(arc.source.id);
+            int destination = compact.indexOf(arc.destination.id);
+            if ((source < 0 || !deleted.get(source)) && (destination < 0 || !deleted.get(destination)))
+                remainingArcs.add(arc);
+        }
+        BitSet neighbours = new BitSet(numberOfVertices);
+        VertexIndex index = this.vertexIndex != null && this.vertexIndex.isUpToDateWith(this.vertices) ? this.vertexIndex : null;
+        for (int i = deleted.nextSetBit(0); i >= 0; i = deleted.nextSetBit(i + 1)) {
+            Vertex removed = this.vertices.remove(compact.getVertexId(i));
+            if (index != null && removed != null)
+                index.remove(removed);
+            for (int k = compact.getParentsStart(i); k < compact.getParentsEnd(i); k++) {
+                neighbours.set(compact.getParent(k));
+            }
+            for (int k = compact.getChildrenStart(i); k < compact.getChildrenEnd(i); k++) {
+                neighbours.set(compact.getChild(k));
             }
-
-            deleteArc(parent, vertex);
-
-
         }
-
-        this.deleteUnreachableVertices();
+        this.arcs.clear();
+        this.arcs.addAll(remainingArcs);
+        this.adjacencyIndex = null;
+        modificationCount++;
+
+        //Update the parents and children lists of the remaining vertices that have lost an arc
+        neighbours.andNot(deleted);
+        for (int i = neighbours.nextSetBit(0); i >= 0; i = neighbours.nextSetBit(i + 1)) {
+            compact.getVertex(i).computeParentsAndChildren(this);
+        }
     }
 
     /**
-     * Delete all arcs from a vertex to another
+     * Delete all the arcs from a vertex to another. The other arcs keep their order.
      *
      * @param fromVertex the source vertex
      * @param toVertex   the destination vertex
      */
     public void deleteArc(Vertex fromVertex, Vertex toVertex) {
-        for (int i = 0; i < this.arcs.size(); i++) {
-            Arc arc = this.arcs.get(i);
-            if (arc.source.id == fromVertex.id && arc.destination.id == toVertex.id) {
-                this.arcs.remove(i);
-            }
-        }
+        if (getAdjacencyIndex().remove(fromVertex.id, toVertex.id) != null)
+            modificationCount++;
     }
 
     /**
      * @return the number of vertices in the attack graph
      */
     public int getNumberOfVertices() {
+        materialize();
         return this.vertices.size();
     }
 
@@ -172,24 +488,26 @@ public class AttackGraph implements Cloneable {
      */
     public List<Vertex> getVerticesByVulnerability(Vulnerability vuln) {
         List<Vertex> result = new ArrayList<Vertex>();
-        for (Integer key : vertices.keySet()) {
-            Vertex vertex = vertices.get(key);
+        for (Vertex vertex : getVertexIndex().getByCve(vuln.cve)) {
             if (vertex.relatedVulnerabilibty != null && vertex.relatedVulnerabilibty.equals(vuln))
-                result.add(vertices.get(key));
-
+                result.add(vertex);
         }
 
         return result;
     }
 
     /**
-     * @return the adjacency matrix related to the attack graph
+     * @return the adjacency matrix related to the attack graph. The row and column i are related to the vertex of
+     * index i in the compact snapshot of the attack graph (the vertices sorted by increasing id).
      */
     public int[][] getAdjacencyMatrix() {
-        int numberOfVertices = this.getNumberOfVertices();
+        CompactAttackGraph compact = getCompactAttackGraph();
+        int numberOfVertices = compact.getNumberOfVertices();
         int[][] adjacencyMatrix = new int[numberOfVertices][numberOfVertices];
-        for (Arc arc : this.arcs) {
-            adjacencyMatrix[arc.source.id - 1][arc.destination.id - 1] = 1;
+        for (int i = 0; i < numberOfVertices; i++) {
+            for (int k = compact.getParentsStart(i); k < compact.getParentsEnd(i); k++) {
+                adjacencyMatrix[compact.getParent(k)][i] = 1;
+            }
         }
         return adjacencyMatrix;
     }
@@ -203,40 +521,78 @@ public class AttackGraph implements Cloneable {
      * @throws Exception
      */
     public List<List<Vertex>> getExistingAttackPathsBetween(Vertex v1, Vertex v2) throws Exception {
-        List<List<Vertex>> attackPathsList = new ArrayList<List<Vertex>>();
-        int numberOfVertices = this.getHighestVertexId();
-        int[] path = new int[numberOfVertices];
-        boolean[] taboo = new boolean[numberOfVertices];
-        int source = v1.id - 1;
-        int destination = v2.id - 1;
-        int[][] adjacencyMatrix = getAdjacencyMatrix();
-
-        explore(attackPathsList, path, destination, taboo, adjacencyMatrix, numberOfVertices, source, 0);
-
-        return attackPathsList;
+        return getExistingAttackPathsBetween(v1, v2, 0, 0);
     }
 
-    protected void explore(List<List<Vertex>> attackPathsList, int[] path, int target, boolean[] taboo, int[][] adjacencymatrix, int n, int position, int depth) throws Exception {
-        path[depth] = position;
-        // end
-        if (position == target) {
+    /**
+     * Use the taboo method to find the attack paths (without loops) between the vertex v1 and v2,
+     * exploring only the children of each vertex
+     *
+     * @param v1         the source vertex
+     * @param v2         the destination vertex
+     * @param maxDepth   the maximum number of arcs of an attack path (0 for no limit)
+     * @param maxResults the maximum number of attack paths returned (0 for no limit)
+     * @return the list of the attacks path from v1 to v2
+     * @throws Exception
+     */
+    public List<List<Vertex>> getExistingAttackPathsBetween(Vertex v1, Vertex v2, int maxDepth, int maxResults) throws Exception {
+        List<List<Vertex>> attackPathsList = new ArrayList<List<Vertex>>();
+        CompactAttackGraph compact = getCompactAttackGraph();
+        int source = compact.indexOf(v1.id);
+        int target = compact.indexOf(v2.id);
+        if (source < 0 || target < 0)
+            return attackPathsList;
+        ReachabilityIndex reachability = getReachabilityIndex();
+        if (!reachability.canReach(source, target))
+            return attackPathsList;
+        if (source == target) {
             List<Vertex> attackPath = new ArrayList<Vertex>();
-            for (int i = 0; i <= depth; i++) {
-                attackPath.add(this.getVertexFromId(path[i] + 1));
-            }
+            attackPath.add(compact.getVertex(source));
             attackPathsList.add(attackPath);
-            return;
+            return attackPathsList;
         }
-
-        taboo[position] = true; // add a taboo
-
-        // explore the remaining paths
-        for (int i = 0; i < n; i++) {
-            if (adjacencymatrix[position][i] == 0 || taboo[i]) continue;
-            explore(attackPathsList, path, target, taboo, adjacencymatrix, n, i, depth + 1);
+        int numberOfVertices = compact.getNumberOfVertices();
+        if (maxDepth <= 0 || maxDepth >= numberOfVertices)
+            maxDepth = numberOfVertices - 1;
+
+        //The current path, and for each of its vertices, the position of the next child to explore
+        PathStack stack = PathStack.ofCurrentThread(maxDepth + 1);
+        int[] path = stack.path;
+        int[] nextChild = stack.nextChild;
+        EpochMarks taboo = EpochMarks.ofCurrentThread(numberOfVertices);
+        int depth = 0;
+        path[0] = source;
+        nextChild[0] = compact.getChildrenStart(source);
+        taboo.mark(source);
+
+        while (depth >= 0) {
+            int position = path[depth];
+            if (nextChild[depth] < compact.getChildrenEnd(position) && depth < maxDepth) {
+                int child = compact.getChild(nextChild[depth]++);
+                if (taboo.isMarked(child) || !reachability.canReach(child, target))
+                    continue;
+                if (child == target) {
+                    List<Vertex> attackPath = new ArrayList<Vertex>(depth + 2);
+                    for (int i = 0; i <= depth; i++) {
+                        attackPath.add(compact.getVertex(path[i]));
+                    }
+                    attackPath.add(compact.getVertex(child));
+                    attackPathsList.add(attackPath);
+                    if (attackPathsList.size() == maxResults)
+                        return attackPathsList;
+                    continue;
+                }
+                depth++;
+                path[depth] = child;
+                nextChild[depth] = compact.getChildrenStart(child);
+                taboo.mark(child);
+            } else {
+                taboo.unmark(position);
+                depth--;
+            }
         }
 
-        taboo[position] = false; // remove the taboo
+        return attackPathsList;
     }
 
     /**
@@ -247,47 +603,21 @@ public class AttackGraph implements Cloneable {
      * @throws Exception
      */
     public List<Vertex> getMinimumPrerequisiteLeavesTo(Vertex v) throws Exception {
-        return getMinimumPrerequisiteLeavesToRecursive(v, new boolean[this.getHighestVertexId()]);
-    }
-
-    private List<Vertex> getMinimumPrerequisiteLeavesToRecursive(Vertex v, boolean[] alreadySeen) throws Exception {
-        List<Vertex> res = new ArrayList<Vertex>();
-        if (v.type == VertexType.LEAF) {
-            res.add(v);
-            return res;
-        }
-        if (v.type == VertexType.OR && !alreadySeen[v.id - 1]) {
-            v.computeParentsAndChildren(this);
-            int minimumNumberOfLeaves = this.getNumberOfVertices() + 1;
-            List<Vertex> minimumPath = new ArrayList<Vertex>();
-            alreadySeen[v.id - 1] = true;
-            for (int i = 0; i < v.parents.size(); i++) {
-                List<Vertex> res_parent = this.getMinimumPrerequisiteLeavesToRecursive(v.parents.get(i), alreadySeen);
-                if (res_parent.size() < minimumNumberOfLeaves && res_parent.size() != 0) {
-                    minimumPath = res_parent;
-                    minimumNumberOfLeaves = res_parent.size();
-                }
-            }
-            alreadySeen[v.id - 1] = false;
-            res.addAll(minimumPath);
-            return res;
-        } else if (v.type == VertexType.AND && !alreadySeen[v.id - 1]) {
-            v.computeParentsAndChildren(this);
-            alreadySeen[v.id - 1] = true;
-            List<Vertex> toAdd = new ArrayList<Vertex>();
-            for (int i = 0; i < v.parents.size(); i++) {
-                List<Vertex> res_parent = this.getMinimumPrerequisiteLeavesToRecursive(v.parents.get(i), alreadySeen);
-                if (res_parent.size() == 0)
-                    return res;
-                else {
-                    toAdd.addAll(res_parent);
-                }
-            }
-            res.addAll(toAdd);
-            alreadySeen[v.id - 1] = false;
-            return res;
-        }
-        return res;
+        return getMinimumPrerequisites().getPrerequisiteLeaves(v);
+    }
+
+    /**
+     * Get the smallest prerequisite leaves of all the vertices of the attack graph. They are computed on the first
+     * call and computed again after a modification of the attack graph.
+     *
+     * @return the minimum prerequisites of the current attack graph, each leaf costing 1
+     * @throws Exception
+     */
+    public MinimumPrerequisites getMinimumPrerequisites() throws Exception {
+        CompactAttackGraph compact = getCompactAttackGraph();
+        if (minimumPrerequisites == null || minimumPrerequisites.getCompactAttackGraph() != compact)
+            minimumPrerequisites = new MinimumPrerequisites(this, MinimumPrerequisites.LEAF_COUNT);
+        return minimumPrerequisites;
     }
 
     /**
@@ -296,18 +626,9 @@ public class AttackGraph implements Cloneable {
      * @throws Exception
      */
     public void deleteUnreachableVertices() throws Exception {
-        List<Vertex> toDelete = new ArrayList<Vertex>();
-        for (int i : vertices.keySet()) {
-            List<Vertex> leaves = getMinimumPrerequisiteLeavesTo(vertices.get(i));
-            if (leaves.size() == 0)
-                toDelete.add(vertices.get(i));
-        }
-        if (toDelete.size() > 0) {
-            for (Vertex aToDelete : toDelete) {
-                this.deleteVertex(aToDelete);
-            }
-            deleteUnreachableVertices();
-        }
+        AttackGraphOverlay overlay = new AttackGraphOverlay(this);
+        overlay.deleteUnreachableVertices();
+        removeDeletedVertices(overlay);
     }
 
     /**
@@ -328,6 +649,7 @@ public class AttackGraph implements Cloneable {
      * @return the highest vertex id number
      */
     public int getHighestVertexId() {
+        materialize();
         int max = 0;
         for (int i : vertices.keySet()) {
             if (i >= max)
@@ -340,49 +662,65 @@ public class AttackGraph implements Cloneable {
      * @return the dom element corresponding to this attack graph XML file
      */
     public Element toDomElement() {
+        materialize();
         Element root = new Element("attack_graph");
 
         //arcs
         Element arcsElement = new Element("arcs");
         root.addContent(arcsElement);
         for (Arc arc : arcs) {
-            Element arcElement = new Element("arc");
-            arcsElement.addContent(arcElement);
-            Element srcElement = new Element("src");
-            srcElement.setText(arc.destination.id + "");
-            arcElement.addContent(srcElement);
-            Element dstElement = new Element("dst");
-            dstElement.setText(arc.source.id + "");
-            arcElement.addContent(dstElement);
+            arcsElement.addContent(arcToDomElement(arc.source.id, arc.destination.id));
         }
 
         //vertices
         Element verticesElement = new Element("vertices");
         root.addContent(verticesElement);
         for (int key : vertices.keySet()) {
-            Vertex vertex = vertices.get(key);
+            verticesElement.addContent(vertexToDomElement(vertices.get(key)));
+        }
 
-            Element vertexElement = new Element("vertex");
-            verticesElement.addContent(vertexElement);
+        return root;
+    }
 
-            Element idElement = new Element("id");
-            idElement.setText(vertex.id + "");
-            vertexElement.addContent(idElement);
+    /**
+     * @param sourceId      the id of the source vertex of an arc
+     * @param destinationId the id of the destination vertex of the arc
+     * @return the dom element of the arc in the attack graph XML file (MulVAL inverses source and destination)
+     */
+    static Element arcToDomElement(int sourceId, int destinationId) {
+        Element arcElement = new Element("arc");
+        Element srcElement = new Element("src");
+        srcElement.setText(destinationId + "");
+        arcElement.addContent(srcElement);
+        Element dstElement = new Element("dst");
+        dstElement.setText(sourceId + "");
+        arcElement.addContent(dstElement);
+        return arcElement;
+    }
 
-            Element factElement = new Element("fact");
-            factElement.setText(vertex.fact.factString);
-            vertexElement.addContent(factElement);
+    /**
+     * @param vertex a vertex
+     * @return the dom element of the vertex in the attack graph XML file
+     */
+    public static Element vertexToDomElement(Vertex vertex) {
+        Element vertexElement = new Element("vertex");
 
-            Element metricElement = new Element("metric");
-            metricElement.setText(vertex.mulvalMetric + "");
-            vertexElement.addContent(metricElement);
+        Element idElement = new Element("id");
+        idElement.setText(vertex.id + "");
+        vertexElement.addContent(idElement);
 
-            Element typeElement = new Element("type");
-            typeElement.setText(vertex.type.toString().toUpperCase());
-            vertexElement.addContent(typeElement);
-        }
+        Element factElement = new Element("fact");
+        factElement.setText(vertex.fact.factString);
+        vertexElement.addContent(factElement);
 
-        return root;
+        Element metricElement = new Element("metric");
+        metricElement.setText(vertex.mulvalMetric + "");
+        vertexElement.addContent(metricElement);
+
+        Element typeElement = new Element("type");
+        typeElement.setText(vertex.type.toString().toUpperCase());
+        vertexElement.addContent(typeElement);
+        return vertexElement;
     }
 
     /**
@@ -397,152 +735,127 @@ public class AttackGraph implements Cloneable {
     }
 
     /**
-     * @return the list of possible attack paths
-     * @throws Exception
+     * @return the vertices of the attack graph that are attacker goals (code execution, file access or principal
+     * compromission)
      */
-    public List<AttackPath> generateAttackPaths() throws Exception {
-        List<AttackPath> result = new ArrayList<AttackPath>();
-
+    public List<Vertex> getAttackerGoals() {
+        VertexIndex index = getVertexIndex();
         List<Vertex> attackerGoals = new ArrayList<Vertex>();
-        //Find attacker goals
-        for (int i : vertices.keySet()) {
-            Vertex vertex = vertices.get(i);
-            Fact fact = vertex.fact;
-            if (fact != null && fact.type == FactType.DATALOG_FACT) {
-                DatalogCommand command = fact.datalogCommand;
-                if (command != null && (command.command.equals("execCode") || command.command.equals("accessFile") || command.command.equals("principalCompromised"))) {
-                    attackerGoals.add(vertex);
-                }
+        attackerGoals.addAll(index.getByCommand(CommandType.EXEC_CODE.getCommand()));
+        attackerGoals.addAll(index.getByCommand(CommandType.ACCESS_FILE.getCommand()));
+        attackerGoals.addAll(index.getByCommand(CommandType.PRINCIPAL_COMPROMISED.getCommand()));
+        Collections.sort(attackerGoals, new Comparator<Vertex>() {
+            @Override
+            public int compare(Vertex vertex1, Vertex vertex2) {
+                return vertex1.id < vertex2.id ? -1 : (vertex1.id == vertex2.id ? 0 : 1);
             }
-        }
-
-        for (Vertex goal : attackerGoals) {
-            result.addAll(this.getPossibleAttackPathsToGoTo(goal));
-        }
-
-        for (AttackPath aResult : result) {
-            aResult.computeScoring();
-        }
-        System.out.println("Number of attack path :" + result.size());
-        return result;
+        });
+        return attackerGoals;
     }
 
-    private List<AttackPath> getPossibleAttackPathsToGoTo(Vertex goal) throws Exception {
-        return getPossibleAttackPathsToGoToRecursive(goal, new boolean[this.getHighestVertexId()]);
+    /**
+     * @return the list of possible attack paths
+     * @throws Exception
+     */
+    public List<AttackPath> generateAttackPaths() throws Exception {
+        return generateAttackPaths(new AttackPathGenerationOptions());
     }
 
     /**
-     * @param v           the vertex
-     * @param alreadySeen a boolean vector : true if the vertex as already been seen
-     * @return the list of possible path attack path to access this vector
+     * @param options the limits of the generation, the fork/join pool in which the attack paths are generated
+     *                in parallel, if any, or the number of attack paths with the highest scorings to search
+     * @return the list of possible attack paths, until one of the limits is reached
      * @throws Exception
      */
-    private List<AttackPath> getPossibleAttackPathsToGoToRecursive(Vertex v, boolean[] alreadySeen) throws Exception {
+    public List<AttackPath> generateAttackPaths(AttackPathGenerationOptions options) throws Exception {
         List<AttackPath> result = new ArrayList<AttackPath>();
-        if (v.type == VertexType.LEAF && !alreadySeen[v.id - 1]) {
-            AttackPath attackPath = new AttackPath();
-            attackPath.vertices.put(v.id, v);
-            result.add(attackPath);
-        } else if (v.type == VertexType.OR && !alreadySeen[v.id - 1]) {
-            v.computeParentsAndChildren(this);
-            alreadySeen[v.id - 1] = true;
-            for (int i = 0; i < v.parents.size(); i++) {
-                List<AttackPath> res_parent = this.getPossibleAttackPathsToGoToRecursive(v.parents.get(i), alreadySeen);
-                if (res_parent == null)
-                    break;
-                for (AttackPath parent : res_parent) {
-                    parent.vertices.put(v.id, v);
-                    parent.arcs.add(new Arc(v.parents.get(i), v));
-                    result.add(parent);
+        long startTime = System.currentTimeMillis();
+        int numberOfDuplicates = 0;
+
+        if (options.getNumberOfBestAttackPaths() > 0) {
+            BestAttackPathSearch search = new BestAttackPathSearch(this);
+            if (options.isBestAttackPathsPerGoal()) {
+                for (Vertex goal : getAttackerGoals()) {
+                    result.addAll(search.search(Collections.singletonList(goal), options.getNumberOfBestAttackPaths(), options, startTime));
                 }
+            } else {
+                result = search.search(getAttackerGoals(), options.getNumberOfBestAttackPaths(), options, startTime);
             }
-            alreadySeen[v.id - 1] = false;
-        } else if (v.type == VertexType.AND && !alreadySeen[v.id - 1]) {
-            v.computeParentsAndChildren(this);
-            alreadySeen[v.id - 1] = true;
-            List<List<AttackPath>> result_all_parents = new ArrayList<List<AttackPath>>();
-            for (int i = 0; i < v.parents.size(); i++) {
-                List<AttackPath> res_parent = this.getPossibleAttackPathsToGoToRecursive(v.parents.get(i), alreadySeen);
-
-                if (res_parent == null) {
-                    alreadySeen[v.id - 1] = false;
-                    return new ArrayList<AttackPath>();
-                }
-                for (AttackPath aRes_parent : res_parent) {
-                    aRes_parent.vertices.put(v.id, v);
-                    aRes_parent.arcs.add(new Arc(v.parents.get(i), v));
+            numberOfDuplicates = search.getNumberOfDuplicates();
+        } else if (options.getForkJoinPool() != null) {
+            getAdjacencyIndex(); //the workers only read the attack graph
+            ParallelAttackPathGeneration generation = new ParallelAttackPathGeneration(this, options, startTime);
+            result = generation.generate(getAttackerGoals());
+            numberOfDuplicates = generation.getNumberOfDuplicates();
+        } else {
+            //The attack paths built from different combinations of parents may have the same vertices and arcs
+            Set<AttackPathFingerprint> fingerprints = new HashSet<AttackPathFingerprint>();
+            for (Vertex goal : getAttackerGoals()) {
+                AttackPathIterator attackPaths = new AttackPathIterator(this, goal);
+                while (!options.isLimitReached(result.size(), startTime) && attackPaths.hasNext()) {
+                    //The duplicates are skipped on the fingerprint of their fragment, before being materialized
+                    AttackPath attackPath = new AttackPath(attackPaths.nextFragment());
+                    if (fingerprints.add(attackPath.getFingerprint())) {
+                        attackPath.materialize();
+                        result.add(attackPath);
+                    } else {
+                        numberOfDuplicates++;
+                    }
                 }
-                result_all_parents.add(res_parent);
             }
-            result = computeAttackPathForAnANDVertex(result_all_parents, 0);
-            alreadySeen[v.id - 1] = false;
-        } else {
-            return null;
+
+            for (AttackPath aResult : result) {
+                aResult.computeScoring();
+            }
         }
+        numberOfDuplicateAttackPaths = numberOfDuplicates;
+        System.out.println("Number of attack path :" + result.size());
+        AttackPath.logRemovedDuplicates(numberOfDuplicates);
         return result;
     }
 
     /**
-     * [OR] List<AttackPath>		[OR] List<AttackPath>			[OR] List<AttackPath>
-     * PARENT1						PARENT2						   PARENT3
-     * <p/>
-     * AND LEAF : PARENT1.1 AND PARENT2.1 AND PARENT 3.1
-     * OR PARENT 1.2 AND PARENT2.1 AND PARENT3.A
-     * OR ....
-     *
-     * @param parentsAttackPathList the list of list of possible attack path of parents of a "AND" node in the attack graph :
-     * @param indexInPath           the index if this list
-     * @return the list of possible attack path
-     */
-    private List<AttackPath> computeAttackPathForAnANDVertex(List<List<AttackPath>> parentsAttackPathList, int indexInPath) {
-        if (indexInPath > parentsAttackPathList.size() - 1) { //path empty
-            return null;
-        } else if (indexInPath == parentsAttackPathList.size() - 1) { //one parent remaining
-            return parentsAttackPathList.get(indexInPath);
-        } else { //more than one parent remaining
-            List<AttackPath> currentAttackPathList = parentsAttackPathList.get(indexInPath);
-
-            List<AttackPath> result_without_last_leaf = computeAttackPathForAnANDVertex(parentsAttackPathList, indexInPath + 1);
-
-            List<AttackPath> result = new ArrayList<AttackPath>();
-
-            for (AttackPath resultWithoutLastLeaf : result_without_last_leaf) {
-                for (AttackPath aCurrentAttackPathList : currentAttackPathList) {
-                    AttackPath newAttackPath = new AttackPath();
-                    newAttackPath.vertices.putAll(resultWithoutLastLeaf.vertices);
-                    newAttackPath.vertices.putAll(aCurrentAttackPathList.vertices);
-
-                    newAttackPath.arcs.addAll(resultWithoutLastLeaf.arcs);
-                    newAttackPath.arcs.addAll(aCurrentAttackPathList.arcs);
-                    result.add(newAttackPath);
-                }
-
-            }
-
-            return result;
+     * @return the number of duplicate attack paths (with the same vertices and arcs as a previous one) skipped by
+     * the last generation of the attack paths
+     */
+    public int getNumberOfDuplicateAttackPaths() {
+        return numberOfDuplicateAttackPaths;
+    }
 
-        }
+    /**
+     * @param goal an attacker goal
+     * @return the lazy enumeration of the possible attack paths to this goal
+     */
+    public Iterator<AttackPath> getPossibleAttackPathsToGoTo(Vertex goal) {
+        return new AttackPathIterator(this, goal);
     }
 
     @Override
     public AttackGraph clone() throws CloneNotSupportedException {
+        materialize();
         AttackGraph copie = (AttackGraph) super.clone();
 
         //Copie the vertices
 
-        copie.vertices = new HashMap<Integer, Vertex>();
+        copie.vertices = new VertexMap();
         for (Integer i : this.vertices.keySet()) {
             copie.vertices.put(i, this.vertices.get(i).clone());
         }
 
-        copie.arcs = new ArrayList<Arc>();
+        copie.arcs = new ArcList();
+        copie.adjacencyIndex = null;
+        copie.compactAttackGraph = null;
+        copie.minimumPrerequisites = null;
+        copie.riskPropagation = null;
+        copie.vertexIndex = null;
+        copie.reachabilityIndex = null;
 
         //Change all the vertices references in the arcs
         for (int i = 0; i < this.arcs.size(); i++) {
             Vertex destination = copie.vertices.get(this.arcs.get(i).destination.id);
             Vertex source = copie.vertices.get(this.arcs.get(i).source.id);
             Arc arc = new Arc(source, destination);
-            copie.arcs.add(arc);
+            copie.appendArc(arc);
         }
 
 
@@ -557,6 +870,7 @@ public class AttackGraph implements Cloneable {
 
     @Override
     public String toString() {
+        materialize();
         String result = "";
 
         result += "\nVertices = \n";
@@ -573,47 +887,99 @@ public class AttackGraph implements Cloneable {
     }
 
     /**
-     * @param outputPath the path in which the XML attack paths are saved
+     * Score this attack graph with the scoring function and extract its scored attack paths, in memory
+     *
+     * @param outputPath       the path in which the XML attack paths are saved for debugging (null to save nothing)
+     * @param previousMaxScore the previous maximum score
      * @return The list of attack path extracted from this attack graph
      * @throws Exception
      */
     public List<AttackPath> scoreAttackGraphAndGetAttackPaths(String outputPath, double previousMaxScore) throws Exception {
-        double[] vertexIDTable = new double[this.getNumberOfVertices()];
-        String[] vertexFactTable = new String[this.getNumberOfVertices()];
-        double[] vertexMulvalMetricTable = new double[this.getNumberOfVertices()];
-        String[] vertexTypeTable = new String[this.getNumberOfVertices()];
+        org.fiware.cybercaptor.server.scoring.types.Graph graphToScore = createGraphToScore();
+        this.globalScore = Launch.globalScore(graphToScore, previousMaxScore);
 
-        double[] arcSrcTable = new double[this.arcs.size()];
-        double[] arcDstTable = new double[this.arcs.size()];
-        ImpactMetric[][] impactMetrics = new ImpactMetric[this.getNumberOfVertices()][];
+        return generateScoredAttackPaths(graphToScore, outputPath, this);
+    }
+
+    /**
+     * Compute the global score of this attack graph with the scoring function, without extracting its attack paths
+     *
+     * @param previousMaxScore the previous maximum score
+     * @throws Exception
+     */
+    public void computeGlobalScore(double previousMaxScore) throws Exception {
+        this.globalScore = Launch.globalScore(createGraphToScore(), previousMaxScore);
+    }
+
+    /**
+     * @return the graph given to the scoring function, with the vertices and arcs of this attack graph
+     */
+    private org.fiware.cybercaptor.server.scoring.types.Graph createGraphToScore() {
+        materialize();
+        List<Vertex> verticesToScore = new ArrayList<Vertex>(this.vertices.values());
+        int[] arcSrcTable = new int[this.arcs.size()];
+        int[] arcDstTable = new int[this.arcs.size()];
+        for (int j = 0; j < this.arcs.size(); j++) {
+            Arc arc = this.arcs.get(j);
+            arcDstTable[j] = arc.source.id;
+            arcSrcTable[j] = arc.destination.id;
+        }
+        return createGraphToScore(verticesToScore, arcSrcTable, arcDstTable);
+    }
+
+    /**
+     * Create the graph given to the scoring function
+     *
+     * @param verticesToScore the vertices of the attack graph
+     * @param arcSrcTable     the sources of the arcs, in the MulVAL order (the destination vertices)
+     * @param arcDstTable     the destinations of the arcs, in the MulVAL order (the source vertices)
+     * @return the graph to score
+     */
+    static org.fiware.cybercaptor.server.scoring.types.Graph createGraphToScore(List<Vertex> verticesToScore, int[] arcSrcTable, int[] arcDstTable) {
+        int[] vertexIDTable = new int[verticesToScore.size()];
+        String[] vertexFactTable = new String[verticesToScore.size()];
+        double[] vertexMulvalMetricTable = new double[verticesToScore.size()];
+        String[] vertexTypeTable = new String[verticesToScore.size()];
+        ImpactMetric[][] impactMetrics = new ImpactMetric[verticesToScore.size()][];
 
-        int i = 0;
         System.out.println("Generate input for scoring function");
-        for (Integer key : this.vertices.keySet()) {
-            Vertex vertex = this.vertices.get(key);
+        for (int i = 0; i < verticesToScore.size(); i++) {
+            Vertex vertex = verticesToScore.get(i);
 
             vertexIDTable[i] = vertex.id;
             vertexFactTable[i] = vertex.fact.factString;
             vertexMulvalMetricTable[i] = vertex.mulvalMetric;
             vertexTypeTable[i] = vertex.type.toString().toUpperCase();
             impactMetrics[i] = new ImpactMetric[vertex.impactMetrics.size()];
-            for(int j = 0; j < vertex.impactMetrics.size() ; j++) {
+            for (int j = 0; j < vertex.impactMetrics.size(); j++) {
                 impactMetrics[i][j] = vertex.impactMetrics.get(j);
             }
-
-            i++;
         }
+        return Launch.createGraph(vertexIDTable, vertexFactTable, vertexMulvalMetricTable, vertexTypeTable,
+                arcSrcTable, arcDstTable, impactMetrics);
+    }
 
-        for (int j = 0; j < this.arcs.size(); j++) {
-            Arc arc = this.arcs.get(j);
-            arcDstTable[j] = arc.source.id;
-            arcSrcTable[j] = arc.destination.id;
-        }
+    /**
+     * Generate and score the attack paths of a graph with the scoring function, in parallel if the property
+     * "attack-paths-generation-parallelism" of the project properties is set
+     *
+     * @param graphToScore       the graph given to the scoring function
+     * @param outputPath         the path in which the XML attack paths are saved for debugging (null to save nothing)
+     * @param relatedAttackGraph the attack graph whose vertices are used in the attack paths
+     * @return the scored attack paths, sorted in descending order of scoring
+     * @throws Exception
+     */
+    static List<AttackPath> generateScoredAttackPaths(org.fiware.cybercaptor.server.scoring.types.Graph graphToScore,
+                                                      String outputPath, AttackGraph relatedAttackGraph) throws Exception {
         System.out.println("Compute global score and compute attack paths");
-        this.globalScore = Launch.main(vertexIDTable, vertexFactTable, vertexMulvalMetricTable, vertexTypeTable,
-                arcSrcTable, arcDstTable, impactMetrics, outputPath, previousMaxScore);
-
-        return AttackPath.loadAttackPathsFromFile(outputPath, this);
+        org.fiware.cybercaptor.server.scoring.types.Graph[] scoredAttackPaths = Launch.generateAttackPaths(graphToScore);
+        //The attack paths are scored in the pool used to generate the attack paths, if any
+        double[] scores = Launch.scoreAttackPaths(scoredAttackPaths,
+                AttackPathGenerationOptions.fromProjectProperties().getForkJoinPool());
+        if (outputPath != null)
+            Launch.saveToXmlFile(outputPath, scoredAttackPaths, scores);
+
+        return AttackPath.loadAttackPathsFromScoring(scoredAttackPaths, scores, relatedAttackGraph);
     }
 
     /**
@@ -623,19 +989,15 @@ public class AttackGraph implements Cloneable {
      * @throws Exception
      */
     public void loadMetricsFromTopology(InformationSystem informationSystem) throws Exception {
-        for (Integer key : vertices.keySet()) {
-            Vertex vertex = vertices.get(key);
-            if (vertex.fact != null && vertex.fact.type == FactType.DATALOG_FACT && vertex.fact.datalogCommand.command.equals("execCode")) {
-                //We are in an execCode
-                String hostName = vertex.fact.datalogCommand.params[0];
-                if (hostName != null && !hostName.isEmpty()) {
-                    InformationSystemHost host = informationSystem.getHostByNameOrIPAddress(hostName);
-                    if (host != null) {
-                        ImpactMetric metric = new ImpactMetric(host.getMetric(), 1);
-                        vertex.impactMetrics.add(metric);
-                    }
+        for (Vertex vertex : getVertexIndex().getByCommand(CommandType.EXEC_CODE.getCommand())) {
+            //We are in an execCode
+            String hostName = vertex.fact.datalogCommand.params[0];
+            if (hostName != null && !hostName.isEmpty()) {
+                InformationSystemHost host = informationSystem.getHostByNameOrIPAddress(hostName);
+                if (host != null) {
+                    ImpactMetric metric = new ImpactMetric(host.getMetric(), 1);
+                    vertex.impactMetrics.add(metric);
                 }
-
             }
         }
     }
@@ -648,23 +1010,16 @@ public class AttackGraph implements Cloneable {
     public List<SecurityRequirement> computeRelatedImactedSecurityRequirements(InformationSystem is) throws Exception {
         List<SecurityRequirement> impactedRequirements = new ArrayList<SecurityRequirement>();
 
-        for (int i : this.vertices.keySet()) {
-            Vertex vertex = this.vertices.get(i);
-            if (vertex.fact != null && vertex.fact.type == FactType.DATALOG_FACT) {
-                DatalogCommand command = vertex.fact.datalogCommand;
-                if (command.command.equals("execCode")) {
-                    String machineName = command.params[0];
-                    InformationSystemHost machine = is.existingMachineByNameOrIPAddress(machineName);
-                    if (machine != null) {
-                        for (int j = 0; j < machine.getSecurityRequirements().size(); j++) {
-                            SecurityRequirement secReq = machine.getSecurityRequirements().get(j);
-                            if (!impactedRequirements.contains(secReq)) {
-                                impactedRequirements.add(secReq);
-                            }
-                        }
+        for (Vertex vertex : getVertexIndex().getByCommand(CommandType.EXEC_CODE.getCommand())) {
+            String machineName = vertex.fact.datalogCommand.params[0];
+            InformationSystemHost machine = is.existingMachineByNameOrIPAddress(machineName);
+            if (machine != null) {
+                for (int j = 0; j < machine.getSecurityRequirements().size(); j++) {
+                    SecurityRequirement secReq = machine.getSecurityRequirements().get(j);
+                    if (!impactedRequirements.contains(secReq)) {
+                        impactedRequirements.add(secReq);
                     }
                 }
-
             }
         }
 
@@ -678,14 +1033,15 @@ public class AttackGraph implements Cloneable {
      * @throws Exception
      */
     public InformationSystemGraph getRelatedTopologyGraph(InformationSystem informationSystem) throws Exception {
+        materialize();
         InformationSystemGraph result = new InformationSystemGraph();
 
         List<Vertex> vertices = new ArrayList<Vertex>(this.vertices.values());
         for (Vertex vertex : vertices) {
             if (vertex.fact.type == FactType.DATALOG_FACT && vertex.fact.datalogCommand != null) {
                 DatalogCommand command = vertex.fact.datalogCommand;
-                switch (command.command) {
-                    case "hacl":
+                switch (command.commandType) {
+                    case HACL:
                         InformationSystemGraphVertex from = null;
                         InformationSystemGraphVertex to = null;
                         String relatedVulneravility = null;
@@ -739,7 +1095,7 @@ public class AttackGraph implements Cloneable {
                                 result.getArcs().add(arc);
                         }
                         break;
-                    case "attackerLocated":
+                    case ATTACKER_LOCATED:
                         InformationSystemGraphVertex attackerVertex = null;
                         if (command.params[0].equals("internet") || command.params[0].equals("1.1.1.1"))
                             attackerVertex = result.getMachineVertex(informationSystem.getHostByNameOrIPAddress("1.1.1.1"));
@@ -752,7 +1108,7 @@ public class AttackGraph implements Cloneable {
                         if (attackerVertex != null)
                             attackerVertex.setMachineOfAttacker(true);
                         break;
-                    case "vulExists":
+                    case VUL_EXISTS:
                         InformationSystemHost machine = informationSystem.getHostByNameOrIPAddress(command.params[0]);
                         if (machine != null) {
                             result.getMachineVertex(machine).setCompromised(true);
@@ -764,4 +1120,43 @@ public class AttackGraph implements Cloneable {
 
         return result;
     }
+
+    /**
+     * The stack of the attack path enumerations between two vertices, reused by the successive enumerations
+     * of a thread
+     */
+    private static class PathStack {
+        /**
+         * The stack of each thread
+         */
+        private static final ThreadLocal<PathStack> THREAD_STACKS = new ThreadLocal<PathStack>() {
+            @Override
+            protected PathStack initialValue() {
+                return new PathStack();
+            }
+        };
+
+        /**
+         * The vertices of the current path
+         */
+        int[] path = new int[0];
+
+        /**
+         * For each vertex of the current path, the position of its next child to explore
+         */
+        int[] nextChild = new int[0];
+
+        /**
+         * @param capacity the maximum number of vertices of a path
+         * @return the stack of the current thread, able to hold a path of capacity vertices
+         */
+        static PathStack ofCurrentThread(int capacity) {
+            PathStack stack = THREAD_STACKS.get();
+            if (stack.path.length < capacity) {
+                stack.path = new int[capacity];
+                stack.nextChild = new int[capacity];
+            }
+            return stack;
+        }
+    }
 }
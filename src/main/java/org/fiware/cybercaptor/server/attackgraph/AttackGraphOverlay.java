@@ -0,0 +1,388 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.compact.CompactAttackGraph;
+import org.fiware.cybercaptor.server.scoring.gui.Launch;
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copy-on-write view of an attack graph, used to simulate remediations.
+ * The overlay records the deleted vertices and arcs against the compact snapshot of the base attack graph,
+ * which is never modified : a simulation costs two bit sets instead of a clone of all the vertices and arcs.
+ * The vertices are shared with the base attack graph.
+ */
+public class AttackGraphOverlay implements ScorableAttackGraph {
+    /**
+     * The base attack graph
+     */
+    private final AttackGraph baseAttackGraph;
+
+    /**
+     * The compact snapshot of the base attack graph
+     */
+    private final CompactAttackGraph compact;
+
+    /**
+     * The dense indices of the deleted vertices
+     */
+    private final BitSet deletedVertices;
+
+    /**
+     * The identifiers of the deleted arcs (the arcs of the deleted vertices are not recorded)
+     */
+    private final BitSet deletedArcs;
+
+    /**
+     * The global score of the simulated attack graph
+     */
+    private double globalScore = 0;
+
+    /**
+     * Create an overlay without any deletion on an attack graph
+     *
+     * @param baseAttackGraph the base attack graph
+     */
+    public AttackGraphOverlay(AttackGraph baseAttackGraph) {
+        this.baseAttackGraph = baseAttackGraph;
+        this.compact = baseAttackGraph.getCompactAttackGraph();
+        this.deletedVertices = new BitSet(compact.getNumberOfVertices());
+        this.deletedArcs = new BitSet(compact.getNumberOfArcs());
+    }
+
+    /**
+     * @return the base attack graph
+     */
+    public AttackGraph getBaseAttackGraph() {
+        return baseAttackGraph;
+    }
+
+    /**
+     * @return the compact snapshot of the base attack graph, on which the dense indices are defined
+     */
+    public CompactAttackGraph getCompactAttackGraph() {
+        return compact;
+    }
+
+    /**
+     * @return the global score computed by the last scoring of the simulated attack graph
+     */
+    public double getGlobalScore() {
+        return globalScore;
+    }
+
+    /**
+     * @param index a dense index of the compact snapshot
+     * @return true if the vertex has been deleted
+     */
+    public boolean isDeleted(int index) {
+        return deletedVertices.get(index);
+    }
+
+    /**
+     * @param vertex a vertex
+     * @return true if the vertex is in the simulated attack graph
+     */
+    public boolean containsVertex(Vertex vertex) {
+        int index = compact.indexOf(vertex.id);
+        return index >= 0 && !deletedVertices.get(index);
+    }
+
+    /**
+     * @return the number of vertices in the simulated attack graph
+     */
+    public int getNumberOfVertices() {
+        return compact.getNumberOfVertices() - deletedVertices.cardinality();
+    }
+
+    /**
+     * @return the number of arcs in the simulated attack graph
+     */
+    public int getNumberOfArcs() {
+        int result = 0;
+        for (int i = 0; i < compact.getNumberOfVertices(); i++) {
+            for (int k = compact.getParentsStart(i); k < compact.getParentsEnd(i); k++) {
+                if (isLiveArc(k, i))
+                    result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the vertices of the simulated attack graph, by increasing id
+     */
+    public List<Vertex> getVertices() {
+        List<Vertex> result = new ArrayList<Vertex>(getNumberOfVertices());
+        for (int i = deletedVertices.nextClearBit(0); i < compact.getNumberOfVertices(); i = deletedVertices.nextClearBit(i + 1)) {
+            result.add(compact.getVertex(i));
+        }
+        return result;
+    }
+
+    /**
+     * @param vertex a vertex of the simulated attack graph
+     * @return the sources of the arcs arriving to this vertex
+     */
+    public List<Vertex> getParents(Vertex vertex) {
+        int index = compact.indexOf(vertex.id);
+        if (index < 0 || deletedVertices.get(index))
+            return Collections.emptyList();
+        List<Vertex> result = new ArrayList<Vertex>(compact.getInDegree(index));
+        for (int k = compact.getParentsStart(index); k < compact.getParentsEnd(index); k++) {
+            if (isLiveArc(k, index))
+                result.add(compact.getVertex(compact.getParent(k)));
+        }
+        return result;
+    }
+
+    /**
+     * @param vertex a vertex of the simulated attack graph
+     * @return the destinations of the arcs leaving this vertex
+     */
+    public List<Vertex> getChildren(Vertex vertex) {
+        int index = compact.indexOf(vertex.id);
+        if (index < 0 || deletedVertices.get(index))
+            return Collections.emptyList();
+        List<Vertex> result = new ArrayList<Vertex>(compact.getOutDegree(index));
+        for (int k = compact.getChildrenStart(index); k < compact.getChildrenEnd(index); k++) {
+            int child = compact.getChild(k);
+            if (isLiveArc(compact.getChildArc(k), child))
+                result.add(compact.getVertex(child));
+        }
+        return result;
+    }
+
+    /**
+     * @param arc         an arc identifier
+     * @param destination the dense index of the destination of the arc
+     * @return true if the arc and its two vertices are not deleted
+     */
+    private boolean isLiveArc(int arc, int destination) {
+        return !deletedArcs.get(arc) && !deletedVertices.get(destination) && !deletedVertices.get(compact.getParent(arc));
+    }
+
+    /**
+     * Delete the arc from a vertex to another, without propagation
+     *
+     * @param fromVertex the source vertex
+     * @param toVertex   the destination vertex
+     */
+    public void deleteArc(Vertex fromVertex, Vertex toVertex) {
+        int source = compact.indexOf(fromVertex.id);
+        int destination = compact.indexOf(toVertex.id);
+        if (source < 0 || destination < 0)
+            return;
+        for (int k = compact.getParentsStart(destination); k < compact.getParentsEnd(destination); k++) {
+            if (compact.getParent(k) == source)
+                deletedArcs.set(k);
+        }
+    }
+
+    /**
+     * Simulate the deletion of a vertex and propagate this deletion on the whole attack graph
+     *
+     * @param vertex the vertex to delete
+     */
+    public void deleteVertex(Vertex vertex) {
+        deleteVertices(Collections.singletonList(vertex));
+    }
+
+    /**
+     * Simulate the deletion of several vertices and propagate these deletions on the whole attack graph,
+     * with the same rules as {@link AttackGraph#deleteVertices(Collection)}.
+     * The vertices that are not in the simulated attack graph are ignored.
+     *
+     * @param verticesToDelete the vertices to delete
+     */
+    public void deleteVertices(Collection<Vertex> verticesToDelete) {
+        boolean deletion = false;
+        for (Vertex vertex : verticesToDelete) {
+            int index = compact.indexOf(vertex.id);
+            if (index >= 0 && !deletedVertices.get(index)) {
+                deletedVertices.set(index);
+                deletion = true;
+            }
+        }
+        if (deletion)
+            propagateDeletions();
+    }
+
+    /**
+     * Delete all the vertices that can not be reached from the leaves of the simulated attack graph
+     */
+    public void deleteUnreachableVertices() {
+        propagateDeletions();
+    }
+
+    /**
+     * Propagate the deleted vertices : the AND children of a deleted vertex are deleted, the OR children are
+     * deleted when all their parents are deleted. The vertices that can no longer be reached from the leaves are
+     * then found in a single sweep, and the parents without parents whose children have all been deleted are
+     * deleted too. The cost is linear in the size of the attack graph.
+     */
+    private void propagateDeletions() {
+        int numberOfVertices = compact.getNumberOfVertices();
+
+        //Propagate the deletions to the AND children, and to the OR children that have lost all their parents
+        int[] remainingParents = new int[numberOfVertices];
+        for (int i = 0; i < numberOfVertices; i++) {
+            for (int k = compact.getParentsStart(i); k < compact.getParentsEnd(i); k++) {
+                if (!deletedArcs.get(k))
+                    remainingParents[i]++;
+            }
+        }
+        int[] worklist = new int[numberOfVertices];
+        int worklistSize = 0;
+        for (int i = deletedVertices.nextSetBit(0); i >= 0; i = deletedVertices.nextSetBit(i + 1)) {
+            worklist[worklistSize++] = i;
+        }
+        while (worklistSize > 0) {
+            int vertex = worklist[--worklistSize];
+            for (int k = compact.getChildrenStart(vertex); k < compact.getChildrenEnd(vertex); k++) {
+                if (deletedArcs.get(compact.getChildArc(k)))
+                    continue;
+                int child = compact.getChild(k);
+                remainingParents[child]--;
+                if (!deletedVertices.get(child) && (compact.getType(child) == CompactAttackGraph.AND
+                        || (compact.getType(child) == CompactAttackGraph.OR && remainingParents[child] == 0))) {
+                    deletedVertices.set(child);
+                    worklist[worklistSize++] = child;
+                }
+            }
+        }
+
+        //Sweep the remaining vertices that can be reached from the leaves : an OR vertex is reached by one of
+        //its parents, an AND vertex by all its parents
+        BitSet reachable = new BitSet(numberOfVertices);
+        for (int i = 0; i < numberOfVertices; i++) {
+            if (!deletedVertices.get(i) && compact.getType(i) == CompactAttackGraph.LEAF) {
+                reachable.set(i);
+                worklist[worklistSize++] = i;
+            }
+        }
+        while (worklistSize > 0) {
+            int vertex = worklist[--worklistSize];
+            for (int k = compact.getChildrenStart(vertex); k < compact.getChildrenEnd(vertex); k++) {
+                int child = compact.getChild(k);
+                if (deletedArcs.get(compact.getChildArc(k)) || deletedVertices.get(child) || reachable.get(child))
+                    continue;
+                if (compact.getType(child) == CompactAttackGraph.OR || (compact.getType(child) == CompactAttackGraph.AND
+                        && --remainingParents[child] == 0)) {
+                    reachable.set(child);
+                    worklist[worklistSize++] = child;
+                }
+            }
+        }
+        for (int i = 0; i < numberOfVertices; i++) {
+            if (!reachable.get(i))
+                deletedVertices.set(i);
+        }
+
+        //Delete the parents that have no parents and whose children have all been deleted
+        for (int i = reachable.nextSetBit(0); i >= 0; i = reachable.nextSetBit(i + 1)) {
+            boolean hasChildren = false;
+            boolean orphan = true;
+            for (int k = compact.getChildrenStart(i); orphan && k < compact.getChildrenEnd(i); k++) {
+                if (!deletedArcs.get(compact.getChildArc(k))) {
+                    hasChildren = true;
+                    orphan = deletedVertices.get(compact.getChild(k));
+                }
+            }
+            for (int k = compact.getParentsStart(i); orphan && k < compact.getParentsEnd(i); k++) {
+                orphan = deletedArcs.get(k) || deletedVertices.get(compact.getParent(k));
+            }
+            if (hasChildren && orphan)
+                deletedVertices.set(i);
+        }
+    }
+
+    /**
+     * @return the dom element corresponding to the simulated attack graph XML file
+     */
+    public Element toDomElement() {
+        Element root = new Element("attack_graph");
+
+        //arcs
+        Element arcsElement = new Element("arcs");
+        root.addContent(arcsElement);
+        for (int i = 0; i < compact.getNumberOfVertices(); i++) {
+            for (int k = compact.getParentsStart(i); k < compact.getParentsEnd(i); k++) {
+                if (isLiveArc(k, i))
+                    arcsElement.addContent(AttackGraph.arcToDomElement(compact.getVertexId(compact.getParent(k)), compact.getVertexId(i)));
+            }
+        }
+
+        //vertices
+        Element verticesElement = new Element("vertices");
+        root.addContent(verticesElement);
+        for (Vertex vertex : getVertices()) {
+            verticesElement.addContent(AttackGraph.vertexToDomElement(vertex));
+        }
+
+        return root;
+    }
+
+    /**
+     * Save the simulated attack graph in an xml file
+     *
+     * @param filePath the path in which the attack graph is saved
+     * @throws Exception
+     */
+    public void saveToXmlFile(String filePath) throws Exception {
+        XMLOutputter output = new XMLOutputter(Format.getPrettyFormat());
+        output.output(toDomElement(), new FileOutputStream(filePath));
+    }
+
+    /**
+     * @param outputPath       the path in which the XML attack paths are saved for debugging (null to save nothing)
+     * @param previousMaxScore the previous maximum score
+     * @return The list of attack path extracted from the simulated attack graph
+     * @throws Exception
+     */
+    public List<AttackPath> scoreAttackGraphAndGetAttackPaths(String outputPath, double previousMaxScore) throws Exception {
+        int[] arcSrcTable = new int[getNumberOfArcs()];
+        int[] arcDstTable = new int[arcSrcTable.length];
+        int j = 0;
+        for (int i = 0; i < compact.getNumberOfVertices(); i++) {
+            for (int k = compact.getParentsStart(i); k < compact.getParentsEnd(i); k++) {
+                if (isLiveArc(k, i)) {
+                    arcSrcTable[j] = compact.getVertexId(i);
+                    arcDstTable[j] = compact.getVertexId(compact.getParent(k));
+                    j++;
+                }
+            }
+        }
+        org.fiware.cybercaptor.server.scoring.types.Graph graphToScore = AttackGraph.createGraphToScore(getVertices(), arcSrcTable, arcDstTable);
+        this.globalScore = Launch.globalScore(graphToScore, previousMaxScore);
+
+        return AttackGraph.generateScoredAttackPaths(graphToScore, outputPath, baseAttackGraph);
+    }
+}
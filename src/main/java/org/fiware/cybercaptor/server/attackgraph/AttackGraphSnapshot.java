@@ -0,0 +1,370 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.Vertex.VertexType;
+import org.fiware.cybercaptor.server.attackgraph.compact.CompactAttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.fact.Fact;
+import org.fiware.cybercaptor.server.attackgraph.fact.StringDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Versioned binary snapshot of a MulVAL attack graph and of its scored attack paths.
+ * The snapshot contains :
+ * <ul>
+ * <li>a header : magic number, format version and path of the MulVAL XML file</li>
+ * <li>the dictionary of the distinct fact strings</li>
+ * <li>the vertices : id, fact index in the dictionary, MulVAL metric, type and impact metrics (value and weight)</li>
+ * <li>the arcs, as the array of their source ids and the array of their destination ids</li>
+ * <li>the attack paths : scoring, bit set of their vertices and bit set of their arcs (positions in the
+ * attack graph), and their vertices and arcs that are not in the attack graph</li>
+ * </ul>
+ * The snapshot is read through a memory-mapped file.
+ * Unlike the XML files, the snapshot keeps the impact metrics of the vertices, loaded from the topology, so that the
+ * loaded attack graph can be scored again without the topology.
+ */
+public class AttackGraphSnapshot {
+    /**
+     * The magic number at the beginning of the snapshot files ("CCAG")
+     */
+    public static final int MAGIC_NUMBER = 0x43434147;
+
+    /**
+     * The version of the snapshot format
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The charset of the strings
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The attack graph
+     */
+    private final MulvalAttackGraph attackGraph;
+
+    /**
+     * The attack paths
+     */
+    private final List<AttackPath> attackPaths;
+
+    /**
+     * @param attackGraph the attack graph
+     * @param attackPaths the attack paths
+     */
+    private AttackGraphSnapshot(MulvalAttackGraph attackGraph, List<AttackPath> attackPaths) {
+        this.attackGraph = attackGraph;
+        this.attackPaths = attackPaths;
+    }
+
+    /**
+     * @return the loaded attack graph
+     */
+    public MulvalAttackGraph getAttackGraph() {
+        return attackGraph;
+    }
+
+    /**
+     * @return the loaded attack paths, in the saved order
+     */
+    public List<AttackPath> getAttackPaths() {
+        return attackPaths;
+    }
+
+    /**
+     * Save an attack graph and its attack paths in a snapshot file
+     *
+     * @param attackGraph the attack graph
+     * @param attackPaths the attack paths of this attack graph
+     * @param filePath    the path of the snapshot file
+     * @throws IOException
+     */
+    public static void save(MulvalAttackGraph attackGraph, List<AttackPath> attackPaths, String filePath) throws IOException {
+        CompactAttackGraph compact = attackGraph.getCompactAttackGraph();
+        int numberOfVertices = compact.getNumberOfVertices();
+        List<Arc> arcs = attackGraph.arcs;
+        HashMap<Long, Integer> arcPositions = new HashMap<Long, Integer>(arcs.size() * 2);
+        for (int i = 0; i < arcs.size(); i++) {
+            arcPositions.put(arcKey(arcs.get(i).source.id, arcs.get(i).destination.id), i);
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)));
+        try {
+            output.writeInt(MAGIC_NUMBER);
+            output.writeInt(VERSION);
+            writeString(output, attackGraph.xmlFilePath == null ? "" : attackGraph.xmlFilePath);
+
+            //Fact dictionary
+            HashMap<String, Integer> factIndices = new HashMap<String, Integer>();
+            List<String> facts = new ArrayList<String>();
+            int[] vertexFacts = new int[numberOfVertices];
+            for (int i = 0; i < numberOfVertices; i++) {
+                Vertex vertex = compact.getVertex(i);
+                vertexFacts[i] = -1;
+                if (vertex.fact != null && vertex.fact.factString != null) {
+                    Integer index = factIndices.get(vertex.fact.factString);
+                    if (index == null) {
+                        index = facts.size();
+                        factIndices.put(vertex.fact.factString, index);
+                        facts.add(vertex.fact.factString);
+                    }
+                    vertexFacts[i] = index;
+                }
+            }
+            output.writeInt(facts.size());
+            for (String fact : facts) {
+                writeString(output, fact);
+            }
+
+            //Vertices
+            output.writeInt(numberOfVertices);
+            for (int i = 0; i < numberOfVertices; i++) {
+                Vertex vertex = compact.getVertex(i);
+                output.writeInt(vertex.id);
+                output.writeInt(vertexFacts[i]);
+                output.writeFloat(vertex.mulvalMetric);
+                output.writeByte(compact.getType(i));
+                output.writeInt(vertex.impactMetrics.size());
+                for (ImpactMetric impactMetric : vertex.impactMetrics) {
+                    output.writeDouble(impactMetric.getValue());
+                    output.writeDouble(impactMetric.getWeight());
+                }
+            }
+
+            //Arcs, in the order of the arc list
+            output.writeInt(arcs.size());
+            for (Arc arc : arcs) {
+                output.writeInt(arc.source.id);
+            }
+            for (Arc arc : arcs) {
+                output.writeInt(arc.destination.id);
+            }
+
+            //Attack paths
+            output.writeInt(attackPaths.size());
+            for (AttackPath attackPath : attackPaths) {
+                attackPath.materialize();
+                output.writeDouble(attackPath.scoring);
+                BitSet pathVertices = new BitSet(numberOfVertices);
+                List<Integer> otherVertices = new ArrayList<Integer>();
+                for (int id : attackPath.vertices.keySet()) {
+                    int index = compact.indexOf(id);
+                    if (index >= 0)
+                        pathVertices.set(index);
+                    else
+                        otherVertices.add(id);
+                }
+                BitSet pathArcs = new BitSet(arcs.size());
+                List<Arc> otherArcs = new ArrayList<Arc>();
+                for (Arc arc : attackPath.arcs) {
+                    Integer position = arcPositions.get(arcKey(arc.source.id, arc.destination.id));
+                    if (position != null)
+                        pathArcs.set(position);
+                    else
+                        otherArcs.add(arc);
+                }
+                writeBitSet(output, pathVertices);
+                writeBitSet(output, pathArcs);
+                output.writeInt(otherVertices.size());
+                for (int id : otherVertices) {
+                    output.writeInt(id);
+                }
+                output.writeInt(otherArcs.size());
+                for (Arc arc : otherArcs) {
+                    output.writeInt(arc.source.id);
+                    output.writeInt(arc.destination.id);
+                }
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Load an attack graph and its attack paths from a snapshot file
+     *
+     * @param filePath the path of the snapshot file
+     * @return the loaded snapshot
+     * @throws IOException if the file is not a snapshot of a supported version
+     */
+    public static AttackGraphSnapshot load(String filePath) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filePath, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC_NUMBER)
+                throw new IOException("The file " + filePath + " is not an attack graph snapshot");
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException("The version " + version + " of the attack graph snapshot " + filePath + " is not supported");
+            return read(buffer);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * @param buffer the content of a snapshot file, after its header
+     * @return the loaded snapshot
+     */
+    private static AttackGraphSnapshot read(ByteBuffer buffer) {
+        MulvalAttackGraph attackGraph = new MulvalAttackGraph();
+        attackGraph.xmlFilePath = readString(buffer);
+
+        StringDictionary dictionary = new StringDictionary();
+        String[] facts = new String[buffer.getInt()];
+        for (int i = 0; i < facts.length; i++) {
+            facts[i] = readString(buffer);
+        }
+
+        Vertex[] vertices = new Vertex[buffer.getInt()];
+        for (int i = 0; i < vertices.length; i++) {
+            Vertex vertex = attackGraph.getExistingOrCreateVertex(buffer.getInt());
+            int fact = buffer.getInt();
+            if (fact >= 0)
+                vertex.fact = new Fact(facts[fact], vertex, dictionary);
+            vertex.mulvalMetric = buffer.getFloat();
+            vertex.type = vertexType(buffer.get());
+            int numberOfImpactMetrics = buffer.getInt();
+            for (int k = 0; k < numberOfImpactMetrics; k++) {
+                vertex.impactMetrics.add(new ImpactMetric(buffer.getDouble(), buffer.getDouble()));
+            }
+            vertices[i] = vertex;
+        }
+
+        int[] arcSources = new int[buffer.getInt()];
+        int[] arcDestinations = new int[arcSources.length];
+        buffer.asIntBuffer().get(arcSources);
+        buffer.position(buffer.position() + 4 * arcSources.length);
+        buffer.asIntBuffer().get(arcDestinations);
+        buffer.position(buffer.position() + 4 * arcDestinations.length);
+        for (int i = 0; i < arcSources.length; i++) {
+            attackGraph.appendArc(new Arc(attackGraph.getExistingOrCreateVertex(arcSources[i]),
+                    attackGraph.getExistingOrCreateVertex(arcDestinations[i])));
+        }
+
+        List<AttackPath> attackPaths = new ArrayList<AttackPath>();
+        int numberOfAttackPaths = buffer.getInt();
+        for (int p = 0; p < numberOfAttackPaths; p++) {
+            AttackPath attackPath = new AttackPath();
+            attackPath.scoring = buffer.getDouble();
+            BitSet pathVertices = readBitSet(buffer);
+            BitSet pathArcs = readBitSet(buffer);
+            for (int i = pathVertices.nextSetBit(0); i >= 0; i = pathVertices.nextSetBit(i + 1)) {
+                attackPath.getVertexFromAttackGraph(vertices[i].id, attackGraph);
+            }
+            int numberOfOtherVertices = buffer.getInt();
+            for (int i = 0; i < numberOfOtherVertices; i++) {
+                attackPath.getVertexFromAttackGraph(buffer.getInt(), attackGraph);
+            }
+            for (int i = pathArcs.nextSetBit(0); i >= 0; i = pathArcs.nextSetBit(i + 1)) {
+                attackPath.addArc(new Arc(attackPath.getVertexFromAttackGraph(arcSources[i], attackGraph),
+                        attackPath.getVertexFromAttackGraph(arcDestinations[i], attackGraph)));
+            }
+            int numberOfOtherArcs = buffer.getInt();
+            for (int i = 0; i < numberOfOtherArcs; i++) {
+                Vertex source = attackPath.getVertexFromAttackGraph(buffer.getInt(), attackGraph);
+                Vertex destination = attackPath.getVertexFromAttackGraph(buffer.getInt(), attackGraph);
+                attackPath.addArc(new Arc(source, destination));
+            }
+            attackPaths.add(attackPath);
+        }
+        return new AttackGraphSnapshot(attackGraph, attackPaths);
+    }
+
+    /**
+     * @param typeCode a type code of the compact attack graph
+     * @return the vertex type
+     */
+    private static VertexType vertexType(byte typeCode) {
+        switch (typeCode) {
+            case CompactAttackGraph.AND:
+                return VertexType.AND;
+            case CompactAttackGraph.OR:
+                return VertexType.OR;
+            case CompactAttackGraph.LEAF:
+                return VertexType.LEAF;
+        }
+        return null;
+    }
+
+    /**
+     * @param source      the source vertex id
+     * @param destination the destination vertex id
+     * @return the key of the arc (source, destination)
+     */
+    private static long arcKey(int source, int destination) {
+        return ((long) source << 32) | (destination & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Write a string : its length in bytes and its UTF-8 bytes
+     */
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutputStream, String)}
+     */
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Write a bit set : its number of words and its words
+     */
+    private static void writeBitSet(DataOutputStream output, BitSet bitSet) throws IOException {
+        long[] words = bitSet.toLongArray();
+        output.writeInt(words.length);
+        for (long word : words) {
+            output.writeLong(word);
+        }
+    }
+
+    /**
+     * Read a bit set written by {@link #writeBitSet(DataOutputStream, BitSet)}
+     */
+    private static BitSet readBitSet(ByteBuffer buffer) {
+        long[] words = new long[buffer.getInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = buffer.getLong();
+        }
+        return BitSet.valueOf(words);
+    }
+}
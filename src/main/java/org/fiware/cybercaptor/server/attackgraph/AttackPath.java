@@ -22,6 +22,7 @@ package org.fiware.cybercaptor.server.attackgraph;
 
 import org.fiware.cybercaptor.server.attackgraph.Vertex.VertexType;
 import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand;
+import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand.CommandType;
 import org.fiware.cybercaptor.server.attackgraph.fact.Fact.FactType;
 import org.fiware.cybercaptor.server.informationsystem.InformationSystem;
 import org.fiware.cybercaptor.server.informationsystem.InformationSystemHost;
@@ -29,6 +30,7 @@ import org.fiware.cybercaptor.server.informationsystem.Service;
 import org.fiware.cybercaptor.server.informationsystem.graph.InformationSystemGraph;
 import org.fiware.cybercaptor.server.remediation.*;
 import org.fiware.cybercaptor.server.remediation.RemediationAction.ActionType;
+import org.fiware.cybercaptor.server.scoring.gui.Launch;
 import org.fiware.cybercaptor.server.topology.asset.IPAddress;
 import org.fiware.cybercaptor.server.topology.asset.component.FirewallRule;
 import org.fiware.cybercaptor.server.topology.asset.component.FirewallRule.Action;
@@ -43,6 +45,8 @@ import org.jdom2.input.SAXBuilder;
 import java.io.FileInputStream;
 import java.sql.Connection;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Class used to represent an attack path.
@@ -61,6 +65,150 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      */
     Vertex goal = null;
 
+    /**
+     * The fragment on which the attack path is built, null if it has been built vertex by vertex
+     */
+    private AttackPathFragment fragment = null;
+
+    /**
+     * False until the vertices and the arcs of the fragment have been added to the attack path
+     */
+    private boolean materialized = true;
+
+    /**
+     * The circuit evaluating the sets of leaves that cut the attack path, built on demand
+     */
+    private LeafCutCircuit leafCutCircuit = null;
+
+    /**
+     * The fingerprint of the fragment, computed on demand while the attack path is not materialized
+     */
+    private AttackPathFingerprint fragmentFingerprint = null;
+
+    /**
+     * Create an empty attack path
+     */
+    public AttackPath() {
+    }
+
+    /**
+     * Create an attack path built on a fragment. Its vertices and arcs are only computed when they are needed,
+     * so that the duplicate attack paths can be skipped on their fingerprints without being copied. Until
+     * {@link #materialize()} is called, the vertices and arcs fields are empty : the attack path must be materialized
+     * before it leaves the generation.
+     *
+     * @param fragment the fragment of the attack path
+     */
+    AttackPath(AttackPathFragment fragment) {
+        this.fragment = fragment;
+        this.materialized = false;
+    }
+
+    /**
+     * @return the fragment on which the attack path is built, null if it has been built vertex by vertex
+     */
+    public AttackPathFragment getFragment() {
+        return fragment;
+    }
+
+    @Override
+    public void materialize() {
+        if (!materialized) {
+            materialized = true;
+            fragment.addTo(this);
+        }
+    }
+
+    /**
+     * Get the fingerprint of the vertices and arcs of the attack path. The fingerprint of an attack path that is not
+     * materialized yet is computed from its fragment, without materializing it.
+     *
+     * @return the fingerprint of the attack path
+     */
+    @Override
+    public AttackPathFingerprint getFingerprint() {
+        if (!materialized) {
+            if (fragmentFingerprint == null)
+                fragmentFingerprint = fragment.getFingerprint();
+            return fragmentFingerprint;
+        }
+        return super.getFingerprint();
+    }
+
+    /**
+     * Two attack paths are equal if they have the same vertices and the same arcs, whatever their scorings.
+     * The fingerprints are compared first : the attack paths are only materialized if they have the same one.
+     * As an attack path can still be modified, its hash code changes with it : the sets of attack paths use their
+     * fingerprints as keys.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof AttackPath))
+            return false;
+        AttackPath other = (AttackPath) o;
+        if (!getFingerprint().equals(other.getFingerprint()))
+            return false;
+        materialize();
+        other.materialize();
+        if (!vertices.keySet().equals(other.vertices.keySet()) || arcs.size() != other.arcs.size())
+            return false;
+        for (Arc arc : arcs) {
+            if (other.getArc(arc.source, arc.destination) == null)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return getFingerprint().hashCode();
+    }
+
+    /**
+     * Remove the attack paths that have the same vertices and arcs as a previous attack path of the list
+     *
+     * @param attackPaths a list of attack paths
+     * @return the number of attack paths removed
+     */
+    public static int removeDuplicates(List<AttackPath> attackPaths) {
+        Set<AttackPathFingerprint> fingerprints = new HashSet<AttackPathFingerprint>();
+        List<AttackPath> result = new ArrayList<AttackPath>(attackPaths.size());
+        for (AttackPath attackPath : attackPaths) {
+            if (fingerprints.add(attackPath.getFingerprint()))
+                result.add(attackPath);
+        }
+        int numberOfDuplicates = attackPaths.size() - result.size();
+        if (numberOfDuplicates > 0) {
+            attackPaths.clear();
+            attackPaths.addAll(result);
+        }
+        return numberOfDuplicates;
+    }
+
+    /**
+     * Sort attack paths with their scoring in descending order, then remove the attack paths that have the same
+     * vertices and arcs as a previous attack path of the list
+     *
+     * @param attackPaths a list of attack paths
+     * @return the number of attack paths removed
+     */
+    public static int sortAndRemoveDuplicates(List<AttackPath> attackPaths) {
+        sortAttackPaths(attackPaths);
+        int numberOfDuplicates = removeDuplicates(attackPaths);
+        logRemovedDuplicates(numberOfDuplicates);
+        return numberOfDuplicates;
+    }
+
+    /**
+     * @param numberOfDuplicates the number of duplicate attack paths removed from a list, logged if it is not 0
+     */
+    static void logRemovedDuplicates(int numberOfDuplicates) {
+        if (numberOfDuplicates > 0)
+            Logger.getAnonymousLogger().log(Level.INFO, "Number of duplicate attack paths removed : " + numberOfDuplicates);
+    }
+
     /**
      * @param leavesToCorrect      the list of leaves that should be corrected
      * @param indexInPath          the index where we are in the list of leaves
@@ -206,12 +354,46 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
                 }
             }
         }
-        sortAttackPaths(result);
+        sortAndRemoveDuplicates(result);
 
         return result;
 
     }
 
+    /**
+     * Create the attack paths generated by the scoring function, without writing them in a file
+     *
+     * @param scoredAttackPaths  the attack paths generated by the scoring function (null for a target that can not
+     *                           be reached)
+     * @param scores             the scores of the attack paths, given by {@link Launch#scoreAttackPaths}
+     * @param relatedAttackGraph the attack graph from which the attack paths have been generated
+     * @return the scored attack paths, sorted in descending order of scoring, without duplicates
+     */
+    public static List<AttackPath> loadAttackPathsFromScoring(org.fiware.cybercaptor.server.scoring.types.Graph[] scoredAttackPaths,
+                                                              double[] scores, AttackGraph relatedAttackGraph) {
+        List<AttackPath> result = new ArrayList<AttackPath>();
+
+        if (scoredAttackPaths != null) {
+            for (int i = 0; i < scoredAttackPaths.length; i++) {
+                org.fiware.cybercaptor.server.scoring.types.Graph scoredAttackPath = scoredAttackPaths[i];
+                if (scoredAttackPath != null && scoredAttackPath.getArcs() != null) {
+                    AttackPath attackPath = new AttackPath();
+                    attackPath.scoring = scores[i];
+                    for (org.fiware.cybercaptor.server.scoring.types.Arc scoredArc : scoredAttackPath.getArcs()) {
+                        //The scoring arcs are in the MulVAL order, as in the XML files
+                        Vertex destination = attackPath.getVertexFromAttackGraph(scoredArc.getSource(), relatedAttackGraph);
+                        Vertex source = attackPath.getVertexFromAttackGraph(scoredArc.getDestination(), relatedAttackGraph);
+                        attackPath.appendArc(new Arc(source, destination));
+                    }
+                    result.add(attackPath);
+                }
+            }
+        }
+        sortAndRemoveDuplicates(result);
+
+        return result;
+    }
+
     /**
      * Sort attack paths with their scoring in descending order
      */
@@ -223,6 +405,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @return the leaves of the attack graph
      */
     public List<Vertex> getLeavesThatCanBeRemediated() {
+        materialize();
         List<Vertex> result = new ArrayList<Vertex>();
         for (int i : this.vertices.keySet()) {
             Vertex vertex = this.vertices.get(i);
@@ -231,12 +414,13 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
                 if (vertex.fact != null && vertex.fact.datalogCommand != null
                         && vertex.fact.datalogCommand.command != null) {
                     String command = vertex.fact.datalogCommand.command;
-                    if (command.equals("vulExists") || command.equals("hacl") || command.equals("haclprimit") || command.toLowerCase().contains("vlan") || command.contains("attackerLocated"))
+                    CommandType commandType = vertex.fact.datalogCommand.commandType;
+                    if (commandType == CommandType.VUL_EXISTS || commandType == CommandType.HACL || commandType == CommandType.HACLPRIMIT || command.toLowerCase().contains("vlan") || command.contains("attackerLocated"))
                         result.add(vertex);
                 }
             } else {
                 if (vertex.fact != null && vertex.fact.datalogCommand != null
-                        && vertex.fact.datalogCommand.command != null && vertex.fact.datalogCommand.command.equals("hacl")) {
+                        && vertex.fact.datalogCommand.command != null && vertex.fact.datalogCommand.commandType == CommandType.HACL) {
                     result.add(vertex);
                 }
             }
@@ -248,6 +432,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @return the goal of the attack graph
      */
     public Vertex getGoal() {
+        materialize();
         if (goal == null) {
             for (int i : this.vertices.keySet()) {
                 Vertex vertex = this.vertices.get(i);
@@ -265,37 +450,14 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @return the list of possible remediation actions to remediate this attack path : remediation[1] OR remediation[2] OR remediation[3] ; remediation[1] = remediation[1][1] AND remediation[1][2]...
      */
     public List<List<RemediationAction>> getRemediationAction(InformationSystem topology, Connection conn, String costParametersFolder) throws Exception {
+        materialize();
         List<List<RemediationAction>> result = new ArrayList<List<RemediationAction>>();
 
 
         List<Vertex> leaves = this.getLeavesThatCanBeRemediated();
 
         //Compute all possible sufficient combination of leaves to cut the attack path
-        List<List<Vertex>> sufficientLeavesToCutPath = new ArrayList<List<Vertex>>();
-        List<Vertex> remainingLeaves = new ArrayList<Vertex>(leaves);
-        int simultaneousLeavesNumber = 1;
-
-        while (simultaneousLeavesNumber <= remainingLeaves.size()) { //While we take a number of leaves lower than the number of remaining leaves
-            List<List<Integer>> combination = combination(simultaneousLeavesNumber, remainingLeaves.size());
-            List<Vertex> leavesSufficient = new ArrayList<Vertex>();
-
-            for (List<Integer> aCombination : combination) {
-                List<Vertex> leavesToTest = new ArrayList<Vertex>();
-                for (Integer anACombination : aCombination) {
-                    leavesToTest.add(remainingLeaves.get(anACombination));
-                }
-                if (leavesMandatoryForGoal(leavesToTest)) {
-                    sufficientLeavesToCutPath.add(leavesToTest);
-                    leavesSufficient.addAll(leavesToTest);
-                }
-            }
-
-            for (Vertex aLeavesSufficient : leavesSufficient) {
-                remainingLeaves.remove(aLeavesSufficient);
-            }
-
-            simultaneousLeavesNumber++;
-        }
+        List<List<Vertex>> sufficientLeavesToCutPath = getSufficientLeavesToCutPath(leaves);
 
         //Create a hashlist of the list of remediation for each leaf (possible_actions[1] OR possible_actions[2] OR possible_actions[3] .... with possible_actions[1] = possible_actions[1][1] AND possible_actions[1][2] AND possible_actions[1][3]
         HashMap<Integer, List<List<RemediationAction>>> howToRemediateLeaves = new HashMap<Integer, List<List<RemediationAction>>>();
@@ -329,38 +491,14 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @return the list of possible remediation actions to remediate this attack path : remediation[1] OR remediation[2] OR remediation[3] ; remediation[1] = remediation[1][1] AND remediation[1][2]... [Withour snort rules]
      */
     public List<List<RemediationAction>> getRemedationActions(InformationSystem topology, Connection conn, String costParametersFolder) throws Exception {
+        materialize();
         List<List<RemediationAction>> result = new ArrayList<List<RemediationAction>>();
 
 
         List<Vertex> leaves = this.getLeavesThatCanBeRemediated();
 
         //Compute all possible sufficient combination of leaves to cut the attack path
-        List<List<Vertex>> sufficientLeavesToCutPath = new ArrayList<List<Vertex>>();
-        List<Vertex> remainingLeaves = new ArrayList<Vertex>(leaves);
-        int simultaneousLeavesNumber = 1;
-
-        while (simultaneousLeavesNumber <= remainingLeaves.size()) { //While we take a number of leaves lower than the number of remaining leaves
-            List<List<Integer>> combination = combination(simultaneousLeavesNumber, remainingLeaves.size());
-            List<Vertex> leavesSufficient = new ArrayList<Vertex>();
-
-            //TODO : improve this function : can be much faster.
-            for (List<Integer> aCombination : combination) {
-                List<Vertex> leavesToTest = new ArrayList<Vertex>();
-                for (Integer anACombination : aCombination) {
-                    leavesToTest.add(remainingLeaves.get(anACombination));
-                }
-                if (leavesMandatoryForGoal(leavesToTest)) {
-                    sufficientLeavesToCutPath.add(leavesToTest);
-                    leavesSufficient.addAll(leavesToTest);
-                }
-            }
-
-            for (Vertex aLeavesSufficient : leavesSufficient) {
-                remainingLeaves.remove(aLeavesSufficient);
-            }
-
-            simultaneousLeavesNumber++;
-        }
+        List<List<Vertex>> sufficientLeavesToCutPath = getSufficientLeavesToCutPath(leaves);
 
         //Create a hashlist of the list of remediation for each leaf (possible_actions[1] OR possible_actions[2] OR possible_actions[3] .... with possible_actions[1] = possible_actions[1][1] AND possible_actions[1][2] AND possible_actions[1][3]
         HashMap<Integer, List<List<RemediationAction>>> howToRemediateLeaves = new HashMap<Integer, List<List<RemediationAction>>>();
@@ -396,6 +534,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @throws Exception
      */
     public List<DeployableRemediation> getDeployableRemediations(InformationSystem topology, Connection conn, String costParametersFolder) throws Exception {
+        materialize();
         List<List<RemediationAction>> remediationActions = this.getRemedationActions(topology, conn, costParametersFolder);
         List<DeployableRemediation> result = new ArrayList<DeployableRemediation>();
 
@@ -463,51 +602,62 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      */
     public void computeScoring() {
         scoring = 1.;
-        for (int i : this.vertices.keySet()) {
-            Vertex vertex = this.vertices.get(i);
-            if (vertex.fact != null && vertex.fact.type == FactType.DATALOG_FACT) {
-                DatalogCommand command = vertex.fact.datalogCommand;
-                if (command.command.equals("vulExists")) {
-                    scoring *= 1. / 2;
-                }
-                if (command.command.equals("cvss") && command.params[1].equals("l")) {
-                    scoring *= 1. / 5;
-                }
-                if (command.command.equals("cvss") && command.params[1].equals("m")) {
-                    scoring *= 1. / 10;
-                }
-                if (command.command.equals("cvss") && command.params[1].equals("h")) {
-                    scoring *= 1. / 20;
-                } else if (command.command.equals("inCompetent")) {
-                    scoring *= 1. / 100;
-                }
-                //Cheat to have the good attack path for demo first :
-                if (command.command.equals("vulExists") && command.params[1].equals("CVE-2004-1315")) {
-                    scoring *= 10;
-                }
-                if (command.command.equals("vulExists") && command.params[1].equals("CVE-2012-3951")) {
-                    scoring *= 10;
-                }
-                if (command.command.equals("networkServiceInfo") && command.params[1].equals("sonicwall_scrutinizer")) {
-                    scoring *= 10;
-                }
-                if (command.command.equals("hacl") && command.params[0].equals("192.168.240.200") && command.params[1].equals("192.168.240.100") && command.params[3].equals("3306")) {
-                    scoring *= 10;
-                }
-                if (command.command.equals("hacl") && command.params[0].equals("internet") && command.params[1].equals("192.168.240.200") && command.params[3].equals("80")) {
-                    scoring *= 10;
-                }
-                if (command.command.equals("execCode") && command.params[0].equals("192.168.240.100")) {
-                    scoring *= 10;
-                }
-                if (command.command.equals("execCode") && command.params[0].equals("192.168.240.200")) {
-                    scoring *= 10;
-                }
-                if (command.command.equals("netAccess") && command.params[0].equals("192.168.240.200")) {
-                    scoring *= 10;
-                }
+        //The vertices of a lazy attack path are not kept to score it
+        Collection<Vertex> attackPathVertices = materialized ? this.vertices.values() : fragment.getVertices().values();
+        for (Vertex vertex : attackPathVertices) {
+            scoring *= getScoringFactor(vertex);
+        }
+    }
+
+    /**
+     * @param vertex a vertex
+     * @return the factor by which the scoring of an attack path is multiplied when it contains this vertex
+     */
+    public static double getScoringFactor(Vertex vertex) {
+        double factor = 1.;
+        if (vertex.fact != null && vertex.fact.type == FactType.DATALOG_FACT) {
+            DatalogCommand command = vertex.fact.datalogCommand;
+            if (command.commandType == CommandType.VUL_EXISTS) {
+                factor *= 1. / 2;
+            }
+            if (command.commandType == CommandType.CVSS && command.params[1].equals("l")) {
+                factor *= 1. / 5;
+            }
+            if (command.commandType == CommandType.CVSS && command.params[1].equals("m")) {
+                factor *= 1. / 10;
+            }
+            if (command.commandType == CommandType.CVSS && command.params[1].equals("h")) {
+                factor *= 1. / 20;
+            } else if (command.commandType == CommandType.IN_COMPETENT) {
+                factor *= 1. / 100;
+            }
+            //Cheat to have the good attack path for demo first :
+            if (command.commandType == CommandType.VUL_EXISTS && command.params[1].equals("CVE-2004-1315")) {
+                factor *= 10;
+            }
+            if (command.commandType == CommandType.VUL_EXISTS && command.params[1].equals("CVE-2012-3951")) {
+                factor *= 10;
+            }
+            if (command.commandType == CommandType.NETWORK_SERVICE_INFO && command.params[1].equals("sonicwall_scrutinizer")) {
+                factor *= 10;
+            }
+            if (command.commandType == CommandType.HACL && command.params[0].equals("192.168.240.200") && command.params[1].equals("192.168.240.100") && command.params[3].equals("3306")) {
+                factor *= 10;
+            }
+            if (command.commandType == CommandType.HACL && command.params[0].equals("internet") && command.params[1].equals("192.168.240.200") && command.params[3].equals("80")) {
+                factor *= 10;
+            }
+            if (command.commandType == CommandType.EXEC_CODE && command.params[0].equals("192.168.240.100")) {
+                factor *= 10;
+            }
+            if (command.commandType == CommandType.EXEC_CODE && command.params[0].equals("192.168.240.200")) {
+                factor *= 10;
+            }
+            if (command.commandType == CommandType.NET_ACCESS && command.params[0].equals("192.168.240.200")) {
+                factor *= 10;
             }
         }
+        return factor;
     }
 
     /**
@@ -518,6 +668,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @throws Exception
      */
     public void printListRemediations(InformationSystem topology, Connection conn) throws Exception {
+        materialize();
         List<Vertex> leaves = this.getLeavesThatCanBeRemediated();
         if (this.getGoal() != null) {
             System.out.print("The goal of this attack is vertex " + this.getGoal().id);
@@ -527,31 +678,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
         }
         System.out.println("The attack path contains " + leaves.size() + " leaves : ");
 
-        List<List<Vertex>> sufficientLeavesToCutPath = new ArrayList<List<Vertex>>();
-        List<Vertex> remainingLeaves = new ArrayList<Vertex>(leaves);
-        int simultaneousLeavesNumber = 1;
-
-        while (simultaneousLeavesNumber <= remainingLeaves.size()) { //While we take a number of leaves lower than the number of remaining leaves
-            List<List<Integer>> combination = combination(simultaneousLeavesNumber, remainingLeaves.size());
-            List<Vertex> leavesSufficient = new ArrayList<Vertex>();
-
-            for (List<Integer> aCombination : combination) {
-                List<Vertex> leavesToTest = new ArrayList<Vertex>();
-                for (Integer anACombination : aCombination) {
-                    leavesToTest.add(remainingLeaves.get(anACombination));
-                }
-                if (leavesMandatoryForGoal(leavesToTest)) {
-                    sufficientLeavesToCutPath.add(leavesToTest);
-                    leavesSufficient.addAll(leavesToTest);
-                }
-            }
-
-            for (Vertex aLeavesSufficient : leavesSufficient) {
-                remainingLeaves.remove(aLeavesSufficient);
-            }
-
-            simultaneousLeavesNumber++;
-        }
+        List<List<Vertex>> sufficientLeavesToCutPath = getSufficientLeavesToCutPath(leaves);
 
         System.out.println("Here are the list of all the combinations of leaves that permit to cut the attack path ");
         for (int i = 0; i < sufficientLeavesToCutPath.size(); i++) {
@@ -583,14 +710,15 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @throws Exception
      */
     public String remediateLeaf(Vertex leaf, InformationSystem topology, Connection conn) throws Exception {
+        materialize();
         String result = "";
         result += "* Leaf " + leaf.id + "\n";
         if (leaf.fact != null && leaf.fact.type == FactType.DATALOG_FACT && leaf.fact.datalogCommand != null) {
             DatalogCommand command = leaf.fact.datalogCommand;
             result += "Datalog fact : " + command.command + "\n";
 
-            switch (command.command) {
-                case "vulExists": {
+            switch (command.commandType) {
+                case VUL_EXISTS: {
                     Vulnerability vuln = new Vulnerability(conn, Vulnerability.getIdVulnerabilityFromCVE(command.params[1], conn));
                     List<List<InformationSystemHost>> attackerPath = getAttackerRouteToAVulnerability(leaf, topology);
                     result += "To exploit the vulnerability " + vuln.cve + " the packets of the attacker will pass the following machines : " + "\n";
@@ -624,16 +752,16 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
                     }
                     break;
                 }
-                case "inCompetent":
+                case IN_COMPETENT:
                     result += "To protect against this attack, the user \"" + command.params[0] + "\" should be trained " + "\n";
                     break;
-                case "attackerLocated":
+                case ATTACKER_LOCATED:
                     result += "To protect against this attack, people should know that the attacker is located on \"" + command.params[0] + "\" \n";
                     break;
-                case "hasAccount":
+                case HAS_ACCOUNT:
                     result += "To protect against this attack, the account \"" + command.params[2] + "\" on the machine \"" + leaf.getRelatedMachine(topology).getName() + "\" should be closed\n";
                     break;
-                case "hacl": {
+                case HACL: {
                     InformationSystemHost from = topology.getHostByNameOrIPAddress(command.params[0]);
                     InformationSystemHost to = topology.getHostByNameOrIPAddress(command.params[1]);
                     List<List<InformationSystemHost>> attackerPath = command.getRoutesBetweenHostsOfHacl(topology);
@@ -679,6 +807,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @throws Exception
      */
     public List<List<RemediationAction>> getRemediationActionForLeaf(Vertex leaf, InformationSystem topology, Connection conn, String costParametersFolder) throws Exception {
+        materialize();
         return getRemediationActionForLeaf(leaf, topology, conn, costParametersFolder, true);
     }
 
@@ -692,12 +821,13 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @throws Exception
      */
     public List<List<RemediationAction>> getRemediationActionForLeaf(Vertex leaf, InformationSystem topology, Connection conn, String costParametersFolder, boolean useSnortRule) throws Exception {
+        materialize();
         List<List<RemediationAction>> result = new ArrayList<List<RemediationAction>>();
         if (leaf.fact != null && leaf.fact.type == FactType.DATALOG_FACT && leaf.fact.datalogCommand != null) {
             DatalogCommand command = leaf.fact.datalogCommand;
 
-            switch (command.command) {
-                case "vulExists": {
+            switch (command.commandType) {
+                case VUL_EXISTS: {
                     List<RemediationAction> remediateVulnerability = new ArrayList<RemediationAction>();
                     Vulnerability vulnerability = new Vulnerability(conn, Vulnerability.getIdVulnerabilityFromCVE(command.params[1], conn));
                     List<List<InformationSystemHost>> attackerPath = getAttackerRouteToAVulnerability(leaf, topology);
@@ -743,7 +873,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
                     }
                     break;
                 }
-                case "inCompetent":
+                case IN_COMPETENT:
                     List<RemediationAction> trainUser = new ArrayList<RemediationAction>();
                     RemediationAction remediation = new RemediationAction(ActionType.TRAIN_USER, costParametersFolder);
                     remediation.setRelatedVertex(leaf);
@@ -751,8 +881,8 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
                     trainUser.add(remediation);
                     result.add(trainUser);
                     break;
-                case "hacl":
-                case "haclprimit": {
+                case HACL:
+                case HACLPRIMIT: {
                     InformationSystemHost from = topology.getHostByNameOrIPAddress(command.params[0]);
                     InformationSystemHost to = topology.getHostByNameOrIPAddress(command.params[1]);
                     List<List<InformationSystemHost>> attackerPath = command.getRoutesBetweenHostsOfHacl(topology);
@@ -848,6 +978,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @throws Exception
      */
     public List<List<InformationSystemHost>> getAttackerRouteToAVulnerability(Vertex leaf, InformationSystem topology) throws Exception {
+        materialize();
         Vertex child = leaf.children.get(0);
         if (child != null) {
             Vertex netAccessVertex = this.getParentOfVertexWithFactCommand(child, "netAccess");
@@ -873,18 +1004,51 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
         }
     }
 
+    /**
+     * Compute the combinations of leaves sufficient to cut the attack path, by increasing size, with the maximum
+     * size of the property "remediation-maximum-cut-size" of the project properties
+     *
+     * @param leaves the leaves that can be remediated
+     * @return the combinations of leaves whose remediation prevents to reach the goal of the attack path
+     */
+    public List<List<Vertex>> getSufficientLeavesToCutPath(List<Vertex> leaves) {
+        return getSufficientLeavesToCutPath(leaves, MinimalCutSets.getConfiguredMaximumCutSize());
+    }
+
+    /**
+     * Compute the combinations of leaves sufficient to cut the attack path, by increasing size. These are the
+     * combinations of leaves for which {@link #leavesMandatoryForGoal(List)} is true, without the combinations
+     * containing a leaf of a smaller combination, but they are computed directly from the minimal cut sets.
+     *
+     * @param leaves         the leaves that can be remediated
+     * @param maximumCutSize the maximum number of leaves of a combination, or {@link MinimalCutSets#NO_LIMIT}
+     * @return the combinations of leaves whose remediation prevents to reach the goal of the attack path
+     */
+    public List<List<Vertex>> getSufficientLeavesToCutPath(List<Vertex> leaves, int maximumCutSize) {
+        return new MinimalCutSets(this, leaves, maximumCutSize).compute(this.getGoal());
+    }
+
+    /**
+     * @return the circuit evaluating the sets of leaves that cut this attack path, (re)built if the attack path
+     * has been modified
+     */
+    public LeafCutCircuit getLeafCutCircuit() {
+        Vertex goal = this.getGoal();
+        LeafCutCircuit circuit = leafCutCircuit;
+        if (circuit == null || circuit.getCompactAttackGraph() != getCompactAttackGraph()
+                || circuit.getGoal() != (goal == null ? -1 : circuit.getCompactAttackGraph().indexOf(goal.id))) {
+            circuit = new LeafCutCircuit(this, goal);
+            leafCutCircuit = circuit;
+        }
+        return circuit;
+    }
+
     /**
      * @param leaf an attack path leaf
      * @return true if the leaf is mandatory to reach the goal of the attack Path
      */
     public boolean leafMandatoryForGoal(Vertex leaf) {
-        Vertex goal = this.getGoal();
-        if (goal != null) {
-            List<Vertex> leaf_list = new ArrayList<Vertex>();
-            leaf_list.add(leaf);
-            return leavesMandatoryForVertex(leaf_list, goal, new ArrayList<Vertex>());
-        }
-        return false;
+        return getLeafCutCircuit().cuts(Collections.singletonList(leaf));
     }
 
     /**
@@ -892,45 +1056,16 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @return true if the leaves are mandatory to reach the goal
      */
     public boolean leavesMandatoryForGoal(List<Vertex> leaves) {
-        Vertex goal = this.getGoal();
-        return goal != null && leavesMandatoryForVertex(leaves, goal, new ArrayList<Vertex>());
+        return getLeafCutCircuit().cuts(leaves);
     }
 
     /**
-     * Recursive function that test whether or not leaves are mandatory to access a vertex
-     *
-     * @param leaves the leaves that will be tested
-     * @param v      the vertex
-     * @return true if the leaves are mandatory / else false
+     * @param leafCombinations combinations of leaves
+     * @return for each combination, true if its leaves are mandatory to reach the goal. The combinations are
+     * evaluated together, 64 at a time.
      */
-    private boolean leavesMandatoryForVertex(List<Vertex> leaves, Vertex v, List<Vertex> alreadySeen) {
-        if (leaves.contains(v))
-            return true;
-        else if (v.type == VertexType.AND) {
-            boolean result = false;
-            v.computeParentsAndChildren(this);
-            alreadySeen.add(v);
-            for (int i = 0; i < v.parents.size(); i++) {
-                Vertex parent = v.parents.get(i);
-                if (!alreadySeen.contains(parent))
-                    result = result || leavesMandatoryForVertex(leaves, parent, alreadySeen);
-            }
-            alreadySeen.remove(v);
-            return result;
-        } else if (v.type == VertexType.OR) {
-            boolean result = true;
-            v.computeParentsAndChildren(this);
-            alreadySeen.add(v);
-            for (int i = 0; i < v.parents.size(); i++) {
-                Vertex parent = v.parents.get(i);
-                if (!alreadySeen.contains(parent))
-                    result = result && leavesMandatoryForVertex(leaves, parent, alreadySeen);
-            }
-            alreadySeen.remove(v);
-            return result;
-        } else {
-            return false;
-        }
+    public boolean[] leafCombinationsMandatoryForGoal(List<? extends Collection<Vertex>> leafCombinations) {
+        return getLeafCutCircuit().cuts(leafCombinations);
     }
 
     /**
@@ -956,7 +1091,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
                     Vertex destination = getVertexFromAttackGraph((int) Double.parseDouble(dst_element.getText()), attackGraph);
                     Vertex source = getVertexFromAttackGraph((int) Double.parseDouble(src_element.getText()), attackGraph);
                     Arc arc = new Arc(source, destination);
-                    this.arcs.add(arc);
+                    this.appendArc(arc);
                 }
             }
         }
@@ -981,6 +1116,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
      * @return the dom element corresponding to this attack path XML file
      */
     public Element toDomXMLElement() {
+        materialize();
         Element root = new Element("attack_path");
 
         Element scoringElement = new Element("scoring");
@@ -1005,6 +1141,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
 
     @Override
     public String toString() {
+        materialize();
         String result = "AttackPath : ";
         for (int i : this.vertices.keySet()) {
             result += this.vertices.get(i).id + " - ";
@@ -1031,6 +1168,7 @@ public class AttackPath extends MulvalAttackGraph implements Cloneable {
 
         if (this.goal != null)
             copie.goal = copie.vertices.get(this.goal.id);
+        copie.leafCutCircuit = null;
 
         return copie;
     }
@@ -0,0 +1,143 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+/**
+ * Canonical 128-bit fingerprint of the vertices and arcs of an attack graph (or attack path).
+ * Each vertex id and each arc (source id, destination id) is hashed into two independent 64-bit words, and the
+ * fingerprint is the sum of these hashes : it does not depend on the order in which the vertices and arcs have been
+ * added, and can be computed incrementally, each new vertex or arc adding its own hash.
+ * Two attack paths with the same vertices and arcs have the same fingerprint, two different attack paths have
+ * the same fingerprint with a probability of about 2^-128.
+ */
+public final class AttackPathFingerprint {
+    /**
+     * The fingerprint of an attack path without vertices nor arcs
+     */
+    public static final AttackPathFingerprint EMPTY = new AttackPathFingerprint(0, 0);
+
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    private static final long HIGH_VERTEX_SEED = 0x243F6A8885A308D3L;
+    private static final long LOW_VERTEX_SEED = 0x13198A2E03707344L;
+    private static final long HIGH_ARC_SEED = 0xA4093822299F31D0L;
+    private static final long LOW_ARC_SEED = 0x082EFA98EC4E6C89L;
+
+    /**
+     * The high 64 bits of the fingerprint
+     */
+    private final long high;
+
+    /**
+     * The low 64 bits of the fingerprint
+     */
+    private final long low;
+
+    private AttackPathFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param vertexId the id of a vertex that is not in the attack path yet
+     * @return the fingerprint of the attack path with this vertex
+     */
+    public AttackPathFingerprint withVertex(int vertexId) {
+        return new AttackPathFingerprint(high + mix(vertexId * GOLDEN_RATIO + HIGH_VERTEX_SEED),
+                low + mix(vertexId * GOLDEN_RATIO + LOW_VERTEX_SEED));
+    }
+
+    /**
+     * @param sourceId      the id of the source of an arc that is not in the attack path yet
+     * @param destinationId the id of the destination of the arc
+     * @return the fingerprint of the attack path with this arc
+     */
+    public AttackPathFingerprint withArc(int sourceId, int destinationId) {
+        long key = ((long) sourceId << 32) | (destinationId & 0xFFFFFFFFL);
+        return new AttackPathFingerprint(high + mix(key * GOLDEN_RATIO + HIGH_ARC_SEED),
+                low + mix(key * GOLDEN_RATIO + LOW_ARC_SEED));
+    }
+
+    /**
+     * Compute the fingerprint of the vertices and arcs of an attack graph, in one pass
+     *
+     * @param attackGraph an attack graph (or attack path)
+     * @return the fingerprint of its vertices and arcs
+     */
+    public static AttackPathFingerprint of(AttackGraph attackGraph) {
+        attackGraph.materialize();
+        long high = 0;
+        long low = 0;
+        for (int vertexId : attackGraph.vertices.keySet()) {
+            high += mix(vertexId * GOLDEN_RATIO + HIGH_VERTEX_SEED);
+            low += mix(vertexId * GOLDEN_RATIO + LOW_VERTEX_SEED);
+        }
+        for (Arc arc : attackGraph.arcs) {
+            long key = ((long) arc.source.id << 32) | (arc.destination.id & 0xFFFFFFFFL);
+            high += mix(key * GOLDEN_RATIO + HIGH_ARC_SEED);
+            low += mix(key * GOLDEN_RATIO + LOW_ARC_SEED);
+        }
+        return new AttackPathFingerprint(high, low);
+    }
+
+    /**
+     * @param value a 64-bit value
+     * @return the value with all its bits mixed (finalizer of the SplitMix64 generator)
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * @return the high 64 bits of the fingerprint
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * @return the low 64 bits of the fingerprint
+     */
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof AttackPathFingerprint))
+            return false;
+        AttackPathFingerprint other = (AttackPathFingerprint) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -0,0 +1,158 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable part of an attack path, shared by all the attack paths built on it.
+ * A fragment is either a leaf, a fragment extended with a vertex and the arc arriving to this vertex,
+ * or the union of several fragments. The attack paths that differ only by a few fragments share all the others,
+ * instead of each holding a copy of all their vertices and arcs.
+ */
+public class AttackPathFragment {
+    /**
+     * The vertex added by this fragment, null for a union
+     */
+    private final Vertex vertex;
+
+    /**
+     * The arc added by this fragment (arriving to the vertex), null for a leaf or a union
+     */
+    private final Arc arc;
+
+    /**
+     * The fragments on which this fragment is built
+     */
+    private final AttackPathFragment[] parts;
+
+    private AttackPathFragment(Vertex vertex, Arc arc, AttackPathFragment[] parts) {
+        this.vertex = vertex;
+        this.arc = arc;
+        this.parts = parts;
+    }
+
+    /**
+     * @param leaf a leaf of the attack graph
+     * @return the fragment made only of this leaf
+     */
+    public static AttackPathFragment leaf(Vertex leaf) {
+        return new AttackPathFragment(leaf, null, new AttackPathFragment[0]);
+    }
+
+    /**
+     * @param fragment a fragment arriving to the vertex parent
+     * @param parent   the last vertex of the fragment
+     * @param vertex   a child of the parent
+     * @return the fragment extended with the vertex and the arc from the parent to the vertex
+     */
+    public static AttackPathFragment extend(AttackPathFragment fragment, Vertex parent, Vertex vertex) {
+        return new AttackPathFragment(vertex, new Arc(parent, vertex), new AttackPathFragment[]{fragment});
+    }
+
+    /**
+     * @param fragments fragments, in the order in which their arcs are added to the attack paths
+     * @return the union of the fragments
+     */
+    public static AttackPathFragment union(AttackPathFragment... fragments) {
+        return new AttackPathFragment(null, null, fragments.clone());
+    }
+
+    /**
+     * Add the vertices and the arcs of the fragment to an attack path. The arcs of the parts of a fragment are added
+     * before its own arc, in the order of the parts.
+     *
+     * @param attackPath the attack path
+     */
+    public void addTo(AttackPath attackPath) {
+        //Iterative post-order traversal, the fragments may be as deep as the attack graph
+        Deque<AttackPathFragment> fragments = new ArrayDeque<AttackPathFragment>();
+        Deque<Integer> nextParts = new ArrayDeque<Integer>();
+        fragments.push(this);
+        nextParts.push(0);
+        while (!fragments.isEmpty()) {
+            AttackPathFragment fragment = fragments.peek();
+            int nextPart = nextParts.pop();
+            if (nextPart < fragment.parts.length) {
+                nextParts.push(nextPart + 1);
+                fragments.push(fragment.parts[nextPart]);
+                nextParts.push(0);
+            } else {
+                fragments.pop();
+                if (fragment.vertex != null)
+                    attackPath.vertices.put(fragment.vertex.id, fragment.vertex);
+                if (fragment.arc != null)
+                    attackPath.addArc(fragment.arc);
+            }
+        }
+    }
+
+    /**
+     * @return the vertices of the fragment, by id
+     */
+    public HashMap<Integer, Vertex> getVertices() {
+        HashMap<Integer, Vertex> result = new HashMap<Integer, Vertex>();
+        Deque<AttackPathFragment> fragments = new ArrayDeque<AttackPathFragment>();
+        fragments.push(this);
+        while (!fragments.isEmpty()) {
+            AttackPathFragment fragment = fragments.pop();
+            if (fragment.vertex != null)
+                result.put(fragment.vertex.id, fragment.vertex);
+            for (AttackPathFragment part : fragment.parts) {
+                fragments.push(part);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the fingerprint of the vertices and arcs of the fragment, without adding them to an attack path.
+     * The vertices and arcs of the parts shared by several parts of the fragment are counted once.
+     *
+     * @return the fingerprint of the attack paths built on this fragment
+     */
+    public AttackPathFingerprint getFingerprint() {
+        AttackPathFingerprint result = AttackPathFingerprint.EMPTY;
+        Set<Integer> vertexIds = new HashSet<Integer>();
+        Set<Long> arcKeys = new HashSet<Long>();
+        Set<AttackPathFragment> visited = new HashSet<AttackPathFragment>();
+        Deque<AttackPathFragment> fragments = new ArrayDeque<AttackPathFragment>();
+        fragments.push(this);
+        while (!fragments.isEmpty()) {
+            AttackPathFragment fragment = fragments.pop();
+            if (!visited.add(fragment))
+                continue;
+            if (fragment.vertex != null && vertexIds.add(fragment.vertex.id))
+                result = result.withVertex(fragment.vertex.id);
+            if (fragment.arc != null
+                    && arcKeys.add(((long) fragment.arc.source.id << 32) | (fragment.arc.destination.id & 0xFFFFFFFFL)))
+                result = result.withArc(fragment.arc.source.id, fragment.arc.destination.id);
+            for (AttackPathFragment part : fragment.parts) {
+                fragments.push(part);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,202 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.properties.ProjectProperties;
+
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Limits of the generation of the attack paths of an attack graph
+ */
+public class AttackPathGenerationOptions {
+    /**
+     * The maximum number of attack paths to generate (0 for no limit)
+     */
+    private int maximumNumberOfAttackPaths = 0;
+
+    /**
+     * The maximum duration of the generation in milliseconds (0 for no limit)
+     */
+    private long timeBudget = 0;
+
+    /**
+     * The pool in which the attack paths are generated in parallel (null to generate them in the calling thread)
+     */
+    private ForkJoinPool forkJoinPool = null;
+
+    /**
+     * The number of attack paths with the highest scorings to search (0 to generate all the attack paths)
+     */
+    private int numberOfBestAttackPaths = 0;
+
+    /**
+     * True to search the attack paths with the highest scorings for each attacker goal, false for all the goals
+     */
+    private boolean bestAttackPathsPerGoal = false;
+
+    /**
+     * The pools shared by the generations configured with the project properties, by parallelism.
+     * A pool is never shut down : generations or scorings may still use it after the property has changed,
+     * and the threads of an idle pool terminate by themselves.
+     */
+    private static final HashMap<Integer, ForkJoinPool> configuredForkJoinPools = new HashMap<Integer, ForkJoinPool>();
+
+    /**
+     * Create options without limits
+     */
+    public AttackPathGenerationOptions() {
+    }
+
+    /**
+     * @param maximumNumberOfAttackPaths the maximum number of attack paths to generate (0 for no limit)
+     * @param timeBudget                 the maximum duration of the generation in milliseconds (0 for no limit)
+     */
+    public AttackPathGenerationOptions(int maximumNumberOfAttackPaths, long timeBudget) {
+        this.maximumNumberOfAttackPaths = maximumNumberOfAttackPaths;
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * @return the maximum number of attack paths to generate (0 for no limit)
+     */
+    public int getMaximumNumberOfAttackPaths() {
+        return maximumNumberOfAttackPaths;
+    }
+
+    /**
+     * @param maximumNumberOfAttackPaths the maximum number of attack paths to generate (0 for no limit)
+     */
+    public void setMaximumNumberOfAttackPaths(int maximumNumberOfAttackPaths) {
+        this.maximumNumberOfAttackPaths = maximumNumberOfAttackPaths;
+    }
+
+    /**
+     * @return the maximum duration of the generation in milliseconds (0 for no limit)
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * @param timeBudget the maximum duration of the generation in milliseconds (0 for no limit)
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * @return the pool in which the attack paths are generated in parallel (null to generate them in the calling thread)
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * @param forkJoinPool the pool in which the attack paths are generated in parallel
+     *                     (null to generate them in the calling thread)
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * @return the number of attack paths with the highest scorings to search (0 to generate all the attack paths)
+     */
+    public int getNumberOfBestAttackPaths() {
+        return numberOfBestAttackPaths;
+    }
+
+    /**
+     * @return true to search the attack paths with the highest scorings for each attacker goal, false for all
+     * the goals
+     */
+    public boolean isBestAttackPathsPerGoal() {
+        return bestAttackPathsPerGoal;
+    }
+
+    /**
+     * Search only the attack paths with the highest scorings, with a best-first search that does not enumerate the
+     * other attack paths. The attack paths are returned in decreasing order of scoring (for each goal if perGoal).
+     *
+     * @param numberOfBestAttackPaths the number of attack paths with the highest scorings to search
+     *                                (0 to generate all the attack paths)
+     * @param perGoal                 true to search this number of attack paths for each attacker goal,
+     *                                false for all the goals
+     */
+    public void setBestAttackPaths(int numberOfBestAttackPaths, boolean perGoal) {
+        this.numberOfBestAttackPaths = numberOfBestAttackPaths;
+        this.bestAttackPathsPerGoal = perGoal;
+    }
+
+    /**
+     * Create options without limits, using the parallelism of the property "attack-paths-generation-parallelism"
+     * of the project properties (the attack paths are generated in the calling thread if it is not set or lower than 2)
+     * and the number of attack paths with the highest scorings of the property "attack-paths-best-number"
+     * (all the attack paths are generated if it is not set or lower than 1)
+     *
+     * @return the options
+     */
+    public static AttackPathGenerationOptions fromProjectProperties() {
+        AttackPathGenerationOptions options = new AttackPathGenerationOptions();
+        options.setForkJoinPool(getConfiguredForkJoinPool());
+        options.setBestAttackPaths(Math.max(0, getIntegerProperty("attack-paths-best-number")), false);
+        return options;
+    }
+
+    /**
+     * @param name the name of a property of the project properties
+     * @return the integer value of the property, or 0 if it is not set
+     */
+    private static int getIntegerProperty(String name) {
+        String property = ProjectProperties.getProperty(name);
+        if (property == null || property.trim().isEmpty())
+            return 0;
+        return Integer.parseInt(property.trim());
+    }
+
+    /**
+     * @return the pool of the parallelism configured in the project properties, or null if the generation is not
+     * parallel
+     */
+    private static synchronized ForkJoinPool getConfiguredForkJoinPool() {
+        int parallelism = getIntegerProperty("attack-paths-generation-parallelism");
+        if (parallelism < 2)
+            return null;
+        ForkJoinPool forkJoinPool = configuredForkJoinPools.get(parallelism);
+        if (forkJoinPool == null) {
+            forkJoinPool = new ForkJoinPool(parallelism);
+            configuredForkJoinPools.put(parallelism, forkJoinPool);
+        }
+        return forkJoinPool;
+    }
+
+    /**
+     * @param numberOfAttackPaths the number of attack paths already generated
+     * @param startTime           the start time of the generation, in milliseconds
+     * @return true if the generation must stop
+     */
+    public boolean isLimitReached(int numberOfAttackPaths, long startTime) {
+        return (maximumNumberOfAttackPaths > 0 && numberOfAttackPaths >= maximumNumberOfAttackPaths)
+                || (timeBudget > 0 && System.currentTimeMillis() - startTime >= timeBudget);
+    }
+}
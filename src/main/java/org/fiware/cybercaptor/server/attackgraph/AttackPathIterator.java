@@ -0,0 +1,387 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.Vertex.VertexType;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy enumeration of the possible attack paths to an attacker goal of an attack graph.
+ * The combinations of the attack paths of the parents of the "AND" vertices are generated on demand,
+ * so that the caller can stop the enumeration at any time, without having built all the attack paths.
+ * The attack paths are built on {@link AttackPathFragment}s : the attack paths sharing the attack paths
+ * of some parents share their fragments during the enumeration. The returned attack paths are materialized : their
+ * vertices and arcs are filled.
+ * The attack paths are generated in the same order as the former eager generation :
+ * for an "OR" vertex, the attack paths of its first parent, then of its second parent... and for an "AND"
+ * vertex, all the combinations of the attack paths of its parents, the first parent changing the fastest.
+ */
+public class AttackPathIterator implements Iterator<AttackPath> {
+    /**
+     * The enumeration of the attack paths to the goal, null if there is none
+     */
+    private final Enumeration enumeration;
+
+    /**
+     * The fragment of the next attack path to return, null if it has not been computed yet
+     */
+    private AttackPathFragment nextFragment = null;
+
+    /**
+     * True if all the attack paths have been returned
+     */
+    private boolean finished = false;
+
+    /**
+     * Create the enumeration of the attack paths to an attacker goal
+     *
+     * @param attackGraph the attack graph
+     * @param goal        the attacker goal
+     */
+    public AttackPathIterator(AttackGraph attackGraph, Vertex goal) {
+        this(attackGraph, goal, new ArrayList<Vertex>());
+    }
+
+    /**
+     * Create the enumeration of the attack paths to a vertex, on the way to an attacker goal
+     *
+     * @param attackGraph the attack graph
+     * @param vertex      the vertex to reach
+     * @param ancestors   the vertices on the way from the vertex to the attacker goal
+     */
+    AttackPathIterator(AttackGraph attackGraph, Vertex vertex, List<Vertex> ancestors) {
+        this.enumeration = createEnumeration(attackGraph, vertex, Ancestors.of(ancestors));
+        this.finished = this.enumeration == null;
+    }
+
+    /**
+     * Create the enumeration of a part of the attack paths to an "AND" vertex with at least two parents :
+     * the combinations in which the attack path of the last parent is one of the given attack paths
+     *
+     * @param attackGraph           the attack graph
+     * @param vertex                the "AND" vertex to reach
+     * @param ancestors             the vertices on the way from the vertex to the attacker goal
+     * @param lastParentAttackPaths the fragments of attack paths to the last parent of the vertex
+     */
+    AttackPathIterator(AttackGraph attackGraph, Vertex vertex, List<Vertex> ancestors, List<AttackPathFragment> lastParentAttackPaths) {
+        List<Vertex> parents = attackGraph.getParents(vertex);
+        if (vertex.type != VertexType.AND || parents.size() < 2)
+            throw new IllegalArgumentException("The vertex " + vertex.id + " is not an AND vertex with several parents");
+        if (isUsable(attackGraph, vertex, ancestors))
+            this.enumeration = new AndEnumeration(attackGraph, vertex, parents, Ancestors.of(ancestors), lastParentAttackPaths);
+        else
+            this.enumeration = null;
+        this.finished = this.enumeration == null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextFragment == null && !finished) {
+            nextFragment = enumeration.next();
+            finished = nextFragment == null;
+        }
+        return nextFragment != null;
+    }
+
+    @Override
+    public AttackPath next() {
+        AttackPath attackPath = new AttackPath(nextFragment());
+        attackPath.materialize();
+        return attackPath;
+    }
+
+    /**
+     * @return the fragment of the next attack path
+     */
+    AttackPathFragment nextFragment() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        AttackPathFragment result = nextFragment;
+        nextFragment = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param attackGraph the attack graph
+     * @param vertex      a vertex
+     * @param ancestors   the vertices on the way from the vertex to the attacker goal
+     * @return false if the vertex can not be used to reach its ancestors (already on the way to the goal,
+     * "AND" vertex without parents or vertex without type). The enumeration of the attack paths of an "OR" vertex
+     * stops at the first parent that can not be used.
+     */
+    static boolean isUsable(AttackGraph attackGraph, Vertex vertex, List<Vertex> ancestors) {
+        return vertex.type != null && !ancestors.contains(vertex)
+                && (vertex.type != VertexType.AND || !attackGraph.getParents(vertex).isEmpty());
+    }
+
+    /**
+     * @param attackGraph the attack graph
+     * @param vertex      the vertex to reach
+     * @param ancestors   the vertices on the way from the vertex to the attacker goal
+     * @return the enumeration of the attack paths to the vertex, or null if the vertex can not be used
+     * (already on the way to the goal, "AND" vertex without parents or vertex without type)
+     */
+    private static Enumeration createEnumeration(AttackGraph attackGraph, Vertex vertex, Ancestors ancestors) {
+        if (vertex.type == null || Ancestors.contains(ancestors, vertex))
+            return null;
+        switch (vertex.type) {
+            case LEAF:
+                return new LeafEnumeration(vertex);
+            case OR:
+                return new OrEnumeration(attackGraph, vertex, ancestors);
+            case AND:
+                List<Vertex> parents = attackGraph.getParents(vertex);
+                if (parents.isEmpty())
+                    return null;
+                return new AndEnumeration(attackGraph, vertex, parents, ancestors, null);
+        }
+        return null;
+    }
+
+    /**
+     * The vertices on the way from a vertex to the attacker goal, shared by the enumerations of the parents
+     */
+    private static class Ancestors {
+        private final Vertex vertex;
+        private final Ancestors next;
+
+        private Ancestors(Vertex vertex, Ancestors next) {
+            this.vertex = vertex;
+            this.next = next;
+        }
+
+        private static Ancestors of(List<Vertex> vertices) {
+            Ancestors result = null;
+            for (Vertex vertex : vertices) {
+                result = new Ancestors(vertex, result);
+            }
+            return result;
+        }
+
+        private static boolean contains(Ancestors ancestors, Vertex vertex) {
+            for (Ancestors current = ancestors; current != null; current = current.next) {
+                if (current.vertex.id == vertex.id)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Enumeration of the attack paths to a vertex
+     */
+    private static abstract class Enumeration {
+        /**
+         * @return the fragment of the next attack path, or null if all attack paths have been enumerated
+         */
+        abstract AttackPathFragment next();
+    }
+
+    /**
+     * Enumeration of the only attack path to a leaf : the leaf itself
+     */
+    private static class LeafEnumeration extends Enumeration {
+        private final Vertex leaf;
+        private boolean done = false;
+
+        private LeafEnumeration(Vertex leaf) {
+            this.leaf = leaf;
+        }
+
+        @Override
+        AttackPathFragment next() {
+            if (done)
+                return null;
+            done = true;
+            return AttackPathFragment.leaf(leaf);
+        }
+    }
+
+    /**
+     * Enumeration of attack paths already computed
+     */
+    private static class ListEnumeration extends Enumeration {
+        private final Iterator<AttackPathFragment> attackPaths;
+
+        private ListEnumeration(List<AttackPathFragment> attackPaths) {
+            this.attackPaths = attackPaths.iterator();
+        }
+
+        @Override
+        AttackPathFragment next() {
+            return attackPaths.hasNext() ? attackPaths.next() : null;
+        }
+    }
+
+    /**
+     * Enumeration of the attack paths to an "OR" vertex : the attack paths of each of its parents.
+     * The enumeration stops at the first parent that can not be used.
+     */
+    private static class OrEnumeration extends Enumeration {
+        private final AttackGraph attackGraph;
+        private final Vertex vertex;
+        private final List<Vertex> parents;
+        private final Ancestors ancestors;
+        private int parentIndex = 0;
+        private Vertex currentParent = null;
+        private Enumeration currentEnumeration = null;
+
+        private OrEnumeration(AttackGraph attackGraph, Vertex vertex, Ancestors ancestors) {
+            this.attackGraph = attackGraph;
+            this.vertex = vertex;
+            this.parents = attackGraph.getParents(vertex);
+            this.ancestors = new Ancestors(vertex, ancestors);
+        }
+
+        @Override
+        AttackPathFragment next() {
+            while (true) {
+                if (currentEnumeration != null) {
+                    AttackPathFragment attackPath = currentEnumeration.next();
+                    if (attackPath != null)
+                        return AttackPathFragment.extend(attackPath, currentParent, vertex);
+                    currentEnumeration = null;
+                }
+                if (parentIndex >= parents.size())
+                    return null;
+                currentParent = parents.get(parentIndex++);
+                currentEnumeration = createEnumeration(attackGraph, currentParent, ancestors);
+                if (currentEnumeration == null) {
+                    parentIndex = parents.size();
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Enumeration of the attack paths to an "AND" vertex : the combinations of one attack path of each of its
+     * parents. There is no attack path if one of the parents can not be used.
+     */
+    private static class AndEnumeration extends Enumeration {
+        private final AttackGraph attackGraph;
+        private final Vertex vertex;
+        private final List<Vertex> parents;
+        private final Ancestors ancestors;
+
+        /**
+         * The enumeration of the attack paths of each parent
+         */
+        private final Enumeration[] enumerations;
+
+        /**
+         * The current attack path of each parent, including the arc from the parent to the vertex
+         */
+        private final AttackPathFragment[] currentAttackPaths;
+
+        /**
+         * The attack paths of the last parent, or null to enumerate all of them
+         */
+        private final List<AttackPathFragment> lastParentAttackPaths;
+
+        /**
+         * True if the first combination has not been returned yet
+         */
+        private boolean first = true;
+
+        private boolean done = false;
+
+        private AndEnumeration(AttackGraph attackGraph, Vertex vertex, List<Vertex> parents, Ancestors ancestors, List<AttackPathFragment> lastParentAttackPaths) {
+            this.attackGraph = attackGraph;
+            this.vertex = vertex;
+            this.parents = parents;
+            this.ancestors = new Ancestors(vertex, ancestors);
+            this.enumerations = new Enumeration[parents.size()];
+            this.currentAttackPaths = new AttackPathFragment[parents.size()];
+            this.lastParentAttackPaths = lastParentAttackPaths;
+        }
+
+        /**
+         * Restart the enumeration of the attack paths of a parent
+         *
+         * @param i the index of the parent
+         * @return false if the parent has no attack path
+         */
+        private boolean restart(int i) {
+            if (lastParentAttackPaths != null && i == parents.size() - 1)
+                enumerations[i] = new ListEnumeration(lastParentAttackPaths);
+            else
+                enumerations[i] = createEnumeration(attackGraph, parents.get(i), ancestors);
+            return enumerations[i] != null && advance(i);
+        }
+
+        /**
+         * Go to the next attack path of a parent
+         *
+         * @param i the index of the parent
+         * @return false if all the attack paths of the parent have been enumerated
+         */
+        private boolean advance(int i) {
+            AttackPathFragment attackPath = enumerations[i].next();
+            if (attackPath == null)
+                return false;
+            currentAttackPaths[i] = AttackPathFragment.extend(attackPath, parents.get(i), vertex);
+            return true;
+        }
+
+        @Override
+        AttackPathFragment next() {
+            if (done)
+                return null;
+            if (first) {
+                first = false;
+                for (int i = 0; i < parents.size(); i++) {
+                    if (!restart(i)) {
+                        done = true;
+                        return null;
+                    }
+                }
+            } else {
+                //Next combination : the first parent changes the fastest
+                int i = 0;
+                while (!advance(i)) {
+                    if (i == parents.size() - 1 || !restart(i)) {
+                        done = true;
+                        return null;
+                    }
+                    i++;
+                }
+            }
+
+            if (parents.size() == 1)
+                return currentAttackPaths[0];
+            AttackPathFragment[] parts = new AttackPathFragment[parents.size()];
+            for (int i = 0; i < parents.size(); i++) {
+                parts[i] = currentAttackPaths[parents.size() - 1 - i];
+            }
+            return AttackPathFragment.union(parts);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.compact.CompactAttackGraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Best-first search of the attack paths with the highest scorings ({@link AttackPath#computeScoring()}),
+ * without enumerating the other attack paths.
+ * The search develops partial attack paths, in decreasing order of an upper bound of the scoring of the attack
+ * paths that can be built from them : the product of the scoring factors of their vertices, multiplied by the
+ * factors greater than 1 that the vertices still to develop may add. The complete attack paths are thus found
+ * in decreasing order of scoring. The attack paths are the same as the ones of {@link AttackPathIterator}.
+ * A complete attack path with the same vertices and arcs as a previous one is skipped, and does not count toward
+ * the number of attack paths searched.
+ */
+class BestAttackPathSearch {
+    private final AttackGraph attackGraph;
+    private final CompactAttackGraph compact;
+
+    /**
+     * The scoring factor of each vertex, by dense index
+     */
+    private final double[] factors;
+
+    /**
+     * For each vertex, by dense index, the product of the scoring factors greater than 1 of the vertex and of its
+     * ancestors : an upper bound of the scoring of any attack path to this vertex
+     */
+    private final double[] boostBounds;
+
+    /**
+     * The number of states created, to develop the states with the same bound in creation order
+     */
+    private long numberOfStates = 0;
+
+    /**
+     * The number of duplicate attack paths skipped by the searches
+     */
+    private int numberOfDuplicates = 0;
+
+    /**
+     * @param attackGraph the attack graph, that must not be modified during the search
+     */
+    BestAttackPathSearch(AttackGraph attackGraph) {
+        this.attackGraph = attackGraph;
+        this.compact = attackGraph.getCompactAttackGraph();
+        int numberOfVertices = compact.getNumberOfVertices();
+        factors = new double[numberOfVertices];
+        boostBounds = new double[numberOfVertices];
+        for (int i = 0; i < numberOfVertices; i++) {
+            factors[i] = AttackPath.getScoringFactor(compact.getVertex(i));
+            boostBounds[i] = 1.;
+        }
+
+        //Propagate the factors greater than 1 (rare) to the descendants of their vertices
+        BitSet visited = new BitSet(numberOfVertices);
+        Deque<Integer> toVisit = new ArrayDeque<Integer>();
+        for (int boosted = 0; boosted < numberOfVertices; boosted++) {
+            if (factors[boosted] <= 1.)
+                continue;
+            visited.clear();
+            visited.set(boosted);
+            toVisit.push(boosted);
+            while (!toVisit.isEmpty()) {
+                int vertex = toVisit.pop();
+                boostBounds[vertex] *= factors[boosted];
+                for (int k = compact.getChildrenStart(vertex); k < compact.getChildrenEnd(vertex); k++) {
+                    int child = compact.getChild(k);
+                    if (!visited.get(child)) {
+                        visited.set(child);
+                        toVisit.push(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of duplicate attack paths skipped by the searches
+     */
+    int getNumberOfDuplicates() {
+        return numberOfDuplicates;
+    }
+
+    /**
+     * @param goals                the attacker goals
+     * @param numberOfAttackPaths  the number of attack paths to return
+     * @param options              the time budget of the search
+     * @param startTime            the start time of the generation, in milliseconds
+     * @return the distinct attack paths to the goals with the highest scorings, scored, in decreasing order of scoring
+     */
+    List<AttackPath> search(List<Vertex> goals, int numberOfAttackPaths, AttackPathGenerationOptions options, long startTime) {
+        List<AttackPath> result = new ArrayList<AttackPath>();
+        Set<AttackPathFingerprint> fingerprints = new HashSet<AttackPathFingerprint>();
+        PriorityQueue<State> queue = new PriorityQueue<State>(11, new StateComparator());
+        for (Vertex goal : goals) {
+            int goalIndex = compact.indexOf(goal.id);
+            if (goalIndex >= 0 && isUsable(goalIndex, null)) {
+                BitSet vertices = new BitSet(compact.getNumberOfVertices());
+                vertices.set(goalIndex);
+                State state = new State(factors[goalIndex], vertices, new Step(goal, null, null), null);
+                if (compact.getType(goalIndex) == CompactAttackGraph.LEAF)
+                    queue.add(withBound(state));
+                else
+                    queue.add(withObligation(state, goalIndex, null));
+            }
+        }
+
+        while (!queue.isEmpty() && result.size() < numberOfAttackPaths
+                && !options.isLimitReached(0, startTime)) {
+            State state = queue.poll();
+            if (state.obligations == null) {
+                AttackPath attackPath = state.toAttackPath();
+                if (fingerprints.add(attackPath.getFingerprint()))
+                    result.add(attackPath);
+                else
+                    numberOfDuplicates++;
+                continue;
+            }
+            Obligation obligation = state.obligations;
+            State remaining = new State(state.scoring, state.vertices, state.steps, obligation.next);
+            int vertex = obligation.vertex;
+            Ancestors ancestors = new Ancestors(vertex, obligation.ancestors);
+            int start = compact.getParentsStart(vertex);
+            int end = compact.getParentsEnd(vertex);
+            if (compact.getType(vertex) == CompactAttackGraph.OR) {
+                //One state per parent, until the first parent that can not be used
+                for (int k = start; k < end && isUsable(compact.getParent(k), ancestors); k++) {
+                    queue.add(withParent(remaining, vertex, compact.getParent(k), ancestors));
+                }
+            } else if (compact.getType(vertex) == CompactAttackGraph.AND) {
+                //All the parents, if they can all be used
+                boolean usable = true;
+                for (int k = start; k < end && usable; k++) {
+                    usable = isUsable(compact.getParent(k), ancestors);
+                }
+                if (usable) {
+                    State next = remaining;
+                    for (int k = end - 1; k >= start; k--) {
+                        next = withParent(next, vertex, compact.getParent(k), ancestors);
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param vertex    the dense index of a vertex
+     * @param ancestors the vertices on the way from the vertex to the attacker goal
+     * @return false if the vertex can not be used, as in {@link AttackPathIterator#isUsable}
+     */
+    private boolean isUsable(int vertex, Ancestors ancestors) {
+        byte type = compact.getType(vertex);
+        return type != CompactAttackGraph.UNKNOWN && !Ancestors.contains(ancestors, vertex)
+                && (type != CompactAttackGraph.AND || compact.getInDegree(vertex) > 0);
+    }
+
+    /**
+     * @param state     a state
+     * @param vertex    the vertex to which the parent is added
+     * @param parent    the parent of the vertex
+     * @param ancestors the vertices on the way from the parent to the attacker goal
+     * @return the state with the parent, the arc from the parent to the vertex, and the development of the parent
+     */
+    private State withParent(State state, int vertex, int parent, Ancestors ancestors) {
+        Vertex parentVertex = compact.getVertex(parent);
+        Step steps = new Step(parentVertex, new Arc(parentVertex, compact.getVertex(vertex)), state.steps);
+        double scoring = state.scoring;
+        BitSet vertices = state.vertices;
+        if (!vertices.get(parent)) {
+            vertices = (BitSet) vertices.clone();
+            vertices.set(parent);
+            scoring *= factors[parent];
+        }
+        State result = new State(scoring, vertices, steps, state.obligations);
+        if (compact.getType(parent) == CompactAttackGraph.LEAF)
+            return withBound(result);
+        return withObligation(result, parent, ancestors);
+    }
+
+    /**
+     * @param state     a state
+     * @param vertex    a vertex of the state to develop
+     * @param ancestors the vertices on the way from the vertex to the attacker goal
+     * @return the state in which the vertex has to be developed
+     */
+    private State withObligation(State state, int vertex, Ancestors ancestors) {
+        return withBound(new State(state.scoring, state.vertices, state.steps, new Obligation(vertex, ancestors, state.obligations)));
+    }
+
+    /**
+     * @param state a state
+     * @return the state with its upper bound and its creation number
+     */
+    private State withBound(State state) {
+        double bound = state.scoring;
+        for (Obligation obligation = state.obligations; obligation != null; obligation = obligation.next) {
+            bound *= boostBounds[obligation.vertex];
+        }
+        state.bound = bound;
+        state.number = numberOfStates++;
+        return state;
+    }
+
+    /**
+     * A partial attack path
+     */
+    private class State {
+        /**
+         * The product of the scoring factors of the vertices of the state
+         */
+        private final double scoring;
+
+        /**
+         * The dense indices of the vertices of the state
+         */
+        private final BitSet vertices;
+
+        /**
+         * The vertices and arcs added to the state, the last one first
+         */
+        private final Step steps;
+
+        /**
+         * The vertices that still have to be developed
+         */
+        private final Obligation obligations;
+
+        /**
+         * The upper bound of the scoring of the attack paths built from this state
+         */
+        private double bound;
+
+        /**
+         * The creation number of the state
+         */
+        private long number;
+
+        private State(double scoring, BitSet vertices, Step steps, Obligation obligations) {
+            this.scoring = scoring;
+            this.vertices = vertices;
+            this.steps = steps;
+            this.obligations = obligations;
+        }
+
+        /**
+         * @return the scored attack path of a complete state
+         */
+        private AttackPath toAttackPath() {
+            List<Step> orderedSteps = new ArrayList<Step>();
+            for (Step step = steps; step != null; step = step.next) {
+                orderedSteps.add(step);
+            }
+            Collections.reverse(orderedSteps);
+            AttackPath attackPath = new AttackPath();
+            for (Step step : orderedSteps) {
+                attackPath.vertices.put(step.vertex.id, step.vertex);
+                if (step.arc != null)
+                    attackPath.addArc(step.arc);
+            }
+            attackPath.computeScoring();
+            return attackPath;
+        }
+    }
+
+    /**
+     * Order of development of the states : highest bound first, then creation order
+     */
+    private static class StateComparator implements Comparator<State> {
+        @Override
+        public int compare(State state1, State state2) {
+            int result = Double.compare(state2.bound, state1.bound);
+            if (result == 0)
+                result = state1.number < state2.number ? -1 : (state1.number == state2.number ? 0 : 1);
+            return result;
+        }
+    }
+
+    /**
+     * A vertex and the arc arriving to it added to a partial attack path
+     */
+    private static class Step {
+        private final Vertex vertex;
+        private final Arc arc;
+        private final Step next;
+
+        private Step(Vertex vertex, Arc arc, Step next) {
+            this.vertex = vertex;
+            this.arc = arc;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A vertex of a partial attack path that still has to be developed
+     */
+    private static class Obligation {
+        private final int vertex;
+        private final Ancestors ancestors;
+        private final Obligation next;
+
+        private Obligation(int vertex, Ancestors ancestors, Obligation next) {
+            this.vertex = vertex;
+            this.ancestors = ancestors;
+            this.next = next;
+        }
+    }
+
+    /**
+     * The dense indices of the vertices on the way from a vertex to the attacker goal
+     */
+    private static class Ancestors {
+        private final int vertex;
+        private final Ancestors next;
+
+        private Ancestors(int vertex, Ancestors next) {
+            this.vertex = vertex;
+            this.next = next;
+        }
+
+        private static boolean contains(Ancestors ancestors, int vertex) {
+            for (Ancestors current = ancestors; current != null; current = current.next) {
+                if (current.vertex == vertex)
+                    return true;
+            }
+            return false;
+        }
+    }
+}
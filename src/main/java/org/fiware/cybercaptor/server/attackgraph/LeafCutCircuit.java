@@ -0,0 +1,252 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.compact.CompactAttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.compact.StronglyConnectedComponents;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Boolean circuit telling whether removing a set of leaves cuts the goal of an attack graph (or attack path) :
+ * a vertex is cut if it is removed, an "AND" vertex is cut if one of its parents is cut and an "OR" vertex if
+ * all its parents are cut, a parent already being explored on the current path counting as not cut for an "AND"
+ * vertex and as cut for an "OR" vertex.
+ * The ancestors of the goal are sorted once in topological order, so that a set of leaves is evaluated in a single
+ * pass. 64 sets of leaves are evaluated at once, each bit of a long word holding the value of a vertex for one set.
+ * If there is a cycle among the ancestors of the goal, the value of a vertex on this cycle depends on the path used
+ * to reach it : the vertices are then evaluated recursively, only the values of the vertices that are not on a cycle
+ * being reused.
+ * The circuit is not modified by the evaluations, which can be done by several threads at once.
+ */
+public class LeafCutCircuit {
+    /**
+     * The compact snapshot of the attack graph on which the circuit has been built
+     */
+    private final CompactAttackGraph compact;
+
+    /**
+     * The index of the goal in the compact snapshot, -1 if there is no goal
+     */
+    private final int goal;
+
+    /**
+     * The ancestors of the goal and the goal, each vertex after its parents. Null if there is a cycle among them.
+     */
+    private final int[] topologicalOrder;
+
+    /**
+     * The strongly connected components of the snapshot, null if there is no cycle among the ancestors of the goal
+     */
+    private final StronglyConnectedComponents components;
+
+    /**
+     * @param attackGraph an attack graph (or attack path)
+     * @param goal        the goal to cut
+     */
+    public LeafCutCircuit(AttackGraph attackGraph, Vertex goal) {
+        this.compact = attackGraph.getCompactAttackGraph();
+        this.goal = goal == null ? -1 : compact.indexOf(goal.id);
+        int[] order = null;
+        StronglyConnectedComponents cycles = null;
+        if (this.goal >= 0) {
+            order = ancestorsInTopologicalOrder(compact, this.goal);
+            if (order == null)
+                cycles = new StronglyConnectedComponents(compact);
+        }
+        this.topologicalOrder = order;
+        this.components = cycles;
+    }
+
+    /**
+     * @return the compact snapshot of the attack graph on which the circuit has been built
+     */
+    public CompactAttackGraph getCompactAttackGraph() {
+        return compact;
+    }
+
+    /**
+     * @return the index of the goal in the compact snapshot, -1 if there is no goal
+     */
+    public int getGoal() {
+        return goal;
+    }
+
+    /**
+     * @param leaves a set of leaves
+     * @return true if removing these leaves cuts the goal
+     */
+    public boolean cuts(Collection<Vertex> leaves) {
+        return cuts(Collections.singletonList(leaves))[0];
+    }
+
+    /**
+     * @param candidates sets of leaves
+     * @return for each set of leaves, true if removing these leaves cuts the goal
+     */
+    public boolean[] cuts(List<? extends Collection<Vertex>> candidates) {
+        boolean[] result = new boolean[candidates.size()];
+        if (goal < 0)
+            return result;
+        long[] removed = new long[compact.getNumberOfVertices()];
+        long[] values = new long[compact.getNumberOfVertices()];
+        for (int start = 0; start < candidates.size(); start += 64) {
+            int end = Math.min(start + 64, candidates.size());
+            Arrays.fill(removed, 0);
+            for (int j = start; j < end; j++) {
+                for (Vertex leaf : candidates.get(j)) {
+                    int vertex = compact.indexOf(leaf.id);
+                    if (vertex >= 0)
+                        removed[vertex] |= 1L << (j - start);
+                }
+            }
+            long cut;
+            if (topologicalOrder != null) {
+                cut = evaluateInTopologicalOrder(removed, values);
+            } else {
+                cut = evaluateRecursively(goal, removed, values, new BitSet(values.length), new BitSet(values.length));
+            }
+            for (int j = start; j < end; j++) {
+                result[j] = (cut & (1L << (j - start))) != 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param removed the removed vertices, one bit per set of leaves
+     * @param values  the values of the vertices, filled by the evaluation
+     * @return the value of the goal, one bit per set of leaves
+     */
+    private long evaluateInTopologicalOrder(long[] removed, long[] values) {
+        for (int vertex : topologicalOrder) {
+            values[vertex] = removed[vertex] | valueOfParents(vertex, values);
+        }
+        return values[goal];
+    }
+
+    /**
+     * @param vertex   a vertex
+     * @param removed  the removed vertices, one bit per set of leaves
+     * @param values   the values of the vertices that are not on a cycle, once computed
+     * @param computed the vertices whose value has been computed
+     * @param path     the vertices of the path being explored
+     * @return the value of the vertex, one bit per set of leaves
+     */
+    private long evaluateRecursively(int vertex, long[] removed, long[] values, BitSet computed, BitSet path) {
+        if (computed.get(vertex))
+            return values[vertex];
+        byte type = compact.getType(vertex);
+        long result = 0;
+        if (type == CompactAttackGraph.AND || type == CompactAttackGraph.OR) {
+            long valueOfParents = type == CompactAttackGraph.AND ? 0 : ~0L;
+            path.set(vertex);
+            for (int k = compact.getParentsStart(vertex); k < compact.getParentsEnd(vertex); k++) {
+                int parent = compact.getParent(k);
+                if (path.get(parent))
+                    continue;
+                long valueOfParent = evaluateRecursively(parent, removed, values, computed, path);
+                if (type == CompactAttackGraph.AND)
+                    valueOfParents |= valueOfParent;
+                else
+                    valueOfParents &= valueOfParent;
+            }
+            path.clear(vertex);
+            result = valueOfParents;
+        }
+        result |= removed[vertex];
+        if (!components.isOnCycle(vertex)) {
+            values[vertex] = result;
+            computed.set(vertex);
+        }
+        return result;
+    }
+
+    /**
+     * @param vertex a vertex, whose parents have been evaluated
+     * @param values the values of the vertices
+     * @return the value of the vertex due to its parents, one bit per set of leaves
+     */
+    private long valueOfParents(int vertex, long[] values) {
+        byte type = compact.getType(vertex);
+        if (type == CompactAttackGraph.AND) {
+            long result = 0;
+            for (int k = compact.getParentsStart(vertex); k < compact.getParentsEnd(vertex); k++) {
+                result |= values[compact.getParent(k)];
+            }
+            return result;
+        } else if (type == CompactAttackGraph.OR) {
+            long result = ~0L;
+            for (int k = compact.getParentsStart(vertex); k < compact.getParentsEnd(vertex); k++) {
+                result &= values[compact.getParent(k)];
+            }
+            return result;
+        }
+        return 0;
+    }
+
+    /**
+     * @param compact the compact snapshot of an attack graph
+     * @param goal    the index of the goal
+     * @return the ancestors of the goal and the goal, each vertex after its parents, or null if there is a cycle
+     * among them
+     */
+    private static int[] ancestorsInTopologicalOrder(CompactAttackGraph compact, int goal) {
+        int numberOfVertices = compact.getNumberOfVertices();
+        int[] order = new int[numberOfVertices];
+        int orderSize = 0;
+        BitSet visited = new BitSet(numberOfVertices);
+        BitSet onPath = new BitSet(numberOfVertices);
+        int[] callStack = new int[numberOfVertices];
+        int[] nextParent = new int[numberOfVertices];
+        int depth = 0;
+        callStack[0] = goal;
+        nextParent[0] = compact.getParentsStart(goal);
+        visited.set(goal);
+        onPath.set(goal);
+        while (depth >= 0) {
+            int vertex = callStack[depth];
+            if (nextParent[depth] < compact.getParentsEnd(vertex)) {
+                int parent = compact.getParent(nextParent[depth]++);
+                if (onPath.get(parent))
+                    return null;
+                if (!visited.get(parent)) {
+                    visited.set(parent);
+                    onPath.set(parent);
+                    depth++;
+                    callStack[depth] = parent;
+                    nextParent[depth] = compact.getParentsStart(parent);
+                }
+            } else {
+                onPath.clear(vertex);
+                order[orderSize++] = vertex;
+                depth--;
+            }
+        }
+        int[] result = new int[orderSize];
+        System.arraycopy(order, 0, result, 0, orderSize);
+        return result;
+    }
+}
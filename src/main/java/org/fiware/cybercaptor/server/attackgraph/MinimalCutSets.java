@@ -0,0 +1,267 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.compact.CompactAttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.compact.StronglyConnectedComponents;
+import org.fiware.cybercaptor.server.properties.ProjectProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Computation of the minimal sets of leaves whose remediation cuts an attack path (the minimal cut sets).
+ * Cutting a set of leaves cuts an "AND" vertex if it cuts one of its parents and an "OR" vertex if it cuts all
+ * its parents, a parent already being explored on the current path counting as not cut for an "AND" vertex and as
+ * cut for an "OR" vertex, as in {@link AttackPath#leavesMandatoryForGoal(List)}.
+ * The cut sets of each vertex are computed once, bottom-up, as families of leaf sets : the union of the families of
+ * the parents of an "AND" vertex, the pairwise unions of the sets of the families of the parents of an "OR" vertex,
+ * keeping only the minimal sets no larger than the maximum cut size.
+ * The families of the vertices on a cycle depend on the path used to reach them and are not reused : they are
+ * computed again for each path, as the whole attack path was for each combination of leaves.
+ */
+public class MinimalCutSets {
+    /**
+     * The maximum cut size meaning that the size of the cut sets is not limited
+     */
+    public static final int NO_LIMIT = 0;
+
+    /**
+     * The compact snapshot of the attack graph (or attack path) in which the leaves are cut
+     */
+    private final CompactAttackGraph compact;
+
+    /**
+     * The leaves that can be cut
+     */
+    private final List<Vertex> leaves;
+
+    /**
+     * The index in the list of leaves of each vertex of the compact snapshot, -1 for the vertices that can not be cut
+     */
+    private final int[] leafIndices;
+
+    /**
+     * The maximum number of leaves of a cut set
+     */
+    private final int maximumCutSize;
+
+    /**
+     * The strongly connected components of the snapshot : the cut sets of the vertices on a cycle depend on the
+     * path used to reach them
+     */
+    private final StronglyConnectedComponents components;
+
+    /**
+     * The cut sets of the vertices that are not on a cycle
+     */
+    private final List<List<BitSet>> cutSetsByVertex;
+
+    /**
+     * The vertices of the path being explored
+     */
+    private final BitSet path;
+
+    /**
+     * @param attackGraph    the attack graph (or attack path) in which the leaves are cut
+     * @param leaves         the leaves that can be cut
+     * @param maximumCutSize the maximum number of leaves of a cut set, or {@link #NO_LIMIT}
+     */
+    public MinimalCutSets(AttackGraph attackGraph, List<Vertex> leaves, int maximumCutSize) {
+        this.compact = attackGraph.getCompactAttackGraph();
+        this.leaves = leaves;
+        this.maximumCutSize = maximumCutSize <= NO_LIMIT ? Integer.MAX_VALUE : maximumCutSize;
+        int numberOfVertices = compact.getNumberOfVertices();
+        this.leafIndices = new int[numberOfVertices];
+        Arrays.fill(leafIndices, -1);
+        for (int i = 0; i < leaves.size(); i++) {
+            int vertex = compact.indexOf(leaves.get(i).id);
+            if (vertex >= 0)
+                leafIndices[vertex] = i;
+        }
+        this.components = new StronglyConnectedComponents(compact);
+        this.cutSetsByVertex = new ArrayList<List<BitSet>>(Collections.<List<BitSet>>nCopies(numberOfVertices, null));
+        this.path = new BitSet(numberOfVertices);
+    }
+
+    /**
+     * @return the maximum cut size of the property "remediation-maximum-cut-size" of the project properties,
+     * or {@link #NO_LIMIT} if it is not set
+     */
+    public static int getConfiguredMaximumCutSize() {
+        String maximumCutSizeProperty = ProjectProperties.getProperty("remediation-maximum-cut-size");
+        if (maximumCutSizeProperty != null && !maximumCutSizeProperty.trim().isEmpty())
+            return Integer.parseInt(maximumCutSizeProperty.trim());
+        return NO_LIMIT;
+    }
+
+    /**
+     * Compute the combinations of leaves sufficient to cut the path to the goal, by increasing size. The leaves of a
+     * combination are not used in the larger combinations, so that a combination never contains a smaller one.
+     * The combinations of the same size are sorted in the order of the leaves.
+     *
+     * @param goal the goal of the attack path
+     * @return the combinations of leaves whose remediation prevents to reach the goal
+     */
+    public List<List<Vertex>> compute(Vertex goal) {
+        List<List<Vertex>> result = new ArrayList<List<Vertex>>();
+        if (goal == null || leaves.isEmpty() || compact.indexOf(goal.id) < 0)
+            return result;
+        List<BitSet> cutSets = new ArrayList<BitSet>(cutSetsOf(compact.indexOf(goal.id)));
+
+        if (!cutSets.isEmpty() && cutSets.get(0).isEmpty()) {
+            //The goal can not be reached at all : each leaf is sufficient
+            for (Vertex leaf : leaves) {
+                result.add(new ArrayList<Vertex>(Collections.singletonList(leaf)));
+            }
+            return result;
+        }
+
+        Collections.sort(cutSets, new Comparator<BitSet>() {
+            @Override
+            public int compare(BitSet set1, BitSet set2) {
+                if (set1.cardinality() != set2.cardinality())
+                    return set1.cardinality() - set2.cardinality();
+                for (int i = set1.nextSetBit(0), j = set2.nextSetBit(0); i >= 0; i = set1.nextSetBit(i + 1), j = set2.nextSetBit(j + 1)) {
+                    if (i != j)
+                        return i - j;
+                }
+                return 0;
+            }
+        });
+        BitSet usedLeaves = new BitSet(leaves.size());
+        BitSet usedLeavesOfSize = new BitSet(leaves.size());
+        int size = 0;
+        for (BitSet cutSet : cutSets) {
+            if (cutSet.cardinality() != size) {
+                usedLeaves.or(usedLeavesOfSize);
+                size = cutSet.cardinality();
+            }
+            if (cutSet.intersects(usedLeaves))
+                continue;
+            usedLeavesOfSize.or(cutSet);
+            List<Vertex> combination = new ArrayList<Vertex>(size);
+            for (int i = cutSet.nextSetBit(0); i >= 0; i = cutSet.nextSetBit(i + 1)) {
+                combination.add(leaves.get(i));
+            }
+            result.add(combination);
+        }
+        return result;
+    }
+
+    /**
+     * @param vertex the index of a vertex in the compact snapshot
+     * @return the minimal cut sets of the vertex (an empty family if it can not be cut, a family containing the empty
+     * set if it can not be reached)
+     */
+    private List<BitSet> cutSetsOf(int vertex) {
+        List<BitSet> result = cutSetsByVertex.get(vertex);
+        if (result != null)
+            return result;
+
+        result = new ArrayList<BitSet>();
+        if (leafIndices[vertex] >= 0) {
+            BitSet leaf = new BitSet(leaves.size());
+            leaf.set(leafIndices[vertex]);
+            result.add(leaf);
+        }
+        byte type = compact.getType(vertex);
+        if (type == CompactAttackGraph.AND) {
+            path.set(vertex);
+            for (int k = compact.getParentsStart(vertex); k < compact.getParentsEnd(vertex); k++) {
+                int parent = compact.getParent(k);
+                if (!path.get(parent))
+                    result.addAll(cutSetsOf(parent));
+            }
+            path.clear(vertex);
+        } else if (type == CompactAttackGraph.OR) {
+            path.set(vertex);
+            List<BitSet> product = new ArrayList<BitSet>();
+            product.add(new BitSet(leaves.size()));
+            for (int k = compact.getParentsStart(vertex); k < compact.getParentsEnd(vertex) && !product.isEmpty(); k++) {
+                int parent = compact.getParent(k);
+                if (!path.get(parent))
+                    product = product(product, cutSetsOf(parent));
+            }
+            path.clear(vertex);
+            result.addAll(product);
+        }
+        result = minimize(result);
+
+        //The path can contain an ancestor of the vertex only if the vertex is on a cycle
+        if (!components.isOnCycle(vertex))
+            cutSetsByVertex.set(vertex, result);
+        return result;
+    }
+
+    /**
+     * @param family1 a family of leaf sets
+     * @param family2 another family of leaf sets
+     * @return the minimal unions of a set of family1 and a set of family2, no larger than the maximum cut size
+     */
+    private List<BitSet> product(List<BitSet> family1, List<BitSet> family2) {
+        List<BitSet> result = new ArrayList<BitSet>();
+        for (BitSet set1 : family1) {
+            for (BitSet set2 : family2) {
+                BitSet union = (BitSet) set1.clone();
+                union.or(set2);
+                if (union.cardinality() <= maximumCutSize)
+                    result.add(union);
+            }
+        }
+        return minimize(result);
+    }
+
+    /**
+     * @param family a family of leaf sets
+     * @return the sets of the family that contain no other set of the family, without duplicates
+     */
+    private static List<BitSet> minimize(List<BitSet> family) {
+        if (family.size() < 2)
+            return family;
+        List<BitSet> sorted = new ArrayList<BitSet>(family);
+        Collections.sort(sorted, new Comparator<BitSet>() {
+            @Override
+            public int compare(BitSet set1, BitSet set2) {
+                return set1.cardinality() - set2.cardinality();
+            }
+        });
+        List<BitSet> result = new ArrayList<BitSet>(sorted.size());
+        for (BitSet set : sorted) {
+            boolean minimal = true;
+            for (BitSet smaller : result) {
+                BitSet difference = (BitSet) smaller.clone();
+                difference.andNot(set);
+                if (difference.isEmpty()) {
+                    minimal = false;
+                    break;
+                }
+            }
+            if (minimal)
+                result.add(set);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,356 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.compact.CompactAttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.compact.StronglyConnectedComponents;
+import org.fiware.cybercaptor.server.informationsystem.InformationSystem;
+import org.fiware.cybercaptor.server.remediation.RemediationAction;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The cheapest prerequisite leaves of all the vertices of an attack graph, computed at once by dynamic programming
+ * (Knuth's generalization of Dijkstra's algorithm to AND/OR graphs) : the cost of a leaf is given by a
+ * {@link LeafCost}, the cost of an "AND" vertex is the sum of the costs of its parents and the cost of an "OR" vertex
+ * the minimum of the costs of its parents. A leaf shared by several parents of an "AND" vertex is counted once
+ * for each of them, as in the list of prerequisite leaves.
+ * The strongly connected components are handled in topological order : the vertices that are not on a cycle are
+ * computed directly from their parents, the vertices of a cycle by increasing cost with a priority queue, a vertex
+ * never being derived from itself. The costs and the choices of the vertices are then read in O(1).
+ */
+public class MinimumPrerequisites {
+    /**
+     * The cost of the prerequisite leaves of a vertex
+     */
+    public interface LeafCost {
+        /**
+         * @param leaf a leaf of the attack graph
+         * @return the (non negative) cost of the leaf as a prerequisite
+         * @throws Exception
+         */
+        double getCost(Vertex leaf) throws Exception;
+    }
+
+    /**
+     * Each leaf costs 1 : the cheapest prerequisites are the smallest ones
+     */
+    public static final LeafCost LEAF_COUNT = new LeafCost() {
+        @Override
+        public double getCost(Vertex leaf) {
+            return 1;
+        }
+    };
+
+    /**
+     * A leaf related to a vulnerability costs between 1 (CVSS score of 10) and 2 (CVSS score of 0), the other leaves
+     * cost 1 : the smallest prerequisites are still the cheapest, the most severe vulnerabilities being preferred
+     * between prerequisites of the same size.
+     */
+    public static final LeafCost CVSS_SCORE = new LeafCost() {
+        @Override
+        public double getCost(Vertex leaf) {
+            if (leaf.relatedVulnerabilibty == null || leaf.relatedVulnerabilibty.cvss == null)
+                return 1;
+            double score = Math.min(Math.max(leaf.relatedVulnerabilibty.cvss.getScore(), 0), 10);
+            return 1 + (10 - score) / 10;
+        }
+    };
+
+    /**
+     * The operational cost of the cheapest remediation of a leaf
+     */
+    public static class RemediationCost implements LeafCost {
+        private final AttackPath attackPath;
+        private final InformationSystem topology;
+        private final Connection conn;
+        private final String costParametersFolder;
+        private final double unremediableCost;
+
+        /**
+         * @param attackPath           the attack path whose leaves are remediated
+         * @param topology             the network topology
+         * @param conn                 the database connection
+         * @param costParametersFolder the folder containing the cost parameters of the remediations
+         * @param unremediableCost     the cost of the leaves that can not be remediated
+         */
+        public RemediationCost(AttackPath attackPath, InformationSystem topology, Connection conn, String costParametersFolder, double unremediableCost) {
+            this.attackPath = attackPath;
+            this.topology = topology;
+            this.conn = conn;
+            this.costParametersFolder = costParametersFolder;
+            this.unremediableCost = unremediableCost;
+        }
+
+        @Override
+        public double getCost(Vertex leaf) throws Exception {
+            double result = Double.POSITIVE_INFINITY;
+            for (List<RemediationAction> remediation : attackPath.getRemediationActionForLeaf(leaf, topology, conn, costParametersFolder)) {
+                double cost = 0;
+                for (RemediationAction action : remediation) {
+                    cost += action.getOperationalCost();
+                }
+                result = Math.min(result, cost);
+            }
+            return result == Double.POSITIVE_INFINITY ? unremediableCost : result;
+        }
+    }
+
+    /**
+     * No choice : the vertex is a leaf, an "AND" vertex or can not be reached
+     */
+    private static final int NO_CHOICE = -1;
+
+    /**
+     * The compact snapshot of the attack graph on which the prerequisites have been computed
+     */
+    private final CompactAttackGraph compact;
+
+    /**
+     * The cost of the cheapest prerequisites of each vertex, infinite if it can not be reached
+     */
+    private final double[] costs;
+
+    /**
+     * The position in the parent array of the compact snapshot of the parent chosen by each "OR" vertex
+     */
+    private final int[] choices;
+
+    /**
+     * Compute the cheapest prerequisites of all the vertices of an attack graph
+     *
+     * @param attackGraph the attack graph (or attack path)
+     * @param leafCost    the cost of the leaves
+     * @throws Exception
+     */
+    public MinimumPrerequisites(AttackGraph attackGraph, LeafCost leafCost) throws Exception {
+        this.compact = attackGraph.getCompactAttackGraph();
+        int numberOfVertices = compact.getNumberOfVertices();
+        this.costs = new double[numberOfVertices];
+        this.choices = new int[numberOfVertices];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        Arrays.fill(choices, NO_CHOICE);
+
+        StronglyConnectedComponents components = new StronglyConnectedComponents(compact);
+        //The parents of a vertex are in a component of higher number
+        for (int component = components.getNumberOfComponents() - 1; component >= 0; component--) {
+            int start = components.getMembersStart(component);
+            int end = components.getMembersEnd(component);
+            if (end - start == 1 && !components.isOnCycle(components.getMember(start))) {
+                int vertex = components.getMember(start);
+                if (compact.getType(vertex) == CompactAttackGraph.LEAF)
+                    costs[vertex] = leafCost.getCost(compact.getVertex(vertex));
+                else
+                    computeFromParents(vertex);
+            } else {
+                computeCycle(components, component);
+            }
+        }
+    }
+
+    /**
+     * Compute the cost of a vertex whose parents are all computed
+     *
+     * @param vertex the index of the vertex
+     */
+    private void computeFromParents(int vertex) {
+        byte type = compact.getType(vertex);
+        int parentsStart = compact.getParentsStart(vertex);
+        int parentsEnd = compact.getParentsEnd(vertex);
+        if (type == CompactAttackGraph.AND) {
+            if (parentsStart == parentsEnd)
+                return;
+            double cost = 0;
+            for (int k = parentsStart; k < parentsEnd; k++) {
+                cost += costs[compact.getParent(k)];
+            }
+            costs[vertex] = cost;
+        } else if (type == CompactAttackGraph.OR) {
+            for (int k = parentsStart; k < parentsEnd; k++) {
+                if (costs[compact.getParent(k)] < costs[vertex]) {
+                    costs[vertex] = costs[compact.getParent(k)];
+                    choices[vertex] = k;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the costs of the vertices of a component on a cycle, whose parents in the other components are
+     * computed : each vertex is final when it is taken from the queue, once all its parents in the component are
+     * final for an "AND" vertex, once one of them is final for an "OR" vertex.
+     *
+     * @param components the strongly connected components of the snapshot
+     * @param component  the component
+     */
+    private void computeCycle(StronglyConnectedComponents components, int component) {
+        //For an "AND" vertex, the number of its parents in the component that are not final yet
+        int[] remainingParents = new int[compact.getNumberOfVertices()];
+        double[] partialCosts = new double[compact.getNumberOfVertices()];
+        boolean[] isFinal = new boolean[compact.getNumberOfVertices()];
+        PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+
+        for (int i = components.getMembersStart(component); i < components.getMembersEnd(component); i++) {
+            int vertex = components.getMember(i);
+            byte type = compact.getType(vertex);
+            if (type == CompactAttackGraph.AND) {
+                double cost = 0;
+                for (int k = compact.getParentsStart(vertex); k < compact.getParentsEnd(vertex); k++) {
+                    int parent = compact.getParent(k);
+                    if (components.getComponent(parent) == component)
+                        remainingParents[vertex]++;
+                    else
+                        cost += costs[parent];
+                }
+                partialCosts[vertex] = cost;
+                if (remainingParents[vertex] == 0 && cost < Double.POSITIVE_INFINITY)
+                    queue.add(new QueueEntry(vertex, cost));
+            } else if (type == CompactAttackGraph.OR) {
+                double cost = Double.POSITIVE_INFINITY;
+                for (int k = compact.getParentsStart(vertex); k < compact.getParentsEnd(vertex); k++) {
+                    int parent = compact.getParent(k);
+                    if (components.getComponent(parent) != component)
+                        cost = Math.min(cost, costs[parent]);
+                }
+                partialCosts[vertex] = cost;
+                if (cost < Double.POSITIVE_INFINITY)
+                    queue.add(new QueueEntry(vertex, cost));
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            QueueEntry entry = queue.poll();
+            int vertex = entry.vertex;
+            if (isFinal[vertex] || entry.cost > partialCosts[vertex])
+                continue;
+            isFinal[vertex] = true;
+            costs[vertex] = entry.cost;
+            if (compact.getType(vertex) == CompactAttackGraph.OR) {
+                //The first parent of minimal cost, among the parents final before the vertex
+                for (int k = compact.getParentsStart(vertex); k < compact.getParentsEnd(vertex); k++) {
+                    int parent = compact.getParent(k);
+                    if ((components.getComponent(parent) != component || (isFinal[parent] && parent != vertex))
+                            && costs[parent] == entry.cost) {
+                        choices[vertex] = k;
+                        break;
+                    }
+                }
+            }
+            for (int k = compact.getChildrenStart(vertex); k < compact.getChildrenEnd(vertex); k++) {
+                int child = compact.getChild(k);
+                if (isFinal[child] || components.getComponent(child) != component)
+                    continue;
+                if (compact.getType(child) == CompactAttackGraph.AND) {
+                    partialCosts[child] += entry.cost;
+                    if (--remainingParents[child] == 0 && partialCosts[child] < Double.POSITIVE_INFINITY)
+                        queue.add(new QueueEntry(child, partialCosts[child]));
+                } else if (compact.getType(child) == CompactAttackGraph.OR && entry.cost < partialCosts[child]) {
+                    partialCosts[child] = entry.cost;
+                    queue.add(new QueueEntry(child, entry.cost));
+                }
+            }
+        }
+    }
+
+    /**
+     * A vertex of a cycle waiting in the priority queue, with its cost when it has been added
+     */
+    private static class QueueEntry implements Comparable<QueueEntry> {
+        private final int vertex;
+        private final double cost;
+
+        private QueueEntry(int vertex, double cost) {
+            this.vertex = vertex;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(QueueEntry other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+
+    /**
+     * @return the compact snapshot of the attack graph on which the prerequisites have been computed
+     */
+    public CompactAttackGraph getCompactAttackGraph() {
+        return compact;
+    }
+
+    /**
+     * @param vertex a vertex of the attack graph
+     * @return the cost of the cheapest prerequisite leaves of the vertex, infinite if it can not be reached
+     */
+    public double getCost(Vertex vertex) {
+        int index = compact.indexOf(vertex.id);
+        return index < 0 ? Double.POSITIVE_INFINITY : costs[index];
+    }
+
+    /**
+     * @param vertex a vertex of the attack graph
+     * @return the parent chosen by the vertex if it is an "OR" vertex that can be reached, else null
+     */
+    public Vertex getChosenParent(Vertex vertex) {
+        int index = compact.indexOf(vertex.id);
+        if (index < 0 || choices[index] == NO_CHOICE)
+            return null;
+        return compact.getVertex(compact.getParent(choices[index]));
+    }
+
+    /**
+     * @param vertex a vertex of the attack graph
+     * @return the cheapest prerequisite leaves of the vertex, in the order of the parents, a leaf being repeated for
+     * each of its uses. Empty if the vertex can not be reached.
+     */
+    public List<Vertex> getPrerequisiteLeaves(Vertex vertex) {
+        List<Vertex> result = new ArrayList<Vertex>();
+        int index = compact.indexOf(vertex.id);
+        if (index < 0 || costs[index] == Double.POSITIVE_INFINITY)
+            return result;
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = index;
+        while (size > 0) {
+            int current = stack[--size];
+            byte type = compact.getType(current);
+            if (type == CompactAttackGraph.LEAF) {
+                result.add(compact.getVertex(current));
+            } else if (type == CompactAttackGraph.OR) {
+                if (size == stack.length)
+                    stack = Arrays.copyOf(stack, size * 2);
+                stack[size++] = compact.getParent(choices[current]);
+            } else if (type == CompactAttackGraph.AND) {
+                int parentsStart = compact.getParentsStart(current);
+                int parentsEnd = compact.getParentsEnd(current);
+                if (size + parentsEnd - parentsStart > stack.length)
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, size + parentsEnd - parentsStart));
+                for (int k = parentsEnd - 1; k >= parentsStart; k--) {
+                    stack[size++] = compact.getParent(k);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -21,11 +21,15 @@
 package org.fiware.cybercaptor.server.attackgraph;
 
 import org.fiware.cybercaptor.server.attackgraph.fact.Fact;
-import org.jdom2.Document;
+import org.fiware.cybercaptor.server.attackgraph.fact.StringDictionary;
 import org.jdom2.Element;
-import org.jdom2.input.SAXBuilder;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -55,20 +59,19 @@ public class MulvalAttackGraph extends AttackGraph implements Cloneable {
     }
 
     /**
-     * Load the attack graph from the XML file generated by MulVAL
+     * Load the attack graph from the XML file generated by MulVAL.
+     * The file is read with a streaming parser, so that no DOM of the whole file is built.
      * @param xmlPath the path of the XML file
      * @throws Exception
      */
     public void loadFromFile(String xmlPath) throws Exception {
         this.xmlFilePath = xmlPath;
         FileInputStream file = new FileInputStream(xmlPath);
-
-        SAXBuilder sxb = new SAXBuilder();
-        Document document = sxb.build(file);
-        Element root = document.getRootElement();
-
-        addArcsAndVerticesFromDomElement(root);
-
+        try {
+            addArcsAndVerticesFromXmlStream(file);
+        } finally {
+            file.close();
+        }
     }
 
     /**
@@ -82,27 +85,11 @@ public class MulvalAttackGraph extends AttackGraph implements Cloneable {
 		/* Add all the vertices */
         Element vertices_element = root.getChild("vertices");
         if (vertices_element != null) {
+            StringDictionary dictionary = new StringDictionary();
             List<Element> vertices = vertices_element.getChildren("vertex");
             for (Element vertex_element : vertices) { //All arcs
-                Element id_element = vertex_element.getChild("id");
-                if (id_element != null && Integer.parseInt(id_element.getText()) > 0) {
-                    int id_vertex = Integer.parseInt(id_element.getText());
-                    Vertex vertex = getExistingOrCreateVertex(id_vertex);
-                    Element fact_element = vertex_element.getChild("fact");
-                    if (fact_element != null) {
-                        vertex.fact = new Fact(fact_element.getText(), vertex);
-                    }
-
-                    Element metric_element = vertex_element.getChild("metric");
-                    if (metric_element != null) {
-                        vertex.mulvalMetric = Float.parseFloat(metric_element.getText());
-                    }
-
-                    Element type_element = vertex_element.getChild("type");
-                    if (type_element != null) {
-                        vertex.setType(type_element.getText());
-                    }
-                }
+                addVertexFromXml(vertex_element.getChildText("id"), vertex_element.getChildText("fact"),
+                        vertex_element.getChildText("metric"), vertex_element.getChildText("type"), dictionary);
             }
         }
 
@@ -111,15 +98,183 @@ public class MulvalAttackGraph extends AttackGraph implements Cloneable {
         if (arcs_element != null) {
             List<Element> arcs = arcs_element.getChildren("arc");
             for (Element arc_element : arcs) { //All arcs
-                Element src_element = arc_element.getChild("dst"); //MULVAL XML FILES INVERSE DESTINATION AND DESTINATION
-                Element dst_element = arc_element.getChild("src"); //MULVAL XML FILES INVERSE DESTINATION AND DESTINATION
-                if (src_element != null && dst_element != null) {
-                    Vertex destination = getExistingOrCreateVertex(Integer.parseInt(dst_element.getText()));
-                    Vertex source = getExistingOrCreateVertex(Integer.parseInt(src_element.getText()));
-                    Arc arc = new Arc(source, destination);
-                    this.arcs.add(arc);
+                //MULVAL XML FILES INVERSE DESTINATION AND DESTINATION
+                addArcFromXml(arc_element.getChildText("dst"), arc_element.getChildText("src"));
+            }
+        }
+    }
+
+    /**
+     * Create the attack graph from a MulVAL XML stream, in one pass of a pull parser.
+     * The result is the same as the one of {@link #addArcsAndVerticesFromDomElement(Element)} on the document.
+     * @param inputStream the XML stream
+     * @throws XMLStreamException
+     */
+    public void addArcsAndVerticesFromXmlStream(InputStream inputStream) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+        try {
+            while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+                //Go to the root element
+            }
+            if (!reader.isStartElement())
+                return;
+
+            boolean verticesRead = false;
+            boolean arcsRead = false;
+            StringDictionary dictionary = new StringDictionary();
+            while (nextChildElement(reader)) {
+                if (!verticesRead && reader.getLocalName().equals("vertices")) {
+                    verticesRead = true;
+                    while (nextChildElement(reader)) {
+                        if (reader.getLocalName().equals("vertex"))
+                            readVertex(reader, dictionary);
+                        else
+                            readText(reader);
+                    }
+                } else if (!arcsRead && reader.getLocalName().equals("arcs")) {
+                    arcsRead = true;
+                    while (nextChildElement(reader)) {
+                        if (reader.getLocalName().equals("arc"))
+                            readArc(reader);
+                        else
+                            readText(reader);
+                    }
+                } else {
+                    readText(reader);
                 }
             }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read a vertex element and add its vertex to the attack graph
+     * @param reader     the XML reader, on the start of the vertex element
+     * @param dictionary the dictionary of the commands and params of the facts of the attack graph
+     * @throws XMLStreamException
+     */
+    private void readVertex(XMLStreamReader reader, StringDictionary dictionary) throws XMLStreamException {
+        String id = null;
+        String fact = null;
+        String metric = null;
+        String type = null;
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            String text = readText(reader);
+            if (id == null && name.equals("id"))
+                id = text;
+            else if (fact == null && name.equals("fact"))
+                fact = text;
+            else if (metric == null && name.equals("metric"))
+                metric = text;
+            else if (type == null && name.equals("type"))
+                type = text;
+        }
+        addVertexFromXml(id, fact, metric, type, dictionary);
+    }
+
+    /**
+     * Read an arc element and add its arc to the attack graph
+     * @param reader the XML reader, on the start of the arc element
+     * @throws XMLStreamException
+     */
+    private void readArc(XMLStreamReader reader) throws XMLStreamException {
+        String src = null;
+        String dst = null;
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            String text = readText(reader);
+            if (src == null && name.equals("src"))
+                src = text;
+            else if (dst == null && name.equals("dst"))
+                dst = text;
+        }
+        //MULVAL XML FILES INVERSE DESTINATION AND DESTINATION
+        addArcFromXml(dst, src);
+    }
+
+    /**
+     * Go to the start of the next child element of the current element
+     * @param reader the XML reader, on the start of the current element or on the end of one of its children
+     * @return false if the end of the current element has been reached
+     * @throws XMLStreamException
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                return true;
+            if (event == XMLStreamConstants.END_ELEMENT)
+                return false;
+        }
+        return false;
+    }
+
+    /**
+     * Read the text of the current element (the text of its sub-elements is skipped) and go to its end
+     * @param reader the XML reader, on the start of the element
+     * @return the text of the element
+     * @throws XMLStreamException
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0)
+                    break;
+                depth--;
+            } else if (depth == 0 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE)) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Add a vertex read in a MulVAL XML file
+     * @param id     the text of the id element
+     * @param fact   the text of the fact element, or null
+     * @param metric the text of the metric element, or null
+     * @param type   the text of the type element, or null
+     * @param dictionary the dictionary of the commands and params of the facts of the attack graph
+     */
+    private void addVertexFromXml(String id, String fact, String metric, String type, StringDictionary dictionary) {
+        if (id != null && Integer.parseInt(id) > 0) {
+            int id_vertex = Integer.parseInt(id);
+            Vertex vertex = getExistingOrCreateVertex(id_vertex);
+            if (fact != null) {
+                vertex.fact = new Fact(fact, vertex, dictionary);
+            }
+
+            if (metric != null) {
+                vertex.mulvalMetric = Float.parseFloat(metric);
+            }
+
+            if (type != null) {
+                vertex.setType(type);
+            }
+        }
+    }
+
+    /**
+     * Add an arc read in a MulVAL XML file
+     * @param source      the text of the source id
+     * @param destination the text of the destination id
+     */
+    private void addArcFromXml(String source, String destination) {
+        if (source != null && destination != null) {
+            Vertex destinationVertex = getExistingOrCreateVertex(Integer.parseInt(destination));
+            Vertex sourceVertex = getExistingOrCreateVertex(Integer.parseInt(source));
+            Arc arc = new Arc(sourceVertex, destinationVertex);
+            this.appendArc(arc);
         }
     }
 
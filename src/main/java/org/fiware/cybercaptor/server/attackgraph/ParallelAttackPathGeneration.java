@@ -0,0 +1,244 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.Vertex.VertexType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generation of the attack paths of an attack graph in a fork/join pool.
+ * The work is split per attacker goal, per parent of the goal, and for the "AND" parents of a goal,
+ * per attack path of their last parent. The attack paths are scored in the workers, and returned in the same
+ * order as the sequential generation. As in the sequential generation, the attack paths with the same vertices and
+ * arcs as a previous one are skipped and do not count toward the maximum number of attack paths.
+ * The attack graph must not be modified during the generation.
+ */
+class ParallelAttackPathGeneration {
+    private final AttackGraph attackGraph;
+    private final AttackPathGenerationOptions options;
+    private final long startTime;
+
+    /**
+     * The number of duplicate attack paths skipped by the workers
+     */
+    private final AtomicInteger numberOfDuplicates = new AtomicInteger();
+
+    /**
+     * @param attackGraph the attack graph
+     * @param options     the limits of the generation, with the fork/join pool to use
+     * @param startTime   the start time of the generation, in milliseconds
+     */
+    ParallelAttackPathGeneration(AttackGraph attackGraph, AttackPathGenerationOptions options, long startTime) {
+        this.attackGraph = attackGraph;
+        this.options = options;
+        this.startTime = startTime;
+    }
+
+    /**
+     * @param goals the attacker goals
+     * @return the scored attack paths to the goals
+     */
+    List<AttackPath> generate(List<Vertex> goals) {
+        List<AttackPathTask> tasks = new ArrayList<AttackPathTask>();
+        for (Vertex goal : goals) {
+            tasks.add(new GoalTask(goal));
+        }
+        return options.getForkJoinPool().invoke(new ConcatenationTask(tasks));
+    }
+
+    /**
+     * @return the number of duplicate attack paths skipped by the last generation
+     */
+    int getNumberOfDuplicates() {
+        return numberOfDuplicates.get();
+    }
+
+    /**
+     * @param attackPaths the attack paths generated by independent tasks, in the order of the sequential generation
+     * @return the attack paths without duplicates, limited to the maximum number of attack paths
+     */
+    private List<AttackPath> concatenate(List<List<AttackPath>> attackPaths) {
+        List<AttackPath> result = new ArrayList<AttackPath>();
+        Set<AttackPathFingerprint> fingerprints = new HashSet<AttackPathFingerprint>();
+        for (List<AttackPath> part : attackPaths) {
+            for (AttackPath attackPath : part) {
+                if (options.getMaximumNumberOfAttackPaths() > 0 && result.size() >= options.getMaximumNumberOfAttackPaths())
+                    return result;
+                if (fingerprints.add(attackPath.getFingerprint()))
+                    result.add(attackPath);
+                else
+                    numberOfDuplicates.incrementAndGet();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Enumerate attack paths until the end of the enumeration or until a limit is reached,
+     * then add the goal to them and score them
+     *
+     * @param attackPaths the enumeration of the attack paths
+     * @param parent      the parent of the goal that is the last vertex of the attack paths, or null if the attack
+     *                    paths already end by the goal
+     * @param goal        the goal
+     * @return the scored attack paths, without duplicates
+     */
+    private List<AttackPath> collect(AttackPathIterator attackPaths, Vertex parent, Vertex goal) {
+        List<AttackPath> result = new ArrayList<AttackPath>();
+        Set<AttackPathFingerprint> fingerprints = new HashSet<AttackPathFingerprint>();
+        while (!options.isLimitReached(result.size(), startTime) && attackPaths.hasNext()) {
+            AttackPathFragment fragment = attackPaths.nextFragment();
+            if (parent != null)
+                fragment = AttackPathFragment.extend(fragment, parent, goal);
+            AttackPath attackPath = new AttackPath(fragment);
+            if (!fingerprints.add(attackPath.getFingerprint())) {
+                numberOfDuplicates.incrementAndGet();
+                continue;
+            }
+            attackPath.computeScoring();
+            attackPath.materialize();
+            result.add(attackPath);
+        }
+        return result;
+    }
+
+    /**
+     * Task generating a part of the attack paths
+     */
+    private abstract class AttackPathTask extends RecursiveTask<List<AttackPath>> {
+    }
+
+    /**
+     * Task running independent tasks and concatenating their results in order
+     */
+    private class ConcatenationTask extends AttackPathTask {
+        private final List<AttackPathTask> tasks;
+
+        private ConcatenationTask(List<AttackPathTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected List<AttackPath> compute() {
+            invokeAll(tasks);
+            List<List<AttackPath>> results = new ArrayList<List<AttackPath>>();
+            for (AttackPathTask task : tasks) {
+                results.add(task.join());
+            }
+            return concatenate(results);
+        }
+    }
+
+    /**
+     * Task generating the attack paths to an attacker goal : for an "OR" goal, one sub task per parent
+     */
+    private class GoalTask extends AttackPathTask {
+        private final Vertex goal;
+
+        private GoalTask(Vertex goal) {
+            this.goal = goal;
+        }
+
+        @Override
+        protected List<AttackPath> compute() {
+            if (goal.type != VertexType.OR)
+                return collect(new AttackPathIterator(attackGraph, goal), null, goal);
+
+            List<AttackPathTask> tasks = new ArrayList<AttackPathTask>();
+            List<Vertex> ancestors = Arrays.asList(goal);
+            for (Vertex parent : attackGraph.getParents(goal)) {
+                if (!AttackPathIterator.isUsable(attackGraph, parent, ancestors))
+                    break;
+                tasks.add(new GoalParentTask(goal, parent));
+            }
+            return new ConcatenationTask(tasks).compute();
+        }
+    }
+
+    /**
+     * Task generating the attack paths to an attacker goal through one of its parents.
+     * If the parent is an "AND" vertex, its combinations are split per attack path of its last parent.
+     */
+    private class GoalParentTask extends AttackPathTask {
+        private final Vertex goal;
+        private final Vertex parent;
+
+        private GoalParentTask(Vertex goal, Vertex parent) {
+            this.goal = goal;
+            this.parent = parent;
+        }
+
+        @Override
+        protected List<AttackPath> compute() {
+            List<Vertex> ancestors = Arrays.asList(goal);
+            List<Vertex> grandParents = attackGraph.getParents(parent);
+            if (parent.type != VertexType.AND || grandParents.size() < 2)
+                return collect(new AttackPathIterator(attackGraph, parent, ancestors), parent, goal);
+
+            //The attack paths of the last parent of the "AND" vertex change the slowest in its combinations
+            AttackPathIterator lastParentIterator = new AttackPathIterator(attackGraph,
+                    grandParents.get(grandParents.size() - 1), Arrays.asList(parent, goal));
+            //The same attack path of the last parent would only give duplicate combinations
+            List<AttackPathFragment> lastParentAttackPaths = new ArrayList<AttackPathFragment>();
+            Set<AttackPathFingerprint> fingerprints = new HashSet<AttackPathFingerprint>();
+            while (!options.isLimitReached(lastParentAttackPaths.size(), startTime) && lastParentIterator.hasNext()) {
+                AttackPathFragment lastParentAttackPath = lastParentIterator.nextFragment();
+                if (fingerprints.add(lastParentAttackPath.getFingerprint()))
+                    lastParentAttackPaths.add(lastParentAttackPath);
+            }
+            List<AttackPathTask> tasks = new ArrayList<AttackPathTask>();
+            for (AttackPathFragment lastParentAttackPath : lastParentAttackPaths) {
+                tasks.add(new CombinationsTask(goal, parent, lastParentAttackPath));
+            }
+            return new ConcatenationTask(tasks).compute();
+        }
+    }
+
+    /**
+     * Task generating the attack paths to an attacker goal through one of its "AND" parents,
+     * for one attack path of the last parent of this "AND" vertex
+     */
+    private class CombinationsTask extends AttackPathTask {
+        private final Vertex goal;
+        private final Vertex parent;
+        private final AttackPathFragment lastParentAttackPath;
+
+        private CombinationsTask(Vertex goal, Vertex parent, AttackPathFragment lastParentAttackPath) {
+            this.goal = goal;
+            this.parent = parent;
+            this.lastParentAttackPath = lastParentAttackPath;
+        }
+
+        @Override
+        protected List<AttackPath> compute() {
+            List<AttackPathFragment> lastParentAttackPaths = new ArrayList<AttackPathFragment>();
+            lastParentAttackPaths.add(lastParentAttackPath);
+            return collect(new AttackPathIterator(attackGraph, parent, Arrays.asList(goal), lastParentAttackPaths), parent, goal);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.compact.CompactAttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.compact.StronglyConnectedComponents;
+import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand;
+import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand.CommandType;
+import org.fiware.cybercaptor.server.attackgraph.fact.Fact.FactType;
+import org.fiware.cybercaptor.server.properties.ProjectProperties;
+
+
+/**
+ * Probability of compromise of all the vertices of an attack graph, propagated from the leaves in one pass :
+ * the probability of a leaf is given by a {@link LeafProbability}, the probability of an "AND" vertex is the product
+ * of the probabilities of its parents and the probability of an "OR" vertex is the noisy-OR of the probabilities
+ * of its parents (1 - the product of their complements), the parents being considered as independent.
+ * The strongly connected components are handled in topological order, so that the vertices that are not on a cycle
+ * are computed once, in O(V+E). The vertices of a cycle are computed according to the {@link CycleHandling}.
+ */
+public class RiskPropagation {
+    /**
+     * How the probabilities of the vertices on a cycle are computed
+     */
+    public enum CycleHandling {
+        /**
+         * The arcs between two vertices of the same cycle are considered as not compromised : each vertex of a
+         * cycle is only computed from its parents outside the cycle (one pass, lower bound of the fixed point)
+         */
+        CUT,
+        /**
+         * The probabilities of the vertices of a cycle are computed again, starting from 0, until they do not
+         * change any more (least fixed point, reached up to a precision of {@link #PRECISION})
+         */
+        FIXED_POINT
+    }
+
+    /**
+     * The probability of compromise of a leaf
+     */
+    public interface LeafProbability {
+        /**
+         * @param leaf a leaf of the attack graph
+         * @return the probability, between 0 and 1, that the fact of the leaf can be used by the attacker
+         */
+        double getProbability(Vertex leaf);
+    }
+
+    /**
+     * The probabilities of the CVSS leaves are the CVSS v2 weights of their access complexity
+     * (0.71 for "l", 0.61 for "m", 0.35 for "h"), the probabilities of the leaves related to a vulnerability
+     * the CVSS score of the vulnerability divided by 10. The other leaves are facts of the topology, of
+     * probability 1.
+     */
+    public static final LeafProbability CVSS = new LeafProbability() {
+        @Override
+        public double getProbability(Vertex leaf) {
+            if (leaf.fact != null && leaf.fact.type == FactType.DATALOG_FACT && leaf.fact.datalogCommand != null) {
+                DatalogCommand command = leaf.fact.datalogCommand;
+                if (command.commandType == CommandType.CVSS && command.params.length >= 2) {
+                    if (command.params[1].equals("l"))
+                        return 0.71;
+                    else if (command.params[1].equals("m"))
+                        return 0.61;
+                    else if (command.params[1].equals("h"))
+                        return 0.35;
+                }
+            }
+            if (leaf.relatedVulnerabilibty != null && leaf.relatedVulnerabilibty.cvss != null
+                    && leaf.relatedVulnerabilibty.cvss.getScore() > 0)
+                return Math.min(leaf.relatedVulnerabilibty.cvss.getScore(), 10) / 10;
+            return 1;
+        }
+    };
+
+    /**
+     * The precision of the probabilities of the vertices of a cycle, with {@link CycleHandling#FIXED_POINT}
+     */
+    public static final double PRECISION = 1e-9;
+
+    /**
+     * The maximum number of passes over the vertices of a cycle, with {@link CycleHandling#FIXED_POINT}
+     */
+    public static final int MAXIMUM_NUMBER_OF_PASSES = 1000;
+
+    /**
+     * The compact snapshot of the attack graph on which the probabilities have been computed
+     */
+    private final CompactAttackGraph compact;
+
+    /**
+     * How the probabilities of the vertices on a cycle have been computed
+     */
+    private final CycleHandling cycleHandling;
+
+    /**
+     * The probability of compromise of each vertex of the compact snapshot
+     */
+    private final double[] probabilities;
+
+    /**
+     * Compute the probabilities of compromise of all the vertices of an attack graph
+     *
+     * @param attackGraph     the attack graph (or attack path)
+     * @param leafProbability the probabilities of the leaves
+     * @param cycleHandling   how the probabilities of the vertices on a cycle are computed
+     */
+    public RiskPropagation(AttackGraph attackGraph, LeafProbability leafProbability, CycleHandling cycleHandling) {
+        this.compact = attackGraph.getCompactAttackGraph();
+        this.cycleHandling = cycleHandling;
+        int numberOfVertices = compact.getNumberOfVertices();
+        this.probabilities = new double[numberOfVertices];
+
+        StronglyConnectedComponents components = new StronglyConnectedComponents(compact);
+        //The parents of a vertex are in a component of higher number, and are computed before it
+        for (int component = components.getNumberOfComponents() - 1; component >= 0; component--) {
+            int start = components.getMembersStart(component);
+            int end = components.getMembersEnd(component);
+            for (int i = start; i < end; i++) {
+                int vertex = components.getMember(i);
+                if (compact.getType(vertex) == CompactAttackGraph.LEAF)
+                    probabilities[vertex] = Math.min(Math.max(leafProbability.getProbability(compact.getVertex(vertex)), 0), 1);
+            }
+            if (end - start == 1 && !components.isOnCycle(components.getMember(start))) {
+                int vertex = components.getMember(start);
+                if (compact.getType(vertex) != CompactAttackGraph.LEAF)
+                    probabilities[vertex] = probabilityFromParents(vertex);
+            } else if (cycleHandling == CycleHandling.CUT) {
+                //The probabilities of the vertices of the component are still 0
+                double[] cut = new double[end - start];
+                for (int i = start; i < end; i++) {
+                    cut[i - start] = probabilityFromParents(components.getMember(i));
+                }
+                for (int i = start; i < end; i++) {
+                    probabilities[components.getMember(i)] = cut[i - start];
+                }
+            } else {
+                for (int pass = 0; pass < MAXIMUM_NUMBER_OF_PASSES; pass++) {
+                    double maximumChange = 0;
+                    for (int i = start; i < end; i++) {
+                        int vertex = components.getMember(i);
+                        double probability = probabilityFromParents(vertex);
+                        maximumChange = Math.max(maximumChange, Math.abs(probability - probabilities[vertex]));
+                        probabilities[vertex] = probability;
+                    }
+                    if (maximumChange < PRECISION)
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the cycle handling of the property "risk-propagation-cycle-handling" of the project properties
+     * ("cut" or "fixed-point"), {@link CycleHandling#FIXED_POINT} if it is not set
+     */
+    public static CycleHandling getConfiguredCycleHandling() {
+        String cycleHandlingProperty = ProjectProperties.getProperty("risk-propagation-cycle-handling");
+        if (cycleHandlingProperty != null && !cycleHandlingProperty.trim().isEmpty())
+            return CycleHandling.valueOf(cycleHandlingProperty.trim().toUpperCase().replace('-', '_'));
+        return CycleHandling.FIXED_POINT;
+    }
+
+    /**
+     * @param vertex the index of an "AND" or "OR" vertex
+     * @return the probability of the vertex computed from the current probabilities of its parents
+     */
+    private double probabilityFromParents(int vertex) {
+        byte type = compact.getType(vertex);
+        int parentsStart = compact.getParentsStart(vertex);
+        int parentsEnd = compact.getParentsEnd(vertex);
+        if (parentsStart == parentsEnd)
+            return 0;
+        if (type == CompactAttackGraph.AND) {
+            double probability = 1;
+            for (int k = parentsStart; k < parentsEnd; k++) {
+                probability *= probabilities[compact.getParent(k)];
+            }
+            return probability;
+        } else if (type == CompactAttackGraph.OR) {
+            double complement = 1;
+            for (int k = parentsStart; k < parentsEnd; k++) {
+                complement *= 1 - probabilities[compact.getParent(k)];
+            }
+            return 1 - complement;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the compact snapshot of the attack graph on which the probabilities have been computed
+     */
+    public CompactAttackGraph getCompactAttackGraph() {
+        return compact;
+    }
+
+    /**
+     * @return how the probabilities of the vertices on a cycle have been computed
+     */
+    public CycleHandling getCycleHandling() {
+        return cycleHandling;
+    }
+
+    /**
+     * @param vertex a vertex of the attack graph
+     * @return the probability that the attacker compromises the vertex, 0 if it is not in the attack graph
+     */
+    public double getProbability(Vertex vertex) {
+        int index = compact.indexOf(vertex.id);
+        return index < 0 ? 0 : probabilities[index];
+    }
+
+    /**
+     * @return the probability of compromise of each vertex, in the order of the vertices of the compact snapshot
+     */
+    public double[] getProbabilities() {
+        return probabilities.clone();
+    }
+}
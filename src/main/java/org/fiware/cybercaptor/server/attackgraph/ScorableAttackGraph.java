@@ -0,0 +1,46 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import java.util.List;
+
+/**
+ * An attack graph that can be given to the scoring function : an attack graph or a simulated attack graph
+ */
+public interface ScorableAttackGraph {
+    /**
+     * Save the attack graph in an xml file
+     *
+     * @param filePath the path in which the attack graph is saved
+     * @throws Exception
+     */
+    void saveToXmlFile(String filePath) throws Exception;
+
+    /**
+     * Score the attack graph with the scoring function and extract its scored attack paths
+     *
+     * @param outputPath       the path in which the XML attack paths are saved for debugging (null to save nothing)
+     * @param previousMaxScore the previous maximum score
+     * @return the list of attack paths extracted from the attack graph
+     * @throws Exception
+     */
+    List<AttackPath> scoreAttackGraphAndGetAttackPaths(String outputPath, double previousMaxScore) throws Exception;
+}
@@ -21,6 +21,7 @@
 package org.fiware.cybercaptor.server.attackgraph;
 
 import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand;
+import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand.CommandType;
 import org.fiware.cybercaptor.server.attackgraph.fact.Fact;
 import org.fiware.cybercaptor.server.informationsystem.InformationSystem;
 import org.fiware.cybercaptor.server.informationsystem.InformationSystemHost;
@@ -110,17 +111,8 @@ public class Vertex implements Cloneable {
      * @param graph the complete attack graph
      */
     public void computeParentsAndChildren(AttackGraph graph) {
-        this.parents = new ArrayList<Vertex>();//initialize the list of parents
-        this.children = new ArrayList<Vertex>();//initialize the list of children
-        for (int i = 0; i < graph.arcs.size();i++) {
-            Arc arc = graph.arcs.get(i);
-            if(arc.destination == this) {
-                this.parents.add(arc.source);
-            }
-            else if(arc.source == this) {
-                this.children.add(arc.destination);
-            }
-        }
+        this.parents = graph.getParents(this);
+        this.children = graph.getChildren(this);
     }
 
     /**
@@ -136,58 +128,58 @@ public class Vertex implements Cloneable {
         if (this.fact != null) {
             if (this.fact.type == Fact.FactType.DATALOG_FACT && this.fact.datalogCommand != null) {
                 DatalogCommand command = this.fact.datalogCommand;
-                switch (command.command) {
-                    case "vulExists":
+                switch (command.commandType) {
+                    case VUL_EXISTS:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[0]);
                         }
                         break;
-                    case "execCode":
+                    case EXEC_CODE:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[0]);
                         }
                         break;
-                    case "netAccess":
+                    case NET_ACCESS:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[0]);
                         }
                         break;
-                    case "canAccessHost":
+                    case CAN_ACCESS_HOST:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[0]);
                         }
                         break;
-                    case "hacl":
+                    case HACL:
                         if (command.params.length >= 2) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[1]);
                         }
                         break;
-                    case "accessMaliciousInput":
+                    case ACCESS_MALICIOUS_INPUT:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[0]);
                         }
                         break;
-                    case "networkServiceInfo":
+                    case NETWORK_SERVICE_INFO:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[0]);
                         }
                         break;
-                    case "principalCompromised":
+                    case PRINCIPAL_COMPROMISED:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByUserName(command.params[0]);
                         }
                         break;
-                    case "attackerLocated":
+                    case ATTACKER_LOCATED:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[0]);
                         }
                         break;
-                    case "accessFile":
+                    case ACCESS_FILE:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[0]);
                         }
                         break;
-                    case "hasAccount":
+                    case HAS_ACCOUNT:
                         if (command.params.length >= 1) {
                             result = informationSystem.existingMachineByNameOrIPAddress(command.params[1]);
                         }
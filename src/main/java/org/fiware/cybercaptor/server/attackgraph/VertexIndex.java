@@ -0,0 +1,299 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand;
+import org.fiware.cybercaptor.server.attackgraph.fact.Fact;
+import org.fiware.cybercaptor.server.attackgraph.fact.Fact.FactType;
+import org.fiware.cybercaptor.server.vulnerability.Vulnerability;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes of the vertices of an attack graph, by Datalog command (ex "execCode", "hacl", ...),
+ * by host name and by CVE. The vertices of each key are sorted by increasing id.
+ * The index is built from the facts of the vertices, the hosts being the parameters naming a machine
+ * (both hosts of a hacl), and the CVEs the vulnerabilities of the vulExists and cvss facts and the related
+ * vulnerabilities of the vertices.
+ * The index remembers the fact and the related vulnerability of each vertex it has indexed, so that a vertex whose
+ * fact has been reassigned makes the index out of date.
+ */
+class VertexIndex {
+    /**
+     * The vertex map of the attack graph on which the index has been built
+     */
+    private final VertexMap vertices;
+
+    /**
+     * The modification count of the vertex map after the last modification seen by this index
+     */
+    private int verticesModificationCount;
+
+    /**
+     * Vertex id -> the vertex with the fact and the vulnerability under which it has been indexed
+     */
+    private final HashMap<Integer, IndexedVertex> indexedVertices = new HashMap<Integer, IndexedVertex>();
+
+    /**
+     * Datalog command -> (vertex id -> vertex)
+     */
+    private final HashMap<String, TreeMap<Integer, Vertex>> verticesByCommand = new HashMap<String, TreeMap<Integer, Vertex>>();
+
+    /**
+     * Host name -> (vertex id -> vertex)
+     */
+    private final HashMap<String, TreeMap<Integer, Vertex>> verticesByHost = new HashMap<String, TreeMap<Integer, Vertex>>();
+
+    /**
+     * CVE -> (vertex id -> vertex)
+     */
+    private final HashMap<String, TreeMap<Integer, Vertex>> verticesByCve = new HashMap<String, TreeMap<Integer, Vertex>>();
+
+    /**
+     * Build the index of the vertices of an attack graph
+     *
+     * @param vertices the vertex map of the attack graph
+     */
+    VertexIndex(VertexMap vertices) {
+        this.vertices = vertices;
+        for (Vertex vertex : vertices.values()) {
+            add(vertex);
+        }
+        verticesModificationCount = vertices.getModificationCount();
+    }
+
+    /**
+     * Check that the index is up to date with the vertex map. The modification count of the map is compared first,
+     * then the vertices are browsed to check that their facts and related vulnerabilities are those
+     * of the index (a comparison of references, in O(number of vertices)).
+     *
+     * @param vertices the current vertex map of the attack graph
+     * @return true if this index has been built on this map, has seen all its modifications and if no fact
+     * or related vulnerability has been reassigned since
+     */
+    boolean isUpToDateWith(Map<Integer, Vertex> vertices) {
+        if (this.vertices != vertices || this.verticesModificationCount != this.vertices.getModificationCount()
+                || this.indexedVertices.size() != vertices.size())
+            return false;
+        for (Vertex vertex : vertices.values()) {
+            IndexedVertex indexed = indexedVertices.get(vertex.id);
+            if (indexed == null || !indexed.isUpToDateWith(vertex))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Add a vertex to the index
+     *
+     * @param vertex the vertex to add
+     */
+    void add(Vertex vertex) {
+        IndexedVertex indexed = new IndexedVertex(vertex);
+        IndexedVertex previous = indexedVertices.put(vertex.id, indexed);
+        if (previous != null)
+            update(previous, false);
+        update(indexed, true);
+        verticesModificationCount = vertices.getModificationCount();
+    }
+
+    /**
+     * Remove a vertex from the index, under the keys of the fact with which it has been indexed
+     *
+     * @param vertex the vertex to remove
+     */
+    void remove(Vertex vertex) {
+        IndexedVertex indexed = indexedVertices.remove(vertex.id);
+        if (indexed != null)
+            update(indexed, false);
+        verticesModificationCount = vertices.getModificationCount();
+    }
+
+    /**
+     * Add or remove a vertex under all its keys
+     *
+     * @param indexed the vertex with its indexed fact and vulnerability
+     * @param add     true to add the vertex, false to remove it
+     */
+    private void update(IndexedVertex indexed, boolean add) {
+        Vertex vertex = indexed.vertex;
+        if (indexed.relatedVulnerability != null)
+            update(verticesByCve, indexed.relatedVulnerability.cve, vertex, add);
+        if (indexed.fact == null || indexed.fact.type != FactType.DATALOG_FACT || indexed.datalogCommand == null)
+            return;
+        DatalogCommand command = indexed.datalogCommand;
+        String[] params = command.params;
+        update(verticesByCommand, command.command, vertex, add);
+        switch (command.commandType) {
+            case HACL:
+                if (params.length >= 2) {
+                    update(verticesByHost, params[0], vertex, add);
+                    update(verticesByHost, params[1], vertex, add);
+                }
+                break;
+            case HAS_ACCOUNT:
+                if (params.length >= 2)
+                    update(verticesByHost, params[1], vertex, add);
+                break;
+            case VUL_EXISTS:
+                if (params.length >= 2) {
+                    update(verticesByHost, params[0], vertex, add);
+                    update(verticesByCve, params[1], vertex, add);
+                }
+                break;
+            case CVSS:
+                if (params.length >= 1)
+                    update(verticesByCve, params[0], vertex, add);
+                break;
+            case EXEC_CODE:
+            case ACCESS_FILE:
+            case NET_ACCESS:
+            case CAN_ACCESS_HOST:
+            case ACCESS_MALICIOUS_INPUT:
+            case ATTACKER_LOCATED:
+            case NETWORK_SERVICE_INFO:
+                if (params.length >= 1)
+                    update(verticesByHost, params[0], vertex, add);
+                break;
+        }
+    }
+
+    private static void update(HashMap<String, TreeMap<Integer, Vertex>> index, String key, Vertex vertex, boolean add) {
+        if (key == null)
+            return;
+        TreeMap<Integer, Vertex> indexed = index.get(key);
+        if (add) {
+            if (indexed == null) {
+                indexed = new TreeMap<Integer, Vertex>();
+                index.put(key, indexed);
+            }
+            indexed.put(vertex.id, vertex);
+        } else if (indexed != null) {
+            indexed.remove(vertex.id);
+            if (indexed.isEmpty())
+                index.remove(key);
+        }
+    }
+
+    /**
+     * @param command a Datalog command
+     * @return the vertices whose fact has this command
+     */
+    Collection<Vertex> getByCommand(String command) {
+        return valuesOf(verticesByCommand.get(command));
+    }
+
+    /**
+     * @param host a host name or IP address, as in the facts
+     * @return the vertices whose fact concerns this host
+     */
+    Collection<Vertex> getByHost(String host) {
+        return valuesOf(verticesByHost.get(host));
+    }
+
+    /**
+     * @param cve a CVE identifier
+     * @return the vertices whose fact or related vulnerability concerns this CVE
+     */
+    Collection<Vertex> getByCve(String cve) {
+        return valuesOf(verticesByCve.get(cve));
+    }
+
+    /**
+     * Intersect the indexes : the smallest set of vertices is browsed and its vertices are looked up
+     * in the other sets.
+     *
+     * @param command a Datalog command, or null to accept all the commands
+     * @param host    a host name or IP address, or null to accept all the hosts
+     * @param cve     a CVE identifier, or null to accept all the CVEs
+     * @return the vertices matching all the non null criteria, sorted by increasing id
+     */
+    List<Vertex> get(String command, String host, String cve) {
+        List<TreeMap<Integer, Vertex>> criteria = new ArrayList<TreeMap<Integer, Vertex>>(3);
+        if (command != null)
+            criteria.add(verticesByCommand.get(command));
+        if (host != null)
+            criteria.add(verticesByHost.get(host));
+        if (cve != null)
+            criteria.add(verticesByCve.get(cve));
+        if (criteria.isEmpty())
+            return new ArrayList<Vertex>(new TreeMap<Integer, Vertex>(vertices).values());
+        TreeMap<Integer, Vertex> smallest = null;
+        for (TreeMap<Integer, Vertex> criterion : criteria) {
+            if (criterion == null)
+                return new ArrayList<Vertex>();
+            if (smallest == null || criterion.size() < smallest.size())
+                smallest = criterion;
+        }
+        List<Vertex> result = new ArrayList<Vertex>(smallest.size());
+        for (Vertex vertex : smallest.values()) {
+            boolean matches = true;
+            for (TreeMap<Integer, Vertex> criterion : criteria) {
+                if (!criterion.containsKey(vertex.id)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches)
+                result.add(vertex);
+        }
+        return result;
+    }
+
+    private static Collection<Vertex> valuesOf(TreeMap<Integer, Vertex> indexed) {
+        if (indexed == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableCollection(indexed.values());
+    }
+
+    /**
+     * A vertex with the fact, the Datalog command and the related vulnerability under which it has been indexed
+     */
+    private static class IndexedVertex {
+        private final Vertex vertex;
+        private final Fact fact;
+        private final DatalogCommand datalogCommand;
+        private final Vulnerability relatedVulnerability;
+
+        private IndexedVertex(Vertex vertex) {
+            this.vertex = vertex;
+            this.fact = vertex.fact;
+            this.datalogCommand = vertex.fact == null ? null : vertex.fact.datalogCommand;
+            this.relatedVulnerability = vertex.relatedVulnerabilibty;
+        }
+
+        /**
+         * @param vertex the vertex of the attack graph with the same id
+         * @return true if it is the indexed vertex, with the same fact and related vulnerability
+         */
+        private boolean isUpToDateWith(Vertex vertex) {
+            return this.vertex == vertex && this.fact == vertex.fact
+                    && this.datalogCommand == (vertex.fact == null ? null : vertex.fact.datalogCommand)
+                    && this.relatedVulnerability == vertex.relatedVulnerabilibty;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The vertex map of an attack graph (vertex id -> vertex). It counts its modifications, including the replacements
+ * of a vertex by another one with the same id, so that the vertex index of the attack graph detects the
+ * modifications made directly on the map even when they do not change its size.
+ */
+class VertexMap extends HashMap<Integer, Vertex> {
+    /**
+     * The number of modifications of the map
+     */
+    private int modificationCount = 0;
+
+    /**
+     * Create an empty vertex map
+     */
+    VertexMap() {
+        super();
+    }
+
+    /**
+     * Create a vertex map containing the vertices of another map
+     *
+     * @param vertices the initial vertices
+     */
+    VertexMap(Map<Integer, Vertex> vertices) {
+        super(vertices);
+    }
+
+    /**
+     * @return the number of modifications of the map (additions, removals and replacements of vertices)
+     */
+    int getModificationCount() {
+        return modificationCount;
+    }
+
+    @Override
+    public Vertex put(Integer id, Vertex vertex) {
+        modificationCount++;
+        return super.put(id, vertex);
+    }
+
+    @Override
+    public void putAll(Map<? extends Integer, ? extends Vertex> vertices) {
+        modificationCount++;
+        super.putAll(vertices);
+    }
+
+    @Override
+    public Vertex remove(Object id) {
+        modificationCount++;
+        return super.remove(id);
+    }
+
+    @Override
+    public void clear() {
+        modificationCount++;
+        super.clear();
+    }
+}
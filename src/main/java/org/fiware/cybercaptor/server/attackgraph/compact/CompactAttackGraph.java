@@ -0,0 +1,304 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph.compact;
+
+import org.fiware.cybercaptor.server.attackgraph.AttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.Vertex;
+import org.fiware.cybercaptor.server.attackgraph.Vertex.VertexType;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable snapshot of an attack graph in compressed sparse row form.
+ * The vertices are numbered with dense indices 0..n-1, in increasing order of their MulVAL id.
+ * The parents (sources of the incoming arcs) of the vertex i are
+ * {@code getParent(k)} for k in [{@code getParentsStart(i)}, {@code getParentsEnd(i)}[,
+ * and its children are read the same way, so that the algorithms working on a snapshot
+ * do not allocate anything per visited vertex or arc.
+ * The position k of an incoming arc is used as the identifier of this arc.
+ */
+public class CompactAttackGraph {
+    /**
+     * Type code of an AND vertex
+     */
+    public static final byte AND = 0;
+    /**
+     * Type code of an OR vertex
+     */
+    public static final byte OR = 1;
+    /**
+     * Type code of a LEAF vertex
+     */
+    public static final byte LEAF = 2;
+    /**
+     * Type code of a vertex without type
+     */
+    public static final byte UNKNOWN = -1;
+
+    /**
+     * The MulVAL id of each vertex, in increasing order
+     */
+    private final int[] vertexIds;
+
+    /**
+     * The attack graph vertex of each index
+     */
+    private final Vertex[] vertices;
+
+    /**
+     * The type code of each vertex
+     */
+    private final byte[] types;
+
+    /**
+     * The MulVAL metric of each vertex
+     */
+    private final float[] mulvalMetrics;
+
+    /**
+     * The start of the parents of each vertex in {@link #parents} (size n + 1)
+     */
+    private final int[] parentOffsets;
+
+    /**
+     * The parents of all vertices
+     */
+    private final int[] parents;
+
+    /**
+     * The start of the children of each vertex in {@link #children} (size n + 1)
+     */
+    private final int[] childOffsets;
+
+    /**
+     * The children of all vertices
+     */
+    private final int[] children;
+
+    /**
+     * The identifier (position in {@link #parents}) of the arc of each child position
+     */
+    private final int[] childArcs;
+
+    /**
+     * Create a snapshot of an attack graph
+     *
+     * @param attackGraph the attack graph
+     */
+    public CompactAttackGraph(AttackGraph attackGraph) {
+        int numberOfVertices = attackGraph.vertices.size();
+        vertexIds = new int[numberOfVertices];
+        int i = 0;
+        for (int id : attackGraph.vertices.keySet()) {
+            vertexIds[i++] = id;
+        }
+        Arrays.sort(vertexIds);
+
+        vertices = new Vertex[numberOfVertices];
+        types = new byte[numberOfVertices];
+        mulvalMetrics = new float[numberOfVertices];
+        parentOffsets = new int[numberOfVertices + 1];
+        childOffsets = new int[numberOfVertices + 1];
+        int[] parentsBuffer = new int[attackGraph.arcs.size()];
+        int numberOfArcs = 0;
+        for (i = 0; i < numberOfVertices; i++) {
+            Vertex vertex = attackGraph.vertices.get(vertexIds[i]);
+            vertices[i] = vertex;
+            types[i] = typeCode(vertex.type);
+            mulvalMetrics[i] = vertex.mulvalMetric;
+            parentOffsets[i] = numberOfArcs;
+            List<Vertex> vertexParents = attackGraph.getParents(vertex);
+            for (Vertex parent : vertexParents) {
+                int parentIndex = Arrays.binarySearch(vertexIds, parent.id);
+                if (parentIndex >= 0) { //Arcs from deleted vertices are not kept
+                    if (numberOfArcs == parentsBuffer.length)
+                        parentsBuffer = Arrays.copyOf(parentsBuffer, 2 * numberOfArcs + 1);
+                    parentsBuffer[numberOfArcs++] = parentIndex;
+                    childOffsets[parentIndex + 1]++;
+                }
+            }
+        }
+        parentOffsets[numberOfVertices] = numberOfArcs;
+        parents = Arrays.copyOf(parentsBuffer, numberOfArcs);
+
+        //Transpose the parent lists to get the children lists
+        for (i = 0; i < numberOfVertices; i++) {
+            childOffsets[i + 1] += childOffsets[i];
+        }
+        children = new int[numberOfArcs];
+        childArcs = new int[numberOfArcs];
+        int[] nextChild = Arrays.copyOf(childOffsets, numberOfVertices);
+        for (i = 0; i < numberOfVertices; i++) {
+            for (int k = parentOffsets[i]; k < parentOffsets[i + 1]; k++) {
+                int position = nextChild[parents[k]]++;
+                children[position] = i;
+                childArcs[position] = k;
+            }
+        }
+    }
+
+    /**
+     * @param type a vertex type
+     * @return the type code of this vertex type
+     */
+    public static byte typeCode(VertexType type) {
+        if (type == null)
+            return UNKNOWN;
+        switch (type) {
+            case AND:
+                return AND;
+            case OR:
+                return OR;
+            case LEAF:
+                return LEAF;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @return the number of vertices of the snapshot
+     */
+    public int getNumberOfVertices() {
+        return vertexIds.length;
+    }
+
+    /**
+     * @return the number of arcs of the snapshot
+     */
+    public int getNumberOfArcs() {
+        return parents.length;
+    }
+
+    /**
+     * @param vertexId a MulVAL vertex id
+     * @return the dense index of this vertex, or -1 if it is not in the snapshot
+     */
+    public int indexOf(int vertexId) {
+        int index = Arrays.binarySearch(vertexIds, vertexId);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @param index a dense index
+     * @return the MulVAL id of the vertex
+     */
+    public int getVertexId(int index) {
+        return vertexIds[index];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the attack graph vertex
+     */
+    public Vertex getVertex(int index) {
+        return vertices[index];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the type code of the vertex ({@link #AND}, {@link #OR}, {@link #LEAF} or {@link #UNKNOWN})
+     */
+    public byte getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the MulVAL metric of the vertex
+     */
+    public float getMulvalMetric(int index) {
+        return mulvalMetrics[index];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the position of the first parent of the vertex
+     */
+    public int getParentsStart(int index) {
+        return parentOffsets[index];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the position following the last parent of the vertex
+     */
+    public int getParentsEnd(int index) {
+        return parentOffsets[index + 1];
+    }
+
+    /**
+     * @param position a position between {@link #getParentsStart(int)} and {@link #getParentsEnd(int)},
+     *                 which is also the identifier of the arc from this parent
+     * @return the dense index of the parent
+     */
+    public int getParent(int position) {
+        return parents[position];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the number of parents of the vertex
+     */
+    public int getInDegree(int index) {
+        return parentOffsets[index + 1] - parentOffsets[index];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the position of the first child of the vertex
+     */
+    public int getChildrenStart(int index) {
+        return childOffsets[index];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the position following the last child of the vertex
+     */
+    public int getChildrenEnd(int index) {
+        return childOffsets[index + 1];
+    }
+
+    /**
+     * @param position a position between {@link #getChildrenStart(int)} and {@link #getChildrenEnd(int)}
+     * @return the dense index of the child
+     */
+    public int getChild(int position) {
+        return children[position];
+    }
+
+    /**
+     * @param position a position between {@link #getChildrenStart(int)} and {@link #getChildrenEnd(int)}
+     * @return the identifier of the arc to this child
+     */
+    public int getChildArc(int position) {
+        return childArcs[position];
+    }
+
+    /**
+     * @param index a dense index
+     * @return the number of children of the vertex
+     */
+    public int getOutDegree(int index) {
+        return childOffsets[index + 1] - childOffsets[index];
+    }
+}
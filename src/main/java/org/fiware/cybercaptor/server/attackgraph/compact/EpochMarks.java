@@ -0,0 +1,111 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph.compact;
+
+import java.util.Arrays;
+
+/**
+ * Reusable set of marked indices (visited or taboo vertices of a traversal).
+ * A mark is the epoch of the traversal which has set it, so that clearing all the marks
+ * before a new traversal is done in O(1) by starting a new epoch.
+ */
+public class EpochMarks {
+    /**
+     * The marks of each thread, reused by its successive traversals
+     */
+    private static final ThreadLocal<EpochMarks> THREAD_MARKS = new ThreadLocal<EpochMarks>() {
+        @Override
+        protected EpochMarks initialValue() {
+            return new EpochMarks(0);
+        }
+    };
+
+    /**
+     * The epoch of the mark of each index (lower than the current epoch if the index is not marked)
+     */
+    private int[] stamps;
+
+    /**
+     * The current epoch
+     */
+    private int epoch = 1;
+
+    /**
+     * Create a set of marks
+     *
+     * @param capacity the initial number of indices, the marks grow when a higher index is marked
+     */
+    public EpochMarks(int capacity) {
+        stamps = new int[capacity];
+    }
+
+    /**
+     * Get the marks of the current thread, all unmarked, for a new traversal. The marks are shared by the traversals
+     * of the thread : a traversal must not start another traversal using these marks before it ends.
+     * The traversals of different threads use different marks.
+     *
+     * @param capacity the number of indices of the traversal
+     * @return the marks of the current thread
+     */
+    public static EpochMarks ofCurrentThread(int capacity) {
+        EpochMarks marks = THREAD_MARKS.get();
+        if (marks.stamps.length < capacity)
+            marks.stamps = new int[capacity];
+        marks.clear();
+        return marks;
+    }
+
+    /**
+     * Unmark all the indices, before a new traversal
+     */
+    public void clear() {
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            epoch = 0;
+        }
+        epoch++;
+    }
+
+    /**
+     * @param index an index
+     * @return true if the index is marked
+     */
+    public boolean isMarked(int index) {
+        return index < stamps.length && stamps[index] == epoch;
+    }
+
+    /**
+     * @param index the index to mark
+     */
+    public void mark(int index) {
+        if (index >= stamps.length)
+            stamps = Arrays.copyOf(stamps, Math.max(index + 1, 2 * stamps.length));
+        stamps[index] = epoch;
+    }
+
+    /**
+     * @param index the index to unmark
+     */
+    public void unmark(int index) {
+        if (index < stamps.length)
+            stamps[index] = 0;
+    }
+}
@@ -0,0 +1,123 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph.compact;
+
+import java.util.BitSet;
+
+/**
+ * Reachability index of a compact attack graph : tells in O(1) whether a vertex can contribute to another one,
+ * that is whether there is a path of arcs from the first vertex to the second.
+ * The strongly connected components are contracted into a DAG, and each component is labelled with the bitset
+ * of the components it can reach, computed once in reverse topological order.
+ * The index takes n * n / 8 bytes for n components.
+ */
+public class ReachabilityIndex {
+    /**
+     * The compact snapshot on which the index has been built
+     */
+    private final CompactAttackGraph compact;
+
+    /**
+     * The strongly connected components of the snapshot
+     */
+    private final StronglyConnectedComponents components;
+
+    /**
+     * The components that each component can reach, itself included
+     */
+    private final BitSet[] reachableComponents;
+
+    /**
+     * Build the reachability index of a compact attack graph
+     *
+     * @param compact the compact snapshot of an attack graph
+     */
+    public ReachabilityIndex(CompactAttackGraph compact) {
+        this(compact, new StronglyConnectedComponents(compact));
+    }
+
+    /**
+     * Build the reachability index of a compact attack graph
+     *
+     * @param compact    the compact snapshot of an attack graph
+     * @param components the strongly connected components of the snapshot
+     */
+    public ReachabilityIndex(CompactAttackGraph compact, StronglyConnectedComponents components) {
+        this.compact = compact;
+        this.components = components;
+        int numberOfComponents = components.getNumberOfComponents();
+        int numberOfVertices = compact.getNumberOfVertices();
+
+        //Group the vertices by component
+        int[] offsets = new int[numberOfComponents + 1];
+        for (int i = 0; i < numberOfVertices; i++) {
+            offsets[components.getComponent(i) + 1]++;
+        }
+        for (int c = 0; c < numberOfComponents; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        int[] members = new int[numberOfVertices];
+        int[] fill = new int[numberOfComponents];
+        for (int i = 0; i < numberOfVertices; i++) {
+            int component = components.getComponent(i);
+            members[offsets[component] + fill[component]++] = i;
+        }
+
+        //The children of a component have lower numbers : they are labelled first
+        reachableComponents = new BitSet[numberOfComponents];
+        for (int c = 0; c < numberOfComponents; c++) {
+            BitSet reachable = new BitSet(c + 1);
+            reachable.set(c);
+            for (int m = offsets[c]; m < offsets[c + 1]; m++) {
+                int vertex = members[m];
+                for (int k = compact.getChildrenStart(vertex); k < compact.getChildrenEnd(vertex); k++) {
+                    int childComponent = components.getComponent(compact.getChild(k));
+                    if (!reachable.get(childComponent))
+                        reachable.or(reachableComponents[childComponent]);
+                }
+            }
+            reachableComponents[c] = reachable;
+        }
+    }
+
+    /**
+     * @return the compact snapshot on which the index has been built
+     */
+    public CompactAttackGraph getCompactAttackGraph() {
+        return compact;
+    }
+
+    /**
+     * @return the strongly connected components of the snapshot
+     */
+    public StronglyConnectedComponents getStronglyConnectedComponents() {
+        return components;
+    }
+
+    /**
+     * @param from the dense index of a vertex
+     * @param to   the dense index of another vertex
+     * @return true if there is a path of arcs from the first vertex to the second (always true if they are the same)
+     */
+    public boolean canReach(int from, int to) {
+        return reachableComponents[components.getComponent(from)].get(components.getComponent(to));
+    }
+}
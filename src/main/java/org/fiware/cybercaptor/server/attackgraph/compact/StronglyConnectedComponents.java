@@ -0,0 +1,198 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph.compact;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Strongly connected components of a compact attack graph (Tarjan algorithm, without recursion).
+ * The components are numbered in reverse topological order : if there is an arc from a vertex of the component a
+ * to a vertex of another component b, then a > b. Contracting each component into one vertex gives a DAG
+ * (the condensation of the attack graph).
+ */
+public class StronglyConnectedComponents {
+    /**
+     * The component of each vertex
+     */
+    private final int[] components;
+
+    /**
+     * The number of vertices of each component
+     */
+    private final int[] componentSizes;
+
+    /**
+     * The vertices sorted by component
+     */
+    private final int[] members;
+
+    /**
+     * The position in the members array of the first vertex of each component, and the number of vertices at the end
+     */
+    private final int[] membersStart;
+
+    /**
+     * The vertices that are on a cycle : in a component of several vertices, or with an arc to themselves
+     */
+    private final BitSet onCycle;
+
+    /**
+     * Compute the strongly connected components of a compact attack graph
+     *
+     * @param compact the compact snapshot of an attack graph
+     */
+    public StronglyConnectedComponents(CompactAttackGraph compact) {
+        int numberOfVertices = compact.getNumberOfVertices();
+        components = new int[numberOfVertices];
+        onCycle = new BitSet(numberOfVertices);
+        int[] sizes = new int[numberOfVertices];
+        int numberOfComponents = 0;
+        members = new int[numberOfVertices];
+        int numberOfMembers = 0;
+
+        int[] order = new int[numberOfVertices];
+        int[] lowLink = new int[numberOfVertices];
+        Arrays.fill(order, -1);
+        int[] stack = new int[numberOfVertices];
+        int stackSize = 0;
+        BitSet onStack = new BitSet(numberOfVertices);
+        int[] callStack = new int[numberOfVertices];
+        int[] nextChild = new int[numberOfVertices];
+        int counter = 0;
+
+        for (int root = 0; root < numberOfVertices; root++) {
+            if (order[root] >= 0)
+                continue;
+            int depth = 0;
+            callStack[0] = root;
+            nextChild[0] = compact.getChildrenStart(root);
+            order[root] = lowLink[root] = counter++;
+            stack[stackSize++] = root;
+            onStack.set(root);
+            while (depth >= 0) {
+                int vertex = callStack[depth];
+                if (nextChild[depth] < compact.getChildrenEnd(vertex)) {
+                    int child = compact.getChild(nextChild[depth]++);
+                    if (child == vertex) {
+                        onCycle.set(vertex);
+                    } else if (order[child] < 0) {
+                        depth++;
+                        callStack[depth] = child;
+                        nextChild[depth] = compact.getChildrenStart(child);
+                        order[child] = lowLink[child] = counter++;
+                        stack[stackSize++] = child;
+                        onStack.set(child);
+                    } else if (onStack.get(child)) {
+                        lowLink[vertex] = Math.min(lowLink[vertex], order[child]);
+                    }
+                } else {
+                    if (lowLink[vertex] == order[vertex]) {
+                        //The vertex is the root of a component : pop its members
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack.clear(member);
+                            components[member] = numberOfComponents;
+                            members[numberOfMembers++] = member;
+                            sizes[numberOfComponents]++;
+                        } while (member != vertex);
+                        numberOfComponents++;
+                    }
+                    depth--;
+                    if (depth >= 0)
+                        lowLink[callStack[depth]] = Math.min(lowLink[callStack[depth]], lowLink[vertex]);
+                }
+            }
+        }
+        componentSizes = Arrays.copyOf(sizes, numberOfComponents);
+        membersStart = new int[numberOfComponents + 1];
+        for (int component = 0; component < numberOfComponents; component++) {
+            membersStart[component + 1] = membersStart[component] + componentSizes[component];
+        }
+        for (int i = 0; i < numberOfVertices; i++) {
+            if (componentSizes[components[i]] > 1)
+                onCycle.set(i);
+        }
+    }
+
+    /**
+     * @return the number of strongly connected components
+     */
+    public int getNumberOfComponents() {
+        return componentSizes.length;
+    }
+
+    /**
+     * @param index the dense index of a vertex
+     * @return the component of the vertex
+     */
+    public int getComponent(int index) {
+        return components[index];
+    }
+
+    /**
+     * @param component a component
+     * @return the number of vertices of the component
+     */
+    public int getComponentSize(int component) {
+        return componentSizes[component];
+    }
+
+    /**
+     * @param component a component
+     * @return the position in the members array of the first vertex of the component
+     */
+    public int getMembersStart(int component) {
+        return membersStart[component];
+    }
+
+    /**
+     * @param component a component
+     * @return the position in the members array after the last vertex of the component
+     */
+    public int getMembersEnd(int component) {
+        return membersStart[component + 1];
+    }
+
+    /**
+     * @param position a position in the members array (the vertices sorted by component)
+     * @return the dense index of the vertex at this position
+     */
+    public int getMember(int position) {
+        return members[position];
+    }
+
+    /**
+     * @param index the dense index of a vertex
+     * @return true if the vertex is on a cycle (in a component of several vertices, or with an arc to itself)
+     */
+    public boolean isOnCycle(int index) {
+        return onCycle.get(index);
+    }
+
+    /**
+     * @return true if the attack graph has no cycle
+     */
+    public boolean isAcyclic() {
+        return onCycle.isEmpty();
+    }
+}
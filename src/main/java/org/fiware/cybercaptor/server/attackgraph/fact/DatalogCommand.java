@@ -27,21 +27,17 @@ import org.fiware.cybercaptor.server.informationsystem.InformationSystemHost;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
 
 /**
- * Class representing a datalog command contained in a MulVAL attack graph vertex
+ * Class representing a datalog command contained in a MulVAL attack graph vertex.
+ * The fact strings are parsed by a single-pass tokenizer, and the command and the params are interned
+ * in the dictionary of the attack graph being parsed, if any.
  *
  * @author Francois-Xavier Aguessy
  */
 public class DatalogCommand implements Cloneable {
 
-    /**
-     * The pattern of the command
-     */
-    public static Pattern pattern = Pattern.compile("^([a-zA-Z\\\\=]+)\\((.*)\\)$");
-
     /**
      * The related fact
      */
@@ -52,6 +48,11 @@ public class DatalogCommand implements Cloneable {
      */
     public String command;
 
+    /**
+     * The type of the Datalog command
+     */
+    public CommandType commandType;
+
     /**
      * The params of the command
      */
@@ -63,19 +64,40 @@ public class DatalogCommand implements Cloneable {
      * @param fact_string the fact string
      */
     public DatalogCommand(String fact_string, Fact fact) {
-        Matcher matcherRule = pattern.matcher(fact_string);
-        if (matcherRule.matches()) {
-            this.command = matcherRule.group(1);
-            this.params = matcherRule.group(2).split(",");//si une chaine de caractère contient des virgules entre quote, cela ne fonctionne pas
-            for (int i = 0; i < this.params.length; i++) { //If the param start and ends with a quote, we delete it.
-                if ((this.params[i].startsWith("'") && this.params[i].endsWith("'")) || (this.params[i].startsWith("\"") && this.params[i].endsWith("\""))) {
-                    this.params[i] = this.params[i].substring(1, this.params[i].length() - 1);
-                }
-            }
+        this(fact_string, fact, null);
+    }
+
+    /**
+     * Create a Datalog Command from a fact string, sharing its command and params with the other Datalog commands
+     * of the same attack graph
+     *
+     * @param fact_string the fact string
+     * @param fact        the related fact
+     * @param dictionary  the dictionary of the commands and params of the attack graph (null to share nothing)
+     */
+    public DatalogCommand(String fact_string, Fact fact, StringDictionary dictionary) {
+        int openingParenthesis = openingParenthesisOf(fact_string);
+        if (openingParenthesis > 0) {
+            this.command = intern(dictionary, fact_string, 0, openingParenthesis);
+            this.commandType = CommandType.fromCommand(this.command);
+            this.params = parseParams(fact_string, openingParenthesis + 1, fact_string.length() - 1, dictionary);
         }
         this.fact = fact;
     }
 
+    /**
+     * @param dictionary a dictionary, or null
+     * @param source     the source string
+     * @param start      the start of the region in the source string
+     * @param end        the end (exclusive) of the region in the source string
+     * @return the string of the dictionary equal to the region, or the region if there is no dictionary
+     */
+    private static String intern(StringDictionary dictionary, String source, int start, int end) {
+        if (dictionary == null)
+            return source.substring(start, end);
+        return dictionary.intern(source, start, end);
+    }
+
     /**
      * Check if a fact string is a Datalog fact
      *
@@ -83,8 +105,104 @@ public class DatalogCommand implements Cloneable {
      * @return true if the fact string is a Datalog fact else false
      */
     public static boolean isADatalogFact(String fact) {
-        Matcher matcherRule = pattern.matcher(fact);
-        return matcherRule.matches();
+        return openingParenthesisOf(fact) > 0;
+    }
+
+    /**
+     * @param fact a fact string
+     * @return the position of the opening parenthesis of the fact string if it has the form command(params),
+     * the command being made of letters, '\' and '=', else -1
+     */
+    private static int openingParenthesisOf(String fact) {
+        int length = fact.length();
+        int i = 0;
+        while (i < length && isCommandCharacter(fact.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i + 1 >= length || fact.charAt(i) != '(' || fact.charAt(length - 1) != ')')
+            return -1;
+        for (int j = i + 1; j < length - 1; j++) {
+            if (isLineTerminator(fact.charAt(j)))
+                return -1;
+        }
+        return i;
+    }
+
+    private static boolean isCommandCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '\\' || c == '=';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Split the params of a fact string on the commas that are not between quotes, and remove the quotes around
+     * the params. As with {@link String#split(String)}, the trailing empty params are removed.
+     *
+     * @param fact       the fact string
+     * @param start      the start of the params in the fact string
+     * @param end        the end (exclusive) of the params in the fact string
+     * @param dictionary the dictionary in which the params are interned, or null
+     * @return the params
+     */
+    private static String[] parseParams(String fact, int start, int end, StringDictionary dictionary) {
+        if (start == end)
+            return new String[]{""};
+
+        //First pass : count the params, without the trailing empty ones
+        int numberOfParams = 0;
+        int count = 0;
+        for (int paramStart = start; ; ) {
+            int paramEnd = paramEnd(fact, paramStart, end);
+            count++;
+            if (paramEnd > paramStart)
+                numberOfParams = count;
+            if (paramEnd >= end)
+                break;
+            paramStart = paramEnd + 1;
+        }
+
+        //Second pass : intern the params
+        String[] result = new String[numberOfParams];
+        int paramStart = start;
+        for (int p = 0; p < numberOfParams; p++) {
+            int paramEnd = paramEnd(fact, paramStart, end);
+            int first = paramStart;
+            int last = paramEnd;
+            if (last - first >= 2 && isQuote(fact.charAt(first)) && fact.charAt(last - 1) == fact.charAt(first)) {
+                first++;
+                last--;
+            }
+            result[p] = intern(dictionary, fact, first, last);
+            paramStart = paramEnd + 1;
+        }
+        return result;
+    }
+
+    /**
+     * @param fact  the fact string
+     * @param start the start of a param
+     * @param end   the end of the params
+     * @return the position of the comma following the param, or end
+     */
+    private static int paramEnd(String fact, int start, int end) {
+        int i = start;
+        if (i < end && isQuote(fact.charAt(i))) {
+            char quote = fact.charAt(i);
+            i++;
+            while (i < end && fact.charAt(i) != quote) {
+                i++;
+            }
+        }
+        while (i < end && fact.charAt(i) != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '\'' || c == '"';
     }
 
     /**
@@ -94,7 +212,7 @@ public class DatalogCommand implements Cloneable {
      * @throws Exception
      */
     public List<List<InformationSystemHost>> getRoutesBetweenHostsOfHacl(InformationSystem informationSystem) throws Exception {
-        if (!this.command.equals("hacl"))
+        if (this.commandType != CommandType.HACL)
             throw new Exception("This datalog command is not a hacl");
 
         if (this.params[0].equals("internet") || this.params[0].equals("1.1.1.1")) {
@@ -127,4 +245,65 @@ public class DatalogCommand implements Cloneable {
         return "DatalogFact [command=" + command + ", params="
                 + Arrays.toString(params) + "]";
     }
+
+    /**
+     * The types of the Datalog commands of MulVAL used in CyberCAPTOR
+     */
+    public static enum CommandType {
+        EXEC_CODE("execCode"),
+        ACCESS_FILE("accessFile"),
+        PRINCIPAL_COMPROMISED("principalCompromised"),
+        NET_ACCESS("netAccess"),
+        CAN_ACCESS_HOST("canAccessHost"),
+        ACCESS_MALICIOUS_INPUT("accessMaliciousInput"),
+        ATTACKER_LOCATED("attackerLocated"),
+        VUL_EXISTS("vulExists"),
+        CVSS("cvss"),
+        HACL("hacl"),
+        HACLPRIMIT("haclprimit"),
+        NETWORK_SERVICE_INFO("networkServiceInfo"),
+        HAS_ACCOUNT("hasAccount"),
+        IN_COMPETENT("inCompetent"),
+        /**
+         * Any other command
+         */
+        OTHER(null);
+
+        /**
+         * The types by command
+         */
+        private static final HashMap<String, CommandType> TYPES = new HashMap<String, CommandType>();
+
+        static {
+            for (CommandType type : values()) {
+                if (type.command != null)
+                    TYPES.put(type.command, type);
+            }
+        }
+
+        /**
+         * The Datalog command
+         */
+        private final String command;
+
+        CommandType(String command) {
+            this.command = command;
+        }
+
+        /**
+         * @return the Datalog command of this type, null for {@link #OTHER}
+         */
+        public String getCommand() {
+            return command;
+        }
+
+        /**
+         * @param command a Datalog command
+         * @return the type of this command
+         */
+        public static CommandType fromCommand(String command) {
+            CommandType result = TYPES.get(command);
+            return result == null ? OTHER : result;
+        }
+    }
 }
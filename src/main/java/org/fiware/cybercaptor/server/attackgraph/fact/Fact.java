@@ -56,12 +56,25 @@ public class Fact implements Cloneable {
      * @param fact the fact string
      */
     public Fact(String fact, Vertex vertex) {
+        this(fact, vertex, null);
+    }
+
+    /**
+     * Create a new fact from a string, sharing the command and params of its Datalog command with the other facts
+     * of the same attack graph
+     *
+     * @param fact       the fact string
+     * @param vertex     the related attack graph vertex
+     * @param dictionary the dictionary of the commands and params of the facts of the attack graph
+     *                   (null to share nothing)
+     */
+    public Fact(String fact, Vertex vertex, StringDictionary dictionary) {
         this.factString = fact;
         if (Rule.isARule(fact)) {
             factRule = new Rule(fact);
             type = FactType.RULE;
         } else if (DatalogCommand.isADatalogFact(fact)) {
-            this.datalogCommand = new DatalogCommand(fact, this);
+            this.datalogCommand = new DatalogCommand(fact, this, dictionary);
             type = FactType.DATALOG_FACT;
         }
         this.attackGraphVertex = vertex;
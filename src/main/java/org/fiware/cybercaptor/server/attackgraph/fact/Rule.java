@@ -58,6 +58,8 @@ public class Rule implements Cloneable{
 	 * @return true if the fact string is a rule else false
 	 */
 	public static boolean isARule(String fact) {
+		if(!fact.startsWith("RULE ")) //Avoid the regex on the datalog facts
+			return false;
 		Matcher matcherRule = pattern.matcher(fact);
 		return matcherRule.matches();
 	}
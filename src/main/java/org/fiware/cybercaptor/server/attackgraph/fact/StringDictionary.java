@@ -0,0 +1,99 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.attackgraph.fact;
+
+/**
+ * Dictionary of strings, looked up with a region of another string so that a string already in the dictionary
+ * is found without creating any substring (open addressing with linear probing).
+ * A dictionary is created for the parsing of one attack graph, and used by a single thread : the strings are shared
+ * by the facts of this attack graph, and are not kept once the attack graph is no longer used.
+ */
+public class StringDictionary {
+    /**
+     * The strings of the dictionary (the size is a power of two)
+     */
+    private String[] table = new String[1024];
+
+    /**
+     * The number of strings in the dictionary
+     */
+    private int size = 0;
+
+    /**
+     * @param source the source string
+     * @param start  the start of the region in the source string
+     * @param end    the end (exclusive) of the region in the source string
+     * @return the string of the dictionary equal to the region, added to the dictionary if needed
+     */
+    public String intern(String source, int start, int end) {
+        int length = end - start;
+        int mask = table.length - 1;
+        int i = hash(source, start, end) & mask;
+        String string;
+        while ((string = table[i]) != null) {
+            if (string.length() == length && source.regionMatches(start, string, 0, length))
+                return string;
+            i = (i + 1) & mask;
+        }
+        string = (start == 0 && end == source.length()) ? source : source.substring(start, end);
+        table[i] = string;
+        size++;
+        if (2 * size > table.length)
+            resize();
+        return string;
+    }
+
+    /**
+     * @return the number of strings in the dictionary
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Double the size of the table
+     */
+    private void resize() {
+        String[] oldTable = table;
+        table = new String[2 * oldTable.length];
+        int mask = table.length - 1;
+        for (String string : oldTable) {
+            if (string != null) {
+                int i = hash(string, 0, string.length()) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = string;
+            }
+        }
+    }
+
+    /**
+     * @return the hash code of the region, equal to the hash code of the same string, with its high bits spread
+     */
+    private static int hash(String source, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + source.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -20,10 +20,12 @@
  ****************************************************************************************/
 package org.fiware.cybercaptor.server.monitoring;
 
+import org.fiware.cybercaptor.server.attackgraph.AttackGraphSnapshot;
 import org.fiware.cybercaptor.server.attackgraph.AttackPath;
 import org.fiware.cybercaptor.server.attackgraph.MulvalAttackGraph;
 import org.fiware.cybercaptor.server.database.Database;
 import org.fiware.cybercaptor.server.informationsystem.InformationSystem;
+import org.fiware.cybercaptor.server.properties.ProjectProperties;
 import org.fiware.cybercaptor.server.remediation.cost.GlobalParameters;
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -31,8 +33,11 @@ import org.jdom2.input.SAXBuilder;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Represents the monitoring (an information system, an attack graph and attack paths).
@@ -80,7 +85,10 @@ public class Monitoring {
     }
 
     /**
-     * Load the attack graph, the attack paths and the network topology from an xml file
+     * Load the attack graph, the attack paths and the network topology from an xml file.
+     * The attack graph and the attack paths are loaded from the snapshot file of the property
+     * "attack-graph-snapshot-path" if it is set and the snapshot is not older than the xml file, and from the xml file
+     * if the snapshot can not be read (missing file, other format or version).
      *
      * @param XMLFilePath the xML file path
      * @param db          the db
@@ -92,21 +100,23 @@ public class Monitoring {
         Document document = sxb.build(file);
         Element root = document.getRootElement();
 
-        Element attackGraphElement = root.getChild("attack_graph");
-        setAttackGraph(new MulvalAttackGraph());
-        getAttackGraph().addArcsAndVerticesFromDomElement(attackGraphElement);
-
-        List<Element> attackPathsElements = root.getChildren("attack_path");
-        if (!attackPathsElements.isEmpty()) {
-            for (Element attackPathElement : attackPathsElements) {
-                if (attackPathElement != null) {
-                    AttackPath attackPath = new AttackPath();
-                    attackPath.loadFromDomElementAndAttackGraph(attackPathElement, getAttackGraph());
-                    this.getAttackPathList().add(attackPath);
+        if (!loadAttackGraphSnapshotNotOlderThan(new File(XMLFilePath))) {
+            Element attackGraphElement = root.getChild("attack_graph");
+            setAttackGraph(new MulvalAttackGraph());
+            getAttackGraph().addArcsAndVerticesFromDomElement(attackGraphElement);
+
+            List<Element> attackPathsElements = root.getChildren("attack_path");
+            if (!attackPathsElements.isEmpty()) {
+                for (Element attackPathElement : attackPathsElements) {
+                    if (attackPathElement != null) {
+                        AttackPath attackPath = new AttackPath();
+                        attackPath.loadFromDomElementAndAttackGraph(attackPathElement, getAttackGraph());
+                        this.getAttackPathList().add(attackPath);
+                    }
                 }
             }
+            AttackPath.sortAttackPaths(this.getAttackPathList());
         }
-        AttackPath.sortAttackPaths(this.getAttackPathList());
         Element topologyElement = root.getChild("topology");
         setInformationSystem(new InformationSystem());
         getInformationSystem().loadFromDomElement(topologyElement, db);
@@ -115,6 +125,68 @@ public class Monitoring {
 
     }
 
+    /**
+     * Save the attack graph and the attack paths in a binary snapshot file, faster to load than the XML file
+     *
+     * @param snapshotFilePath the path of the snapshot file
+     * @throws Exception the exception
+     */
+    public void saveAttackGraphSnapshot(String snapshotFilePath) throws Exception {
+        AttackGraphSnapshot.save(getAttackGraph(), getAttackPathList(), snapshotFilePath);
+    }
+
+    /**
+     * Save the attack graph and the attack paths in the snapshot file of the property "attack-graph-snapshot-path",
+     * if it is set. The snapshot is only a faster copy of the xml files, a failure is logged and ignored.
+     */
+    public void saveAttackGraphSnapshot() {
+        String snapshotFilePath = ProjectProperties.getProperty("attack-graph-snapshot-path");
+        if (snapshotFilePath == null || snapshotFilePath.isEmpty() || getAttackGraph() == null)
+            return;
+        try {
+            saveAttackGraphSnapshot(snapshotFilePath);
+        } catch (Exception e) {
+            Logger.getAnonymousLogger().log(Level.WARNING, "The attack graph snapshot " + snapshotFilePath + " can not be saved", e);
+        }
+    }
+
+    /**
+     * Load the attack graph and the attack paths from the snapshot file of the property "attack-graph-snapshot-path"
+     *
+     * @param xmlFile the xml file from which the attack graph would be loaded otherwise
+     * @return true if the snapshot has been loaded, false if the property is not set, if the snapshot is missing or
+     * older than the xml file, or if it can not be read
+     */
+    private boolean loadAttackGraphSnapshotNotOlderThan(File xmlFile) {
+        String snapshotFilePath = ProjectProperties.getProperty("attack-graph-snapshot-path");
+        if (snapshotFilePath == null || snapshotFilePath.isEmpty())
+            return false;
+        File snapshotFile = new File(snapshotFilePath);
+        if (!snapshotFile.exists() || snapshotFile.lastModified() < xmlFile.lastModified())
+            return false;
+        try {
+            loadAttackGraphSnapshot(snapshotFilePath);
+            return true;
+        } catch (IOException e) {
+            Logger.getAnonymousLogger().log(Level.WARNING, "The attack graph snapshot " + snapshotFilePath
+                    + " can not be loaded, loading the xml file", e);
+            return false;
+        }
+    }
+
+    /**
+     * Load the attack graph and the attack paths from a binary snapshot file
+     *
+     * @param snapshotFilePath the path of the snapshot file
+     * @throws IOException if the file can not be read or is not a snapshot of a supported version
+     */
+    public void loadAttackGraphSnapshot(String snapshotFilePath) throws IOException {
+        AttackGraphSnapshot snapshot = AttackGraphSnapshot.load(snapshotFilePath);
+        setAttackGraph(snapshot.getAttackGraph());
+        setAttackPathList(snapshot.getAttackPaths());
+        AttackPath.sortAttackPaths(this.getAttackPathList());
+    }
+
     /**
      * Get the information system
      *
@@ -87,7 +87,7 @@ public class RestAPIAttackPaths {
             return Response.ok("the attack graph is empty").build();
         Logger.getAnonymousLogger().log(Level.INFO, "Launch scoring function");
         attackGraph.loadMetricsFromTopology(informationSystem);
-        List<AttackPath> attackPaths = AttackPathManagement.scoreAttackPaths(attackGraph, attackGraph.getNumberOfVertices());
+        List<AttackPath> attackPaths = AttackPathManagement.getAttackPathsToMonitor(attackGraph, attackGraph.getNumberOfVertices());
 
         //Delete attack paths that have less than 3 hosts (attacker that pown its own host).
         List<AttackPath> attackPathToKeep = new ArrayList<AttackPath>();
@@ -103,6 +103,7 @@ public class RestAPIAttackPaths {
         monitoring.setAttackPathList(attackPaths);
         monitoring.setInformationSystem(informationSystem);
         monitoring.setAttackGraph((MulvalAttackGraph) attackGraph);
+        monitoring.saveAttackGraphSnapshot();
 
         request.getSession(true).setAttribute("database", database);
         request.getSession(true).setAttribute("monitoring", monitoring);
@@ -25,6 +25,7 @@ import org.fiware.cybercaptor.server.api.AttackPathManagement;
 import org.fiware.cybercaptor.server.api.IDMEFManagement;
 import org.fiware.cybercaptor.server.api.InformationSystemManagement;
 import org.fiware.cybercaptor.server.attackgraph.AttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.AttackGraphOverlay;
 import org.fiware.cybercaptor.server.attackgraph.AttackPath;
 import org.fiware.cybercaptor.server.attackgraph.MulvalAttackGraph;
 import org.fiware.cybercaptor.server.attackgraph.Vertex;
@@ -95,7 +96,7 @@ public class RestJsonAPI {
             return RestApplication.returnErrorMessage(request, "the attack graph is empty");
         Logger.getAnonymousLogger().log(Level.INFO, "Launch scoring function");
         attackGraph.loadMetricsFromTopology(informationSystem);
-        List<AttackPath> attackPaths = AttackPathManagement.scoreAttackPaths(attackGraph, attackGraph.getNumberOfVertices());
+        List<AttackPath> attackPaths = AttackPathManagement.getAttackPathsToMonitor(attackGraph, attackGraph.getNumberOfVertices());
 
         //Delete attack paths that have less than 3 hosts (attacker that pown its own host).
         List<AttackPath> attackPathToKeep = new ArrayList<AttackPath>();
@@ -111,6 +112,7 @@ public class RestJsonAPI {
         monitoring.setAttackPathList(attackPaths);
         monitoring.setInformationSystem(informationSystem);
         monitoring.setAttackGraph((MulvalAttackGraph) attackGraph);
+        monitoring.saveAttackGraphSnapshot();
 
         request.getSession(true).setAttribute("database", database);
         request.getSession(true).setAttribute("monitoring", monitoring);
@@ -170,7 +172,7 @@ public class RestJsonAPI {
         Logger.getAnonymousLogger().log(Level.INFO, "Launch scoring function");
         attackGraph.loadMetricsFromTopology(informationSystem);
 
-        List<AttackPath> attackPaths = AttackPathManagement.scoreAttackPaths(attackGraph, attackGraph.getNumberOfVertices());
+        List<AttackPath> attackPaths = AttackPathManagement.getAttackPathsToMonitor(attackGraph, attackGraph.getNumberOfVertices());
 
         //Delete attack paths that have less than 3 hosts (attacker that pown its own host).
         List<AttackPath> attackPathToKeep = new ArrayList<AttackPath>();
@@ -186,6 +188,7 @@ public class RestJsonAPI {
         monitoring.setAttackPathList(attackPaths);
         monitoring.setInformationSystem(informationSystem);
         monitoring.setAttackGraph((MulvalAttackGraph) attackGraph);
+        monitoring.saveAttackGraphSnapshot();
 
         request.getSession(true).setAttribute("database", database);
         request.getSession(true).setAttribute("monitoring", monitoring);
@@ -298,12 +301,16 @@ public class RestJsonAPI {
      * Get the attack paths list
      *
      * @param request the HTTP Request
+     * @param limit   the maximum number of attack paths to return (0 for all the attack paths)
+     * @param best    the number of attack paths of the attack graph with the highest scorings to search instead
+     *                of the monitored attack paths (0 to return the monitored attack paths)
      * @return the HTTP Response
      */
     @GET
     @Path("attack_path/list")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getList(@Context HttpServletRequest request) {
+    public Response getList(@Context HttpServletRequest request, @DefaultValue("0") @QueryParam("limit") int limit,
+                            @DefaultValue("0") @QueryParam("best") int best) {
         Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
 
         if (monitoring == null) {
@@ -311,7 +318,11 @@ public class RestJsonAPI {
                     "initialize it ?");
         }
 
-        Element attackPathsXML = AttackPathManagement.getAttackPathsXML(monitoring);
+        Element attackPathsXML;
+        if (best > 0)
+            attackPathsXML = AttackPathManagement.getBestAttackPathsXML(monitoring, best);
+        else
+            attackPathsXML = AttackPathManagement.getAttackPathsXML(monitoring, limit);
         XMLOutputter output = new XMLOutputter(Format.getPrettyFormat());
         return RestApplication.returnJsonObject(request, XML.toJSONObject(output.outputString(attackPathsXML)));
 
@@ -480,15 +491,14 @@ public class RestJsonAPI {
         }
         DeployableRemediation deployableRemediation = remediations.get(id_remediation);
 
-        AttackGraph simulatedAttackGraph;
-
         try {
-            simulatedAttackGraph = monitoring.getAttackGraph().clone();
+            AttackGraphOverlay simulatedAttackGraph = new AttackGraphOverlay(monitoring.getAttackGraph());
 
+            List<Vertex> verticesToDelete = new ArrayList<Vertex>();
             for (int i = 0; i < deployableRemediation.getActions().size(); i++) {
-                Vertex vertexToDelete = deployableRemediation.getActions().get(i).getRemediationAction().getRelatedVertex();
-                simulatedAttackGraph.deleteVertex(simulatedAttackGraph.vertices.get(vertexToDelete.id));
+                verticesToDelete.add(deployableRemediation.getActions().get(i).getRemediationAction().getRelatedVertex());
             }
+            simulatedAttackGraph.deleteVertices(verticesToDelete);
 
             AttackPathManagement.scoreAttackPaths(simulatedAttackGraph, monitoring.getAttackGraph().getNumberOfVertices());
 
@@ -583,6 +593,57 @@ public class RestJsonAPI {
         return RestApplication.returnJsonObject(request, XML.toJSONObject(output.outputString(attackGraphXML)));
     }
 
+    /**
+     * Get the vertices of the attack graph with a Datalog command, concerning a host and/or a CVE.
+     * The vertices are looked up in the indexes of the attack graph, so that the client does not need to
+     * get and filter the whole attack graph.
+     *
+     * @param request the HTTP Request
+     * @param command the Datalog command of the vertices (ex "execCode"), empty to accept all the commands
+     * @param host    the host name or IP address of the vertices, empty to accept all the hosts
+     * @param cve     the CVE of the vertices, empty to accept all the CVEs
+     * @return the HTTP Response
+     */
+    @GET
+    @Path("attack_graph/vertices")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getAttackGraphVertices(@Context HttpServletRequest request, @DefaultValue("") @QueryParam("command") String command,
+                                           @DefaultValue("") @QueryParam("host") String host, @DefaultValue("") @QueryParam("cve") String cve) {
+        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+
+        if (monitoring == null) {
+            return RestApplication.returnErrorMessage(request, "The monitoring object is empty. Did you forget to " +
+                    "initialize it ?");
+        }
+
+        Element verticesXML = AttackPathManagement.getAttackGraphVerticesXML(monitoring, command.isEmpty() ? null : command,
+                host.isEmpty() ? null : host, cve.isEmpty() ? null : cve);
+        XMLOutputter output = new XMLOutputter(Format.getPrettyFormat());
+        return RestApplication.returnJsonObject(request, XML.toJSONObject(output.outputString(verticesXML)));
+    }
+
+    /**
+     * Get the probability of compromise of each vertex of the attack graph, propagated from the leaves
+     *
+     * @param request the HTTP Request
+     * @return the HTTP Response
+     */
+    @GET
+    @Path("attack_graph/risk")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getAttackGraphRisk(@Context HttpServletRequest request) {
+        Monitoring monitoring = ((Monitoring) request.getSession(true).getAttribute("monitoring"));
+
+        if (monitoring == null) {
+            return RestApplication.returnErrorMessage(request, "The monitoring object is empty. Did you forget to " +
+                    "initialize it ?");
+        }
+
+        Element riskXML = AttackPathManagement.getAttackGraphRiskXML(monitoring);
+        XMLOutputter output = new XMLOutputter(Format.getPrettyFormat());
+        return RestApplication.returnJsonObject(request, XML.toJSONObject(output.outputString(riskXML)));
+    }
+
     /**
      * Get the attack graph score
      *
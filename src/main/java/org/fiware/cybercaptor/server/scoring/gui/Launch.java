@@ -27,11 +27,15 @@ import org.fiware.cybercaptor.server.scoring.math.ScoringFormulas;
 import org.fiware.cybercaptor.server.scoring.types.Arc;
 import org.fiware.cybercaptor.server.scoring.types.Graph;
 import org.fiware.cybercaptor.server.scoring.types.Vertex;
-import org.jdom2.Element;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
 
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,36 +63,129 @@ public class Launch {
      * @return the score of the attack graph
      * @throws Exception
      */
-    public static double main(double[] vertexIDTable, String[] vertexFactTable, double[] vertexMulvalMetricTable, String[] vertexTypeTable, double[] arcSrcTable, double[] arcDstTable, ImpactMetric[][] ImpactMetrics, String pathToAttackPathsFile, double previousMaxScore) throws Exception {
+    public static double main(int[] vertexIDTable, String[] vertexFactTable, double[] vertexMulvalMetricTable, String[] vertexTypeTable, int[] arcSrcTable, int[] arcDstTable, ImpactMetric[][] ImpactMetrics, String pathToAttackPathsFile, double previousMaxScore) throws Exception {
+        Graph graph = createGraph(vertexIDTable, vertexFactTable, vertexMulvalMetricTable, vertexTypeTable, arcSrcTable, arcDstTable, ImpactMetrics);
+        Graph[] result = generateAttackPaths(graph);
 
+        double scoreAttackGraph = globalScore(graph, previousMaxScore);
+
+        saveToXmlFile(pathToAttackPathsFile, result);
+        Logger.getAnonymousLogger().log(Level.INFO, "Attack paths generated");
+        return scoreAttackGraph;
+    }
+
+    /**
+     * Create the graph to score
+     *
+     * @param vertexIDTable           the vertex ids table
+     * @param vertexFactTable         the vertex facts table
+     * @param vertexMulvalMetricTable the vertex metrics table
+     * @param vertexTypeTable         the vertex types table
+     * @param arcSrcTable             the arc sources table
+     * @param arcDstTable             the arc destinations table
+     * @param ImpactMetrics           the impact metrics table
+     * @return the graph
+     */
+    public static Graph createGraph(int[] vertexIDTable, String[] vertexFactTable, double[] vertexMulvalMetricTable, String[] vertexTypeTable, int[] arcSrcTable, int[] arcDstTable, ImpactMetric[][] ImpactMetrics) {
         Arc[] ArcsTable = new Arc[arcSrcTable.length];
         Vertex[] VerticesTable = new Vertex[vertexIDTable.length];
 
-
         for (int i = 0; i < ArcsTable.length; i++) {
-            ArcsTable[i] = new Arc(-1, -1);
-            ArcsTable[i].setSource(arcSrcTable[i]);
-            ArcsTable[i].setDestination(arcDstTable[i]);
+            ArcsTable[i] = new Arc(arcSrcTable[i], arcDstTable[i]);
         }
         for (int i = 0; i < vertexIDTable.length; i++) {
-            VerticesTable[i] = new Vertex(-1, "EOF", -1, "EOF");
-            VerticesTable[i].setID(vertexIDTable[i]);
-            VerticesTable[i].setFact(vertexFactTable[i]);
-            VerticesTable[i].setMulvalMetric(vertexMulvalMetricTable[i]);
-            VerticesTable[i].setType(vertexTypeTable[i]);
+            VerticesTable[i] = new Vertex(vertexIDTable[i], vertexFactTable[i], vertexMulvalMetricTable[i], vertexTypeTable[i]);
             VerticesTable[i].setImpactMetrics(ImpactMetrics[i]);
         }
-        Graph graph = new Graph(ArcsTable, VerticesTable);
-        Vertex[] TargetSet = Graph.getVerticesOnTypeAndFact(VerticesTable, "OR");
+        return new Graph(ArcsTable, VerticesTable);
+    }
+
+    /**
+     * Generate the attack paths to all the targets (the "OR" execCode vertices) of a graph
+     *
+     * @param graph the graph
+     * @return the attack paths (null for a target that can not be reached), or null if there is no target
+     */
+    public static Graph[] generateAttackPaths(Graph graph) {
+        Vertex[] TargetSet = graph.getVerticesOnTypeAndFact("OR");
 
         System.out.println("Generate Attack Paths");
-        Graph[] result = AttackPaths.main(TargetSet, graph); //Disabled following the test launch of attack path algorithm.
+        return AttackPaths.main(TargetSet, graph);
+    }
 
-        double scoreAttackGraph = formulas.MinMax(formulas.globalScore(graph), previousMaxScore);
+    /**
+     * Compute the normalized global score of a graph
+     *
+     * @param graph            the graph
+     * @param previousMaxScore the previous max score (used for normalization)
+     * @return the score of the graph
+     */
+    public static double globalScore(Graph graph, double previousMaxScore) {
+        return formulas.MinMax(formulas.globalScore(graph), previousMaxScore);
+    }
 
-        saveToXmlFile(pathToAttackPathsFile, result);
-        Logger.getAnonymousLogger().log(Level.INFO, "Attack paths generated");
-        return scoreAttackGraph;
+    /**
+     * Compute the score of an attack path, normalized with its number of vertices
+     *
+     * @param attackPath the attack path
+     * @return the score of the attack path
+     */
+    public static double attackPathScore(Graph attackPath) {
+        return formulas.MinMax(formulas.globalScore(attackPath), attackPath.getVertices().length);
+    }
+
+    /**
+     * Score attack paths, each one independently of the others
+     *
+     * @param attackPaths  the attack paths (null for a target that can not be reached)
+     * @param forkJoinPool the pool in which the attack paths are scored in parallel, null to score them in the
+     *                     calling thread
+     * @return the score of each attack path ({@link Double#NaN} for a null attack path)
+     */
+    public static double[] scoreAttackPaths(Graph[] attackPaths, ForkJoinPool forkJoinPool) {
+        if (attackPaths == null)
+            return new double[0];
+        double[] scores = new double[attackPaths.length];
+        ScoringTask task = new ScoringTask(attackPaths, scores, 0, attackPaths.length);
+        if (forkJoinPool == null)
+            task.compute();
+        else
+            forkJoinPool.invoke(task);
+        return scores;
+    }
+
+    /**
+     * Task scoring a range of attack paths, split in two halves while it is larger than {@link #THRESHOLD}
+     */
+    private static class ScoringTask extends RecursiveAction {
+        /**
+         * The number of attack paths scored without splitting the task
+         */
+        private static final int THRESHOLD = 16;
+
+        private final Graph[] attackPaths;
+        private final double[] scores;
+        private final int start;
+        private final int end;
+
+        private ScoringTask(Graph[] attackPaths, double[] scores, int start, int end) {
+            this.attackPaths = attackPaths;
+            this.scores = scores;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    scores[i] = attackPaths[i] == null ? Double.NaN : attackPathScore(attackPaths[i]);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new ScoringTask(attackPaths, scores, start, middle), new ScoringTask(attackPaths, scores, middle, end));
+            }
+        }
     }
 
     /**
@@ -98,34 +195,71 @@ public class Launch {
      * @param AttackPaths list of attack paths
      * @throws Exception
      */
-    protected static void saveToXmlFile(String filePath, Graph[] AttackPaths) throws Exception {
-        XMLOutputter output = new XMLOutputter(Format.getPrettyFormat());
-        Element MainRoot = new Element("attack_paths");
-        Element root;
-        if (AttackPaths != null) {
-            for (Graph AttackPathBuffer : AttackPaths) {
-                Arc[] AttackPathArcs = AttackPathBuffer.getArcs();
-                root = new Element("attack_path");
-                Element scoringElement = new Element("scoring");
-                scoringElement.setText(String.valueOf(formulas.MinMax(formulas.globalScore(AttackPathBuffer), AttackPathBuffer.getVertices().length)));
-                root.addContent(scoringElement);
-                if (AttackPathArcs != null) {
-                    Element arcsElement = new Element("arcs");
-                    for (Arc AttackPathArc : AttackPathArcs) {
-                        Element arcElement = new Element("arc");
-                        arcsElement.addContent(arcElement);
-                        Element srcElement = new Element("src");
-                        srcElement.setText(String.valueOf(AttackPathArc.getSource()));
-                        arcElement.addContent(srcElement);
-                        Element dstElement = new Element("dst");
-                        dstElement.setText(String.valueOf(AttackPathArc.getDestination()));
-                        arcElement.addContent(dstElement);
+    public static void saveToXmlFile(String filePath, Graph[] AttackPaths) throws Exception {
+        saveToXmlFile(filePath, AttackPaths, scoreAttackPaths(AttackPaths, null));
+    }
+
+    /**
+     * Save the list of scored attack paths into a XML file, written while the attack paths are browsed
+     *
+     * @param filePath    the paths where the list XML of attack paths can be written
+     * @param AttackPaths list of attack paths
+     * @param scores      the scores of the attack paths
+     * @throws Exception
+     */
+    public static void saveToXmlFile(String filePath, Graph[] AttackPaths, double[] scores) throws Exception {
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(filePath));
+        try {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("attack_paths");
+            if (AttackPaths != null) {
+                for (int i = 0; i < AttackPaths.length; i++) {
+                    Graph AttackPathBuffer = AttackPaths[i];
+                    if (AttackPathBuffer == null || AttackPathBuffer.getArcs() == null)
+                        continue;
+                    writer.writeCharacters("\n  ");
+                    writer.writeStartElement("attack_path");
+                    writeTextElement(writer, "\n    ", "scoring", String.valueOf(scores[i]));
+                    writer.writeCharacters("\n    ");
+                    writer.writeStartElement("arcs");
+                    for (Arc AttackPathArc : AttackPathBuffer.getArcs()) {
+                        writer.writeCharacters("\n      ");
+                        writer.writeStartElement("arc");
+                        writeTextElement(writer, "\n        ", "src", String.valueOf(AttackPathArc.getSource()));
+                        writeTextElement(writer, "\n        ", "dst", String.valueOf(AttackPathArc.getDestination()));
+                        writer.writeCharacters("\n      ");
+                        writer.writeEndElement();
                     }
-                    root.addContent(arcsElement);
-                    MainRoot.addContent(root);
+                    writer.writeCharacters("\n    ");
+                    writer.writeEndElement();
+                    writer.writeCharacters("\n  ");
+                    writer.writeEndElement();
                 }
             }
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } finally {
+            outputStream.close();
         }
-        output.output(MainRoot, new FileOutputStream(filePath));
     }
-}
\ No newline at end of file
+
+    /**
+     * Write an element containing only text
+     *
+     * @param writer      the XML writer
+     * @param indentation the line break and indentation written before the element
+     * @param name        the name of the element
+     * @param text        the text of the element
+     * @throws XMLStreamException
+     */
+    private static void writeTextElement(XMLStreamWriter writer, String indentation, String name, String text) throws XMLStreamException {
+        writer.writeCharacters(indentation);
+        writer.writeStartElement(name);
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+    }
+}
@@ -0,0 +1,291 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.scoring.math;
+
+import org.fiware.cybercaptor.server.scoring.types.Arc;
+import org.fiware.cybercaptor.server.scoring.types.Graph;
+import org.fiware.cybercaptor.server.scoring.types.Vertex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Class used to explore the attack paths of a graph, with the same results as
+ * {@link AttackPaths#exploreAttackPath2(Vertex, Vertex[], Graph)}.
+ * The explorer works on the positions of the vertices in the index of the graph, which is shared and never copied.
+ * The forbidden vertices are a bitset in which each "OR" vertex is pushed before its exploration and popped when
+ * the "AND" vertex that forbade it is explored, and the arcs of an attack path are appended to a buffer reused for
+ * all the targets, which is truncated when a branch can not be reached. The attack path is then the arcs of the
+ * buffer in their order of first appearance, which is the order given by the successive merges of the atomic graphs.
+ */
+public class AttackPathExplorer {
+
+    private static final byte AND = 0;
+    private static final byte OR = 1;
+    private static final byte LEAF = 2;
+    private static final byte UNKNOWN = -1;
+
+    /**
+     * The explored graph
+     */
+    private final Graph graph;
+
+    /**
+     * The type of each vertex of the graph
+     */
+    private final byte[] types;
+
+    /**
+     * The position of the source of each arc of the predecessor lists
+     */
+    private final int[] arcSources;
+
+    /**
+     * The first arc of the predecessor lists with the same source and destination as each arc
+     */
+    private final int[] canonicalArcs;
+
+    /**
+     * The forbidden "OR" vertices of the current exploration
+     */
+    private final BitSet forbidden;
+
+    /**
+     * The stack of the forbidden vertices, in the order in which they have been forbidden
+     */
+    private final int[] forbiddenStack;
+    private int forbiddenStackSize = 0;
+
+    /**
+     * The arcs of the attack path being explored, in their order of appearance (may contain duplicates)
+     */
+    private int[] exploredArcs = new int[16];
+    private int numberOfExploredArcs = 0;
+
+    /**
+     * The positions of the vertices of the attack path being created, in their order of first appearance
+     */
+    private final int[] attackPathVertexBuffer;
+
+    /**
+     * The number of the exploration in which each arc and each vertex has last been added to an attack path
+     */
+    private final int[] arcStamps;
+    private final int[] vertexStamps;
+    private int stamp = 0;
+
+    /**
+     * Instantiates a new explorer of the attack paths of a graph.
+     *
+     * @param graph the graph, which must not be changed while it is explored
+     */
+    public AttackPathExplorer(Graph graph) {
+        this.graph = graph;
+        Vertex[] vertices = graph.getVertices();
+        this.types = new byte[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            types[i] = typeOf(vertices[i]);
+        }
+        int numberOfArcs = vertices.length == 0 ? 0 : graph.getPredecessorsEnd(vertices.length - 1);
+        this.arcSources = new int[numberOfArcs];
+        this.canonicalArcs = new int[numberOfArcs];
+        //The first arc of the current source to each destination, valid if its source is the current source
+        int[] firstArcs = new int[vertices.length];
+        int[] firstArcSources = new int[vertices.length];
+        Arrays.fill(firstArcSources, -1);
+        for (int i = 0; i < vertices.length; i++) {
+            for (int k = graph.getPredecessorsStart(i); k < graph.getPredecessorsEnd(i); k++) {
+                arcSources[k] = i;
+                canonicalArcs[k] = k;
+                int predecessor = graph.getPredecessor(k);
+                if (predecessor >= 0) {
+                    if (firstArcSources[predecessor] == i) {
+                        canonicalArcs[k] = firstArcs[predecessor];
+                    } else {
+                        firstArcSources[predecessor] = i;
+                        firstArcs[predecessor] = k;
+                    }
+                }
+            }
+        }
+        this.forbidden = new BitSet(vertices.length);
+        this.forbiddenStack = new int[vertices.length];
+        this.attackPathVertexBuffer = new int[vertices.length];
+        this.arcStamps = new int[numberOfArcs];
+        this.vertexStamps = new int[vertices.length];
+    }
+
+    /**
+     * @param vertex a vertex
+     * @return the type of the vertex
+     */
+    private static byte typeOf(Vertex vertex) {
+        if (vertex.getType().equals("AND"))
+            return AND;
+        else if (vertex.getType().equals("OR"))
+            return OR;
+        else if (vertex.getType().equals("LEAF"))
+            return LEAF;
+        return UNKNOWN;
+    }
+
+    /**
+     * Explore the attack path to a target
+     *
+     * @param target the target vertex
+     * @return the attack path, null if the target can not be reached. As with
+     * {@link AttackPaths#exploreAttackPath2(Vertex, Vertex[], Graph)}, the vertices of the attack path are copies
+     * of the vertices of the graph, without their impact metrics, except the target itself.
+     */
+    public Graph explore(Vertex target) {
+        int position = graph.getPosition(target.getID());
+        if (position < 0)
+            return null;
+        byte type = typeOf(target);
+        numberOfExploredArcs = 0;
+        forbiddenStackSize = 0;
+        forbidden.clear();
+        if (type == OR)
+            forbid(position);
+        if (!explore(position, type))
+            return null;
+        return createAttackPath(target, position);
+    }
+
+    /**
+     * Explore the attack paths from a vertex, appending their arcs to the buffer
+     *
+     * @param vertex the position of the vertex
+     * @param type   the type of the vertex
+     * @return true if the vertex can be reached, else false, without any arc appended
+     */
+    private boolean explore(int vertex, byte type) {
+        int start = graph.getPredecessorsStart(vertex);
+        int end = graph.getPredecessorsEnd(vertex);
+        int exploredArcsMark = numberOfExploredArcs;
+        if (type == AND) {
+            //All the predecessors are needed
+            int forbiddenStackMark = forbiddenStackSize;
+            boolean reached = start < end;
+            for (int k = start; k < end && reached; k++) {
+                int predecessor = graph.getPredecessor(k);
+                if (predecessor < 0) {
+                    reached = false;
+                } else if (types[predecessor] == LEAF) {
+                    appendArc(k);
+                } else if (types[predecessor] == OR && !forbidden.get(predecessor)) {
+                    forbid(predecessor);
+                    appendArc(k);
+                    reached = explore(predecessor, OR);
+                } else {
+                    reached = false;
+                }
+            }
+            while (forbiddenStackSize > forbiddenStackMark) {
+                forbidden.clear(forbiddenStack[--forbiddenStackSize]);
+            }
+            if (!reached)
+                numberOfExploredArcs = exploredArcsMark;
+            return reached;
+        } else if (type == OR) {
+            //At least one predecessor is needed
+            boolean reached = false;
+            for (int k = start; k < end; k++) {
+                int predecessor = graph.getPredecessor(k);
+                if (predecessor >= 0 && types[predecessor] == LEAF) {
+                    appendArc(k);
+                    reached = true;
+                } else if (predecessor >= 0 && types[predecessor] == AND) {
+                    int predecessorMark = numberOfExploredArcs;
+                    appendArc(k);
+                    if (explore(predecessor, AND))
+                        reached = true;
+                    else
+                        numberOfExploredArcs = predecessorMark;
+                }
+            }
+            return reached;
+        }
+        return false;
+    }
+
+    /**
+     * @param vertex the position of an "OR" vertex that can not be explored any more in the current branch
+     */
+    private void forbid(int vertex) {
+        forbidden.set(vertex);
+        forbiddenStack[forbiddenStackSize++] = vertex;
+    }
+
+    /**
+     * @param k the arc of the predecessor lists to append to the buffer
+     */
+    private void appendArc(int k) {
+        if (numberOfExploredArcs == exploredArcs.length)
+            exploredArcs = Arrays.copyOf(exploredArcs, exploredArcs.length * 2);
+        exploredArcs[numberOfExploredArcs++] = canonicalArcs[k];
+    }
+
+    /**
+     * Create the attack path from the arcs of the buffer, in their order of first appearance
+     *
+     * @param target   the target vertex
+     * @param position the position of the target vertex
+     * @return the attack path
+     */
+    private Graph createAttackPath(Vertex target, int position) {
+        Vertex[] vertices = graph.getVertices();
+        stamp++;
+        //The arcs are deduplicated in place
+        int numberOfArcs = 0;
+        int numberOfVertices = 0;
+        for (int i = 0; i < numberOfExploredArcs; i++) {
+            int k = exploredArcs[i];
+            if (arcStamps[k] != stamp) {
+                arcStamps[k] = stamp;
+                exploredArcs[numberOfArcs++] = k;
+                int source = arcSources[k];
+                int destination = graph.getPredecessor(k);
+                if (vertexStamps[source] != stamp) {
+                    vertexStamps[source] = stamp;
+                    attackPathVertexBuffer[numberOfVertices++] = source;
+                }
+                if (vertexStamps[destination] != stamp) {
+                    vertexStamps[destination] = stamp;
+                    attackPathVertexBuffer[numberOfVertices++] = destination;
+                }
+            }
+        }
+        numberOfExploredArcs = numberOfArcs;
+
+        Arc[] arcs = new Arc[numberOfArcs];
+        for (int i = 0; i < numberOfArcs; i++) {
+            int k = exploredArcs[i];
+            arcs[i] = new Arc(vertices[arcSources[k]].getID(), vertices[graph.getPredecessor(k)].getID());
+        }
+        Vertex[] attackPathVertices = new Vertex[numberOfVertices];
+        for (int i = 0; i < numberOfVertices; i++) {
+            int vertex = attackPathVertexBuffer[i];
+            attackPathVertices[i] = vertex == position ? target : new Vertex(vertices[vertex]);
+        }
+        return new Graph(arcs, attackPathVertices);
+    }
+}
@@ -24,6 +24,8 @@ import org.fiware.cybercaptor.server.scoring.types.Arc;
 import org.fiware.cybercaptor.server.scoring.types.Graph;
 import org.fiware.cybercaptor.server.scoring.types.Vertex;
 
+import java.util.Arrays;
+
 /**
  * Class used to represent an attack path
  *
@@ -38,9 +40,9 @@ public class AttackPaths {
      * @param Set     the set
      * @return 0 if the element is in the set, else 1
      */
-    public static int existsInSet(double Element, double[] Set) {
+    public static int existsInSet(int Element, int[] Set) {
         //0 exists, 1 does not exist
-        for (double aSet : Set) {
+        for (int aSet : Set) {
             if (Element == aSet) {
                 return 0;
             }
@@ -76,8 +78,9 @@ public class AttackPaths {
 
         if (Targets != null) {
             Graph[] GraphTable = new Graph[Targets.length];
+            AttackPathExplorer explorer = new AttackPathExplorer(AttackGraph);
             for (int i = 0; i < Targets.length; i++) {
-                GraphTable[i] = exploreAttackPath2(Targets[i], null, AttackGraph);
+                GraphTable[i] = explorer.explore(Targets[i]);
             }
             return GraphTable;
         } else {
@@ -102,6 +105,25 @@ public class AttackPaths {
         return new Graph(BufferArcs, BufferVertices);
     }
 
+    /**
+     * Get copies of the predecessors of a vertex, as the exploration has always used (the copies do not have the
+     * impact metrics of the vertices of the attack graph)
+     *
+     * @param graph    the attack graph, whose index gives the predecessors without browsing all the arcs
+     * @param vertexID the vertex ID
+     * @return the copies of the predecessors, null for a destination that is not a vertex, or null if there is none
+     */
+    private static Vertex[] getPredecessorCopies(Graph graph, int vertexID) {
+        Vertex[] predecessors = graph.getPredecessors(vertexID);
+        if (predecessors != null) {
+            for (int i = 0; i < predecessors.length; i++) {
+                if (predecessors[i] != null)
+                    predecessors[i] = new Vertex(predecessors[i]);
+            }
+        }
+        return predecessors;
+    }
+
     /**
      * Explore the attack path from node V
      *
@@ -114,19 +136,11 @@ public class AttackPaths {
      */
     @Deprecated
     public static Graph exploreAttackPath(Vertex V, Vertex[] Forbidden, Graph graph, Graph AttackPath) {
-        Vertex[] vertices = new Vertex[graph.getVertices().length];
-        Arc[] arcs = new Arc[graph.getArcs().length];
-        Vertex LEAFVertex = new Vertex(0.0, "", 0.0, "LEAF");
-        Vertex ORVertex = new Vertex(0.0, "", 0.0, "OR");
-        Vertex ANDVertex = new Vertex(0.0, "", 0.0, "AND");
+        Vertex LEAFVertex = new Vertex(0, "", 0.0, "LEAF");
+        Vertex ORVertex = new Vertex(0, "", 0.0, "OR");
+        Vertex ANDVertex = new Vertex(0, "", 0.0, "AND");
 
-        for (int m = 0; m < vertices.length; m++) {
-            vertices[m] = new Vertex(graph.getVertices()[m]);
-        }
-        for (int m = 0; m < arcs.length; m++) {
-            arcs[m] = new Arc(graph.getArcs()[m].getSource(), graph.getArcs()[m].getDestination());
-        }
-        Vertex[] V_Predecessors = Graph.getPredecessors(arcs, vertices, V.getID());
+        Vertex[] V_Predecessors = getPredecessorCopies(graph, V.getID());
         if (V.getType().equals("OR") && Forbidden == null) {
             Vertex ForbiddenVertex = new Vertex(V);
             Forbidden = new Vertex[1];
@@ -168,22 +182,16 @@ public class AttackPaths {
      * @param Forbidden the list of forbidden vertices
      * @param graph     the attack graph
      * @return the created attack path
+     * @deprecated use {@link org.fiware.cybercaptor.server.scoring.math.AttackPathExplorer#explore(org.fiware.cybercaptor.server.scoring.types.Vertex)}, which gives the same attack paths without copying the forbidden vertices and the sub-graphs
      */
+    @Deprecated
     public static Graph exploreAttackPath2(Vertex V, Vertex[] Forbidden, Graph graph) {
-        Vertex[] vertices = new Vertex[graph.getVertices().length];
-        Arc[] arcs = new Arc[graph.getArcs().length];
-        Vertex LEAFVertex = new Vertex(0.0, "", 0.0, "LEAF");
-        Vertex ORVertex = new Vertex(0.0, "", 0.0, "OR");
-        Vertex ANDVertex = new Vertex(0.0, "", 0.0, "AND");
+        Vertex LEAFVertex = new Vertex(0, "", 0.0, "LEAF");
+        Vertex ORVertex = new Vertex(0, "", 0.0, "OR");
+        Vertex ANDVertex = new Vertex(0, "", 0.0, "AND");
         Graph Result = null;
 
-        for (int m = 0; m < vertices.length; m++) {
-            vertices[m] = new Vertex(graph.getVertices()[m]);
-        }
-        for (int m = 0; m < arcs.length; m++) {
-            arcs[m] = new Arc(graph.getArcs()[m].getSource(), graph.getArcs()[m].getDestination());
-        }
-        Vertex[] V_Predecessors = Graph.getPredecessors(arcs, vertices, V.getID());
+        Vertex[] V_Predecessors = getPredecessorCopies(graph, V.getID());
         if (V.getType().equals(ORVertex.getType()) && Forbidden == null) {
             Vertex ForbiddenVertex = new Vertex(V);
             Forbidden = new Vertex[1];
@@ -276,30 +284,36 @@ public class AttackPaths {
         if (predecessor == null) {
             return successor;
         }
-        Arc[] ArcsBuffer = new Arc[successor.getArcs().length];
-        Vertex[] VertexBuffer = new Vertex[successor.getVertices().length];
-        System.arraycopy(successor.getArcs(), 0, ArcsBuffer, 0, successor.getArcs().length);
-        for (int k = 0; k < predecessor.getArcs().length; k++) {
-            if (existsInSet(predecessor.getArcs()[k], successor.getArcs()) == 1) {
-                Arc[] TempBuffer = new Arc[ArcsBuffer.length + 1];
-                System.arraycopy(ArcsBuffer, 0, TempBuffer, 0, ArcsBuffer.length);
-                TempBuffer[TempBuffer.length - 1] = predecessor.getArcs()[k];
-                ArcsBuffer = TempBuffer;
+        //The elements of the predecessor are only searched in the successor, with hash sets of their keys
+        Arc[] successorArcs = successor.getArcs();
+        Arc[] predecessorArcs = predecessor.getArcs();
+        LongHashSet successorArcKeys = new LongHashSet(successorArcs.length);
+        for (Arc arc : successorArcs) {
+            successorArcKeys.add(LongHashSet.arcKey(arc.getSource(), arc.getDestination()));
+        }
+        Arc[] ArcsBuffer = Arrays.copyOf(successorArcs, successorArcs.length + predecessorArcs.length);
+        int numberOfArcs = successorArcs.length;
+        for (Arc arc : predecessorArcs) {
+            if (!successorArcKeys.contains(LongHashSet.arcKey(arc.getSource(), arc.getDestination()))) {
+                ArcsBuffer[numberOfArcs++] = arc;
             }
         }
-        System.arraycopy(successor.getVertices(), 0, VertexBuffer, 0, successor.getVertices().length);
-        double[] VertexIDs = new double[successor.getVertices().length];
-        for (int h = 0; h < successor.getVertices().length; h++) {
-            VertexIDs[h] = successor.getVertices()[h].getID();
+        ArcsBuffer = Arrays.copyOf(ArcsBuffer, numberOfArcs);
+
+        Vertex[] successorVertices = successor.getVertices();
+        Vertex[] predecessorVertices = predecessor.getVertices();
+        LongHashSet successorVertexIDs = new LongHashSet(successorVertices.length);
+        for (Vertex vertex : successorVertices) {
+            successorVertexIDs.add(vertex.getID());
         }
-        for (int k = 0; k < predecessor.getVertices().length; k++) {
-            if (existsInSet(predecessor.getVertices()[k].getID(), VertexIDs) == 1) {
-                Vertex[] TempBuffer = new Vertex[VertexBuffer.length + 1];
-                System.arraycopy(VertexBuffer, 0, TempBuffer, 0, VertexBuffer.length);
-                TempBuffer[TempBuffer.length - 1] = predecessor.getVertices()[k];
-                VertexBuffer = TempBuffer;
+        Vertex[] VertexBuffer = Arrays.copyOf(successorVertices, successorVertices.length + predecessorVertices.length);
+        int numberOfVertices = successorVertices.length;
+        for (Vertex vertex : predecessorVertices) {
+            if (!successorVertexIDs.contains(vertex.getID())) {
+                VertexBuffer[numberOfVertices++] = vertex;
             }
         }
+        VertexBuffer = Arrays.copyOf(VertexBuffer, numberOfVertices);
         result = new Graph(ArcsBuffer, VertexBuffer);
         return result;
     }
@@ -311,7 +325,7 @@ public class AttackPaths {
      * @param VertexID the vertex to search
      * @return the Vertex of the set
      */
-    public static Vertex getVertex(Vertex[] vertices, double VertexID) {
+    public static Vertex getVertex(Vertex[] vertices, int VertexID) {
         for (Vertex vertice : vertices) {
             if (vertice.getID() == VertexID) {
                 return new Vertex(vertice);
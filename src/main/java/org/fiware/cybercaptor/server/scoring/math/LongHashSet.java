@@ -0,0 +1,133 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.scoring.math;
+
+/**
+ * Set of primitive longs, with open addressing and linear probing, used to merge graphs in a time proportional to
+ * their sizes. The vertex ids are stored as longs and the arcs as (source, destination) pairs packed in a long.
+ */
+class LongHashSet {
+
+    /**
+     * The slots of the keys, 0 for an empty slot (the key 0 is stored in {@link #containsZero})
+     */
+    private long[] keys;
+
+    /**
+     * True if the key 0 is in the set
+     */
+    private boolean containsZero = false;
+
+    /**
+     * The number of keys in the slots
+     */
+    private int size = 0;
+
+    /**
+     * Instantiates a new set of longs
+     *
+     * @param expectedSize the expected number of keys, so that the set does not need to grow
+     */
+    LongHashSet(int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+    }
+
+    /**
+     * @param source      the source id of an arc
+     * @param destination the destination id of the arc
+     * @return the arc packed in a long
+     */
+    static long arcKey(int source, int destination) {
+        return ((long) source << 32) | (destination & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param key  a key
+     * @param mask the number of slots - 1
+     * @return the first slot in which the key may be
+     */
+    private int slotOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * @param key the key to add
+     * @return true if the key was not in the set
+     */
+    boolean add(long key) {
+        if (key == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size * 2 > keys.length)
+            grow();
+        return true;
+    }
+
+    /**
+     * @param key a key
+     * @return true if the key is in the set
+     */
+    boolean contains(long key) {
+        if (key == 0)
+            return containsZero;
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key)
+                return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Double the number of slots
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int slot = slotOf(key, mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
@@ -29,7 +29,10 @@ import org.fiware.cybercaptor.server.scoring.types.Graph;
 import org.fiware.cybercaptor.server.scoring.types.Vertex;
 
 /**
- * Class used to store the scoring formulas
+ * Class used to store the scoring formulas.
+ * The scores of the graphs ({@link #globalScore(Graph)}, {@link #riskScore(Graph)}, {@link #impactScore(Graph)})
+ * and the Z scores only use local variables, so that several graphs can be scored at the same time with the same
+ * formulas.
  *
  * @author K. M.
  */
@@ -67,9 +70,7 @@ public class ScoringFormulas {
      * @return the gobal score
      */
     public double globalScore(Graph attackPath) {
-        Vertex[] vertices = attackPath.getVertices();
-        Arc[] arcs = attackPath.getArcs();
-        double RiskScore = riskScore(vertices, arcs);
+        double RiskScore = riskScore(attackPath);
         double ImpactScore = impactScore(attackPath);
         return RiskScore + ImpactScore;
     }
@@ -82,13 +83,23 @@ public class ScoringFormulas {
      * @return the risk score
      */
     public double riskScore(Vertex[] vertices, Arc[] arcs) {
+        return riskScore(new Graph(arcs, vertices));
+    }
+
+    /**
+     * Compute the risk score, with the degrees and types indexed by the graph.
+     *
+     * @param attackPath the graph to score
+     * @return the risk score
+     */
+    public double riskScore(Graph attackPath) {
         double[] RANDTable;
         double[] RORTable;
         double[] RLEAFTable;
         double RAND = 0, ROR = 0, RLEAF = 0, a = 0, o = 0, l = 0;
-        Vertex[] ANDVertices = Graph.getVerticesOnType(vertices, "AND");
-        Vertex[] ORVertices = Graph.getVerticesOnType(vertices, "OR");
-        Vertex[] LEAFVertices = Graph.getVerticesOnType(vertices, "LEAF");
+        Vertex[] ANDVertices = attackPath.getVerticesOnType("AND");
+        Vertex[] ORVertices = attackPath.getVerticesOnType("OR");
+        Vertex[] LEAFVertices = attackPath.getVerticesOnType("LEAF");
         if (ANDVertices != null) {
             a = ANDVertices.length;
         }
@@ -101,30 +112,30 @@ public class ScoringFormulas {
         if (ANDVertices != null) {
             RANDTable = new double[ANDVertices.length];
             for (int i = 0; i < ANDVertices.length; i++) {
-                double OutgoingArcs = Graph.getOutgoingArcsNumber(arcs, ANDVertices[i].getID());
-                double IngoingArcs = Graph.getIngoingArcsNumber(arcs, ANDVertices[i].getID());
+                double OutgoingArcs = attackPath.getOutgoingArcsNumber(ANDVertices[i].getID());
+                double IngoingArcs = attackPath.getIngoingArcsNumber(ANDVertices[i].getID());
                 double CumulativeScore = ANDVertices[i].getMulvalMetric();
                 RANDTable[i] = (CumulativeScore * (OutgoingArcs / IngoingArcs)) / a;
             }
-            RAND = getSum().evaluate(RANDTable, 0, RANDTable.length);
+            RAND = sum(RANDTable);
         }
         if (ORVertices != null) {
             RORTable = new double[ORVertices.length];
             for (int i = 0; i < ORVertices.length; i++) {
-                double OutgoingArcs = Graph.getOutgoingArcsNumber(arcs, ORVertices[i].getID());
-                double IngoingArcs = Graph.getIngoingArcsNumber(arcs, ORVertices[i].getID());
+                double OutgoingArcs = attackPath.getOutgoingArcsNumber(ORVertices[i].getID());
+                double IngoingArcs = attackPath.getIngoingArcsNumber(ORVertices[i].getID());
                 double CumulativeScore = ORVertices[i].getMulvalMetric();
                 RORTable[i] = CumulativeScore * OutgoingArcs * IngoingArcs * o;
             }
-            ROR = getSum().evaluate(RORTable, 0, RORTable.length);
+            ROR = sum(RORTable);
         }
         if (LEAFVertices != null) {
             RLEAFTable = new double[LEAFVertices.length];
             for (int i = 0; i < LEAFVertices.length; i++) {
-                double OutgoingArcs = Graph.getOutgoingArcsNumber(arcs, LEAFVertices[i].getID());
+                double OutgoingArcs = attackPath.getOutgoingArcsNumber(LEAFVertices[i].getID());
                 RLEAFTable[i] = OutgoingArcs / l;//IngoingArcs=0 and CumulativeScore=1 for all LEAF vertices
             }
-            RLEAF = getSum().evaluate(RLEAFTable, 0, RLEAFTable.length);
+            RLEAF = sum(RLEAFTable);
         }
         return RAND + ROR + RLEAF;
     }
@@ -150,7 +161,7 @@ public class ScoringFormulas {
                 ImpactTable[i] = impactElement;
             }
         }
-        return getSum().evaluate(ImpactTable, 0, ImpactTable.length);
+        return sum(ImpactTable);
     }
 
 
@@ -168,7 +179,7 @@ public class ScoringFormulas {
         for (i = 0; i < scores.length; i++) {
             powerScores[i] = Math.pow(scores[i], p);
         }
-        return Math.pow(getSum().evaluate(powerScores, 0, i), 1.0 / p);
+        return Math.pow(sum(powerScores), 1.0 / p);
     }
 
     /**
@@ -180,10 +191,10 @@ public class ScoringFormulas {
      */
     public double zRawScore(double[] scores, double vertexScore) {
 
-        setStandardDeviationValue(getStandardDeviation().evaluate(scores));
-        setMeanValue(getMean().evaluate(scores));
+        double standardDeviation = getStandardDeviation().evaluate(scores);
+        double mean = getMean().evaluate(scores);
 
-        return (vertexScore - getMeanValue()) / getStandardDeviationValue();
+        return (vertexScore - mean) / standardDeviation;
     }
 
     /**
@@ -195,10 +206,10 @@ public class ScoringFormulas {
      */
     public double zGlobalRawScore(double[] globalRawScores, double currentGlobalScore) {
 
-        setStandardDeviationValue(getStandardDeviation().evaluate(globalRawScores));
-        setMeanValue(getMean().evaluate(globalRawScores));
+        double standardDeviation = getStandardDeviation().evaluate(globalRawScores);
+        double mean = getMean().evaluate(globalRawScores);
 
-        return (currentGlobalScore - getMeanValue()) / getStandardDeviationValue();
+        return (currentGlobalScore - mean) / standardDeviation;
     }
 
     /**
@@ -231,7 +242,7 @@ public class ScoringFormulas {
      * @return A1
      */
     public double A1(double[] scores) {
-        return getSum().evaluate(scores, 0, scores.length);
+        return sum(scores);
     }
 
     /**
@@ -241,14 +252,31 @@ public class ScoringFormulas {
      * @return A2
      */
     public double A2(double[] scores) {
-        return getSum().evaluate(scores, 0, scores.length) / scores.length;
+        return sum(scores) / scores.length;
+    }
+
+    /**
+     * Sum values, in their order, without any state shared between threads
+     *
+     * @param values the values
+     * @return the sum of the values (0 if there is none)
+     */
+    private static double sum(double[] values) {
+        double result = 0;
+        for (double value : values) {
+            result += value;
+        }
+        return result;
     }
 
     /**
      * Gets standard deviation value.
      *
      * @return the standard deviation value
+     * @deprecated the Z scores no longer store their standard deviation : this is only the value of
+     * {@link #setStandardDeviationValue(double)}
      */
+    @Deprecated
     public double getStandardDeviationValue() {
         return standardDeviationValue;
     }
@@ -257,7 +285,9 @@ public class ScoringFormulas {
      * Sets standard deviation value.
      *
      * @param standardDeviationValue the standard deviation value
+     * @deprecated the Z scores no longer store their standard deviation
      */
+    @Deprecated
     public void setStandardDeviationValue(double standardDeviationValue) {
         this.standardDeviationValue = standardDeviationValue;
     }
@@ -266,7 +296,9 @@ public class ScoringFormulas {
      * Gets mean value.
      *
      * @return the mean value
+     * @deprecated the Z scores no longer store their mean : this is only the value of {@link #setMeanValue(double)}
      */
+    @Deprecated
     public double getMeanValue() {
         return meanValue;
     }
@@ -275,7 +307,9 @@ public class ScoringFormulas {
      * Sets mean value.
      *
      * @param meanValue the mean value
+     * @deprecated the Z scores no longer store their mean
      */
+    @Deprecated
     public void setMeanValue(double meanValue) {
         this.meanValue = meanValue;
     }
@@ -320,7 +354,9 @@ public class ScoringFormulas {
      * Gets sum.
      *
      * @return the sum
+     * @deprecated the scores are summed without a shared {@link Sum}
      */
+    @Deprecated
     public Sum getSum() {
         return sum;
     }
@@ -329,7 +365,9 @@ public class ScoringFormulas {
      * Sets sum.
      *
      * @param sum the sum
+     * @deprecated the scores are summed without a shared {@link Sum}
      */
+    @Deprecated
     public void setSum(Sum sum) {
         this.sum = sum;
     }
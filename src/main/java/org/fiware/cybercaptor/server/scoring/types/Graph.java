@@ -20,8 +20,19 @@
  ****************************************************************************************/
 package org.fiware.cybercaptor.server.scoring.types;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
 /**
- * Class used to represent a graph
+ * Class used to represent a graph.
+ * The graph is indexed on the first query : position of each vertex id, number of ingoing and outgoing arcs and
+ * predecessors of each vertex, vertices of each type. The queries are then answered without browsing all the arcs
+ * or vertices. As in the MulVAL files, the source of an arc is the vertex that depends on its destination : the
+ * predecessors of a vertex are the destinations of the arcs leaving it.
+ * The index is dropped by {@link #setArcs(Arc[])} and {@link #setVertices(Vertex[])} only : the arrays returned by
+ * {@link #getArcs()} and {@link #getVertices()}, and the ids, types and facts of their elements, must not be modified
+ * once the graph has been queried. To change a graph, set new arrays.
  *
  * @author K. M.
  */
@@ -37,6 +48,11 @@ public class Graph {
      */
     private Vertex[] Vertices;
 
+    /**
+     * The index of the arcs and vertices, built on the first query, null if they have been changed since
+     */
+    private Index index = null;
+
     /**
      * Instantiates a new Graph.
      *
@@ -48,16 +64,233 @@ public class Graph {
         setVertices(vertices);
     }
 
+    /**
+     * The positions of the vertices, their degrees, their predecessors and their types
+     */
+    private static class Index {
+        /**
+         * vertex ID -> position in the vertex array
+         */
+        private final HashMap<Integer, Integer> positions;
+
+        /**
+         * The number of arcs whose source is each vertex
+         */
+        private final int[] ingoingArcsNumbers;
+
+        /**
+         * The number of arcs whose destination is each vertex
+         */
+        private final int[] outgoingArcsNumbers;
+
+        /**
+         * The positions of the predecessors of the vertex at position i are at
+         * predecessors[predecessorsStart[i]..predecessorsStart[i+1][, in the order of the arcs
+         * (-1 for a destination that is not a vertex of the graph)
+         */
+        private final int[] predecessorsStart;
+        private final int[] predecessors;
+
+        /**
+         * type -> vertices of this type
+         */
+        private final HashMap<String, Vertex[]> verticesByType;
+
+        private Index(Arc[] arcs, Vertex[] vertices) {
+            positions = new HashMap<Integer, Integer>(vertices.length * 2);
+            for (int i = vertices.length - 1; i >= 0; i--) {
+                positions.put(vertices[i].getID(), i); //the first vertex of an ID, as the linear scans
+            }
+            ingoingArcsNumbers = new int[vertices.length];
+            outgoingArcsNumbers = new int[vertices.length];
+            int[] sourcePositions = new int[arcs.length];
+            for (int k = 0; k < arcs.length; k++) {
+                Integer source = positions.get(arcs[k].getSource());
+                Integer destination = positions.get(arcs[k].getDestination());
+                sourcePositions[k] = source == null ? -1 : source;
+                if (source != null)
+                    ingoingArcsNumbers[source]++;
+                if (destination != null)
+                    outgoingArcsNumbers[destination]++;
+            }
+            predecessorsStart = new int[vertices.length + 1];
+            for (int i = 0; i < vertices.length; i++) {
+                predecessorsStart[i + 1] = predecessorsStart[i] + ingoingArcsNumbers[i];
+            }
+            predecessors = new int[predecessorsStart[vertices.length]];
+            int[] next = new int[vertices.length];
+            System.arraycopy(predecessorsStart, 0, next, 0, vertices.length);
+            for (int k = 0; k < arcs.length; k++) {
+                if (sourcePositions[k] >= 0) {
+                    Integer destination = positions.get(arcs[k].getDestination());
+                    predecessors[next[sourcePositions[k]]++] = destination == null ? -1 : destination;
+                }
+            }
+            HashMap<String, List<Vertex>> lists = new HashMap<String, List<Vertex>>();
+            for (Vertex vertex : vertices) {
+                List<Vertex> list = lists.get(vertex.getType());
+                if (list == null) {
+                    list = new ArrayList<Vertex>();
+                    lists.put(vertex.getType(), list);
+                }
+                list.add(vertex);
+            }
+            verticesByType = new HashMap<String, Vertex[]>(lists.size() * 2);
+            for (String type : lists.keySet()) {
+                verticesByType.put(type, lists.get(type).toArray(new Vertex[lists.get(type).size()]));
+            }
+        }
+    }
+
+    /**
+     * @return the index of the current arcs and vertices
+     */
+    private Index getIndex() {
+        if (index == null)
+            index = new Index(Arcs, Vertices);
+        return index;
+    }
+
+    /**
+     * Get the position of a vertex in the vertex array, to browse its predecessors with
+     * {@link #getPredecessorsStart(int)}, {@link #getPredecessorsEnd(int)} and {@link #getPredecessor(int)}
+     * without allocating arrays.
+     *
+     * @param vertexID the vertex iD
+     * @return the position of the (first) vertex with this iD in the vertex array, -1 if it is not in the graph
+     */
+    public int getPosition(int vertexID) {
+        Integer position = getIndex().positions.get(vertexID);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Get the start of the predecessors of a vertex. The predecessors of the vertex are given by
+     * {@link #getPredecessor(int)} for the indexes from this start (included) to {@link #getPredecessorsEnd(int)}
+     * (excluded), in the order of the arcs, as {@link #getPredecessors(int)}.
+     *
+     * @param position the position of a vertex in the vertex array, given by {@link #getPosition(int)}
+     * @return the index of the first predecessor of the vertex, for {@link #getPredecessor(int)}
+     */
+    public int getPredecessorsStart(int position) {
+        return getIndex().predecessorsStart[position];
+    }
+
+    /**
+     * Get the end of the predecessors of a vertex : the vertex has no predecessor if it is equal to
+     * {@link #getPredecessorsStart(int)}.
+     *
+     * @param position the position of a vertex in the vertex array, given by {@link #getPosition(int)}
+     * @return the index following the last predecessor of the vertex, for {@link #getPredecessor(int)}
+     */
+    public int getPredecessorsEnd(int position) {
+        return getIndex().predecessorsStart[position + 1];
+    }
+
+    /**
+     * Get one predecessor of a vertex, as a position in the vertex array : the predecessor is the destination of
+     * one of the arcs whose source is the vertex.
+     *
+     * @param k an index between the predecessors start (included) and end (excluded) of a vertex
+     * @return the position of the predecessor in the vertex array, -1 if the arc leads to a vertex that is not in
+     * the graph
+     */
+    public int getPredecessor(int k) {
+        return getIndex().predecessors[k];
+    }
+
+    /**
+     * Get predecessors.
+     *
+     * @param vertexID the vertex iD
+     * @return the predecessors of the vertex, in the order of the arcs, or null if it has none
+     */
+    public Vertex[] getPredecessors(int vertexID) {
+        int position = getPosition(vertexID);
+        if (position < 0 || getIndex().ingoingArcsNumbers[position] == 0)
+            return null;
+        Vertex[] result = new Vertex[getIndex().ingoingArcsNumbers[position]];
+        for (int i = 0; i < result.length; i++) {
+            int predecessor = getIndex().predecessors[getIndex().predecessorsStart[position] + i];
+            result[i] = predecessor < 0 ? null : Vertices[predecessor];
+        }
+        return result;
+    }
+
+    /**
+     * Get ingoing arcs number.
+     *
+     * @param vertexID the vertex iD
+     * @return the number of arcs whose source is the vertex
+     */
+    public int getIngoingArcsNumber(int vertexID) {
+        int position = getPosition(vertexID);
+        return position < 0 ? 0 : getIndex().ingoingArcsNumbers[position];
+    }
+
+    /**
+     * Get outgoing arcs number.
+     *
+     * @param vertexID the vertex iD
+     * @return the number of arcs whose destination is the vertex
+     */
+    public int getOutgoingArcsNumber(int vertexID) {
+        int position = getPosition(vertexID);
+        return position < 0 ? 0 : getIndex().outgoingArcsNumbers[position];
+    }
+
+    /**
+     * Get vertex on iD.
+     *
+     * @param vertexID the vertex iD
+     * @return the vertex, or null if it is not in the graph
+     */
+    public Vertex getVertexOnID(int vertexID) {
+        int position = getPosition(vertexID);
+        return position < 0 ? null : Vertices[position];
+    }
+
+    /**
+     * Get vertices on type.
+     *
+     * @param type the type
+     * @return the vertices of this type, in the order of the vertices, or null if there is none
+     */
+    public Vertex[] getVerticesOnType(String type) {
+        Vertex[] result = getIndex().verticesByType.get(type);
+        return result == null ? null : result.clone();
+    }
+
+    /**
+     * Get vertices on type and fact.
+     *
+     * @param type the type
+     * @return the vertices of this type whose fact is an execCode, or null if there is none
+     */
+    public Vertex[] getVerticesOnTypeAndFact(String type) {
+        Vertex[] verticesOnType = getIndex().verticesByType.get(type);
+        if (verticesOnType == null)
+            return null;
+        List<Vertex> result = new ArrayList<Vertex>();
+        for (Vertex vertex : verticesOnType) {
+            if (vertex.getFact().startsWith("execCode"))
+                result.add(vertex);
+        }
+        return result.isEmpty() ? null : result.toArray(new Vertex[result.size()]);
+    }
+
     /**
      * Get predecessors.
      *
      * @param arcs     the arcs
      * @param vertexID the vertex iD
-     * @return the double [ ]
+     * @return the ids of the predecessors of the vertex, or null if it has none
+     * @deprecated browses all the arcs, use {@link #getPredecessors(int)} on an indexed graph
      */
-    public static double[] getPredecessors(Arc[] arcs, double vertexID) {
+    @Deprecated
+    public static int[] getPredecessors(Arc[] arcs, int vertexID) {
         int counter = 0;
-        double[] result = null;
+        int[] result = null;
         //the first for loop is to get the cardinality of the query result
         for (Arc arc : arcs) {
             if (arc.getSource() == vertexID) {
@@ -65,7 +298,7 @@ public class Graph {
             }
         }
         if (counter != 0) {
-            result = new double[counter];
+            result = new int[counter];
             counter = 0;
             for (Arc arc : arcs) {
                 if (arc.getSource() == vertexID) {
@@ -83,7 +316,9 @@ public class Graph {
      * @param vertices the vertices
      * @param type     the type
      * @return the vertex [ ]
+     * @deprecated browses all the vertices, use {@link #getVerticesOnTypeAndFact(String)} on an indexed graph
      */
+    @Deprecated
     public static Vertex[] getVerticesOnTypeAndFact(Vertex[] vertices, String type) {
         int counter = 0;
         Vertex[] result = null;
@@ -113,8 +348,10 @@ public class Graph {
      * @param vertices the vertices
      * @param vertexID the vertex iD
      * @return the vertex [ ]
+     * @deprecated browses all the arcs, use {@link #getPredecessors(int)} on an indexed graph
      */
-    public static Vertex[] getPredecessors(Arc[] arcs, Vertex[] vertices, double vertexID) {
+    @Deprecated
+    public static Vertex[] getPredecessors(Arc[] arcs, Vertex[] vertices, int vertexID) {
         int counter = 0;
         Vertex[] result = null;
         //the first for loop is to get the cardinality of the query result
@@ -142,8 +379,10 @@ public class Graph {
      * @param arcs     the arcs
      * @param vertexID the vertex iD
      * @return the double
+     * @deprecated browses all the arcs, use {@link #getIngoingArcsNumber(int)} on an indexed graph
      */
-    public static double getIngoingArcsNumber(Arc[] arcs, double vertexID) {
+    @Deprecated
+    public static double getIngoingArcsNumber(Arc[] arcs, int vertexID) {
         double counter = 0;
         for (Arc arc : arcs) {
             if (arc.getSource() == vertexID) {
@@ -160,8 +399,10 @@ public class Graph {
      * @param arcs     the arcs
      * @param vertexID the vertex iD
      * @return the double
+     * @deprecated browses all the arcs, use {@link #getOutgoingArcsNumber(int)} on an indexed graph
      */
-    public static double getOutgoingArcsNumber(Arc[] arcs, double vertexID) {
+    @Deprecated
+    public static double getOutgoingArcsNumber(Arc[] arcs, int vertexID) {
         double counter = 0;
         for (Arc arc : arcs) {
             if (arc.getDestination() == vertexID) {
@@ -178,13 +419,14 @@ public class Graph {
      * @param vertices the vertices
      * @param type     the type
      * @return the vertex [ ]
+     * @deprecated browses all the vertices, use {@link #getVerticesOnType(String)} on an indexed graph
      */
+    @Deprecated
     public static Vertex[] getVerticesOnType(Vertex[] vertices, String type) {
         int counter = 0;
         Vertex[] result = null;
         //the first for loop is to get the cardinality of the query result
         for (Vertex vertice1 : vertices) {
-            //System.out.println("i:"+i);
             if (vertice1.getType().equals(type)) {
                 counter++;
             }
@@ -208,9 +450,10 @@ public class Graph {
      * @param vertices the vertices
      * @param ID       the iD
      * @return the vertex
+     * @deprecated browses all the vertices, use {@link #getVertexOnID(int)} on an indexed graph
      */
-    public static Vertex getVertexOnID(Vertex[] vertices, double ID) {
-        //the first for loop is to get the cardinality of the query result
+    @Deprecated
+    public static Vertex getVertexOnID(Vertex[] vertices, int ID) {
         for (Vertex vertice : vertices) {
             if (vertice.getID() == ID) {
                 return vertice;
@@ -222,37 +465,39 @@ public class Graph {
     /**
      * Get arcs.
      *
-     * @return the arc [ ]
+     * @return the arc [ ], not copied : it must not be modified, see {@link #setArcs(Arc[])}
      */
     public Arc[] getArcs() {
         return Arcs;
     }
 
     /**
-     * Sets arcs.
+     * Sets arcs and drops the index, rebuilt on the next query.
      *
      * @param arcs the arcs
      */
     public void setArcs(Arc[] arcs) {
         Arcs = arcs;
+        index = null;
     }
 
     /**
      * Get vertices.
      *
-     * @return the vertex [ ]
+     * @return the vertex [ ], not copied : it must not be modified, see {@link #setVertices(Vertex[])}
      */
     public Vertex[] getVertices() {
         return Vertices;
     }
 
     /**
-     * Sets vertices.
+     * Sets vertices and drops the index, rebuilt on the next query.
      *
      * @param vertices the vertices
      */
     public void setVertices(Vertex[] vertices) {
         Vertices = vertices;
+        index = null;
     }
 
 }
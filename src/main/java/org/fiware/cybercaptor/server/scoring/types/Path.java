@@ -31,7 +31,7 @@ public class Path {
     /**
      * The list of ids
      */
-    private double[] Path;
+    private int[] Path;
 
     /**
      * Instantiates a new Path.
@@ -39,16 +39,16 @@ public class Path {
      * @param PathLength the path length
      */
     public Path(int PathLength) {
-        Path = new double[PathLength + 1];
+        Path = new int[PathLength + 1];
         Path[0] = -1;
     }
 
     /**
      * Get path.
      *
-     * @return the double [ ]
+     * @return the int [ ]
      */
-    public double[] getPath() {
+    public int[] getPath() {
         return Path;
     }
 
@@ -57,7 +57,7 @@ public class Path {
      *
      * @param path the path
      */
-    public void setPath(double[] path) {
+    public void setPath(int[] path) {
         Path = path;
     }
 
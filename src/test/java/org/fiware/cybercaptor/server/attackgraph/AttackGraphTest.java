@@ -0,0 +1,896 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+
+package org.fiware.cybercaptor.server.attackgraph;
+
+import org.fiware.cybercaptor.server.attackgraph.compact.CompactAttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.compact.EpochMarks;
+import org.fiware.cybercaptor.server.attackgraph.compact.StronglyConnectedComponents;
+import org.fiware.cybercaptor.server.attackgraph.fact.DatalogCommand;
+import org.fiware.cybercaptor.server.attackgraph.fact.Fact;
+import org.jdom2.Document;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class to test the attack graph.
+ */
+public class AttackGraphTest {
+
+    /**
+     * The vertices of the test attack graph : id, type, fact
+     */
+    private static final String[][] TEST_VERTICES = {
+            {"1", "LEAF", "attackerLocated(internet)"},
+            {"2", "LEAF", "hacl(internet,'web',tcp,80)"},
+            {"3", "LEAF", "networkServiceInfo('web',httpd,tcp,80,apache)"},
+            {"4", "LEAF", "vulExists('web','CVE-2014-0001',httpd,remoteExploit,privEscalation)"},
+            {"5", "AND", "RULE 6 (direct network access)"},
+            {"6", "OR", "netAccess('web',tcp,80)"},
+            {"7", "AND", "RULE 2 (remote exploit of a server program)"},
+            {"8", "OR", "execCode('web',root)"},
+            {"9", "LEAF", "hacl('web','db',tcp,3306)"},
+            {"10", "LEAF", "vulExists('db','CVE-2014-0002',mysqld,remoteExploit,privEscalation)"},
+            {"11", "LEAF", "networkServiceInfo('db',mysqld,tcp,3306,root)"},
+            {"12", "AND", "RULE 5 (multi-hop access)"},
+            {"13", "OR", "netAccess('db',tcp,3306)"},
+            {"14", "AND", "RULE 2 (remote exploit of a server program)"},
+            {"15", "OR", "execCode('db',root)"},
+            {"16", "LEAF", "hacl(internet,'db',tcp,3306)"},
+            {"17", "AND", "RULE 6 (direct network access)"},
+    };
+
+    /**
+     * The arcs of the test attack graph : source, destination
+     */
+    private static final int[][] TEST_ARCS = {
+            {1, 5}, {2, 5}, {5, 6}, {6, 7}, {3, 7}, {4, 7}, {7, 8},
+            {8, 12}, {9, 12}, {12, 13}, {13, 14}, {11, 14}, {10, 14}, {14, 15},
+            {1, 17}, {16, 17}, {17, 13}
+    };
+
+    /**
+     * @return the MulVAL XML file of the test attack graph
+     */
+    private static String createTestAttackGraphXml() {
+        StringBuilder xml = new StringBuilder("<attack_graph><arcs>");
+        for (int[] arc : TEST_ARCS) {
+            //MulVAL XML files inverse source and destination
+            xml.append("<arc><src>").append(arc[1]).append("</src><dst>").append(arc[0]).append("</dst></arc>");
+        }
+        xml.append("</arcs><vertices>");
+        for (String[] vertex : TEST_VERTICES) {
+            xml.append("<vertex><id>").append(vertex[0]).append("</id><fact>").append(vertex[2])
+                    .append("</fact><metric>1.0</metric><type>").append(vertex[1]).append("</type></vertex>");
+        }
+        xml.append("</vertices></attack_graph>");
+        return xml.toString();
+    }
+
+    /**
+     * Create the test attack graph : the attacker, on internet, can access the database server "db" either directly
+     * or after the exploitation of the web server "web".
+     *
+     * @return the attack graph
+     * @throws Exception
+     */
+    public static MulvalAttackGraph createTestAttackGraph() throws Exception {
+        Document document = new SAXBuilder().build(new StringReader(createTestAttackGraphXml()));
+        MulvalAttackGraph attackGraph = new MulvalAttackGraph();
+        attackGraph.addArcsAndVerticesFromDomElement(document.getRootElement());
+        return attackGraph;
+    }
+
+    /**
+     * @param vertices a list of vertices
+     * @return the ids of the vertices
+     */
+    public static Integer[] ids(List<Vertex> vertices) {
+        Integer[] result = new Integer[vertices.size()];
+        for (int i = 0; i < vertices.size(); i++) {
+            result[i] = vertices.get(i).id;
+        }
+        return result;
+    }
+
+    @Test
+    public void testParentsAndChildren() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        Assert.assertEquals(17, attackGraph.getNumberOfVertices());
+        Assert.assertEquals(TEST_ARCS.length, attackGraph.arcs.size());
+
+        Vertex vertex13 = attackGraph.getVertexFromId(13);
+        vertex13.computeParentsAndChildren(attackGraph);
+        Assert.assertArrayEquals(new Integer[]{12, 17}, ids(vertex13.parents));
+        Assert.assertArrayEquals(new Integer[]{14}, ids(vertex13.children));
+        Assert.assertArrayEquals(new Integer[]{5, 17}, ids(attackGraph.getChildren(attackGraph.getVertexFromId(1))));
+
+        //An arc between the same vertices is only added once
+        Assert.assertFalse(attackGraph.addArc(new Arc(attackGraph.getVertexFromId(1), attackGraph.getVertexFromId(5))));
+        Assert.assertEquals(TEST_ARCS.length, attackGraph.arcs.size());
+    }
+
+    @Test
+    public void testDatalogCommand() throws Exception {
+        DatalogCommand command = new DatalogCommand("vulExists('web','CVE-2014-0001',httpd,remoteExploit,privEscalation)", null);
+        Assert.assertEquals("vulExists", command.command);
+        Assert.assertEquals(DatalogCommand.CommandType.VUL_EXISTS, command.commandType);
+        Assert.assertArrayEquals(new String[]{"web", "CVE-2014-0001", "httpd", "remoteExploit", "privEscalation"}, command.params);
+
+        //The commas between quotes do not separate the params
+        command = new DatalogCommand("hasAccount(\"Doe, John\",'db',user)", null);
+        Assert.assertEquals(DatalogCommand.CommandType.HAS_ACCOUNT, command.commandType);
+        Assert.assertArrayEquals(new String[]{"Doe, John", "db", "user"}, command.params);
+
+        //The params are shared between the facts
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        Assert.assertSame(attackGraph.getVertexFromId(4).fact.datalogCommand.params[0],
+                attackGraph.getVertexFromId(3).fact.datalogCommand.params[0]);
+        //but not between the attack graphs
+        Assert.assertNotSame(attackGraph.getVertexFromId(4).fact.datalogCommand.params[0],
+                createTestAttackGraph().getVertexFromId(4).fact.datalogCommand.params[0]);
+        Assert.assertEquals(DatalogCommand.CommandType.NET_ACCESS, attackGraph.getVertexFromId(6).fact.datalogCommand.commandType);
+        Assert.assertEquals(DatalogCommand.CommandType.OTHER, new DatalogCommand("vlanAccess(web,dmz)", null).commandType);
+        Assert.assertNull(attackGraph.getVertexFromId(5).fact.datalogCommand);
+        Assert.assertFalse(DatalogCommand.isADatalogFact("RULE 6 (direct network access)"));
+    }
+
+    @Test
+    public void testVertexIndex() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        Assert.assertArrayEquals(new Integer[]{8, 15}, ids(attackGraph.getVerticesByCommand("execCode")));
+        Assert.assertArrayEquals(new Integer[]{2, 3, 4, 6, 8, 9}, ids(attackGraph.getVerticesByHost("web")));
+        Assert.assertArrayEquals(new Integer[]{10}, ids(attackGraph.getVerticesByCve("CVE-2014-0002")));
+        Assert.assertArrayEquals(new Integer[]{9, 16}, ids(attackGraph.getVertices("hacl", "db", null)));
+        Assert.assertArrayEquals(new Integer[]{4}, ids(attackGraph.getVertices("vulExists", "web", "CVE-2014-0001")));
+        Assert.assertEquals(0, attackGraph.getVertices("execCode", "db", "CVE-2014-0001").size());
+        Assert.assertEquals(17, attackGraph.getVertices(null, null, null).size());
+        Assert.assertArrayEquals(new Integer[]{8, 15}, ids(attackGraph.getAttackerGoals()));
+
+        //The indexes follow the deletions
+        attackGraph.deleteVertices(Arrays.asList(attackGraph.getVertexFromId(4), attackGraph.getVertexFromId(10)));
+        Assert.assertArrayEquals(new Integer[]{2, 6}, ids(attackGraph.getVerticesByHost("web")));
+        Assert.assertArrayEquals(new Integer[]{13, 16}, ids(attackGraph.getVerticesByHost("db")));
+        Assert.assertEquals(0, attackGraph.getVerticesByCommand("execCode").size());
+        Assert.assertEquals(0, attackGraph.getVerticesByCve("CVE-2014-0002").size());
+
+        //and the additions
+        Vertex vertex = attackGraph.getExistingOrCreateVertex(18);
+        vertex.fact = new Fact("execCode('db',root)", vertex);
+        Assert.assertArrayEquals(new Integer[]{13, 16, 18}, ids(attackGraph.getVerticesByHost("db")));
+
+        //and the reassignments of a fact or of a vertex made without the methods of the attack graph
+        vertex.fact = new Fact("execCode('web',root)", vertex);
+        Assert.assertArrayEquals(new Integer[]{13, 16}, ids(attackGraph.getVerticesByHost("db")));
+        Assert.assertArrayEquals(new Integer[]{2, 6, 18}, ids(attackGraph.getVerticesByHost("web")));
+        Vertex replacement = new Vertex(13);
+        replacement.fact = new Fact("execCode('web',user)", replacement);
+        attackGraph.vertices.put(13, replacement);
+        Assert.assertArrayEquals(new Integer[]{16}, ids(attackGraph.getVerticesByHost("db")));
+        Assert.assertArrayEquals(new Integer[]{2, 6, 13, 18}, ids(attackGraph.getVerticesByHost("web")));
+
+        //The index of a clone is independent of the index of the attack graph
+        AttackGraph copy = attackGraph.clone();
+        Vertex copied = copy.getVertexFromId(18);
+        copied.fact = new Fact("execCode('db',root)", copied);
+        Assert.assertArrayEquals(new Integer[]{16, 18}, ids(copy.getVerticesByHost("db")));
+        Assert.assertArrayEquals(new Integer[]{16}, ids(attackGraph.getVerticesByHost("db")));
+    }
+
+    @Test
+    public void testMinimalCutSets() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        List<Vertex> leaves = new ArrayList<Vertex>();
+        for (int id : new int[]{2, 4, 9, 10, 16}) {
+            leaves.add(attackGraph.getVertexFromId(id));
+        }
+        Vertex goal = attackGraph.getVertexFromId(15);
+
+        //Patch the database, or cut its direct access and one step of the access through the web server
+        List<List<Vertex>> cutSets = new MinimalCutSets(attackGraph, leaves, MinimalCutSets.NO_LIMIT).compute(goal);
+        Assert.assertEquals(4, cutSets.size());
+        Assert.assertArrayEquals(new Integer[]{10}, ids(cutSets.get(0)));
+        Assert.assertArrayEquals(new Integer[]{2, 16}, ids(cutSets.get(1)));
+        Assert.assertArrayEquals(new Integer[]{4, 16}, ids(cutSets.get(2)));
+        Assert.assertArrayEquals(new Integer[]{9, 16}, ids(cutSets.get(3)));
+
+        //The size of the cut sets can be limited
+        cutSets = new MinimalCutSets(attackGraph, leaves, 1).compute(goal);
+        Assert.assertEquals(1, cutSets.size());
+        Assert.assertArrayEquals(new Integer[]{10}, ids(cutSets.get(0)));
+    }
+
+    @Test
+    public void testLeafCutCircuit() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        LeafCutCircuit circuit = new LeafCutCircuit(attackGraph, attackGraph.getVertexFromId(15));
+        Assert.assertTrue(circuit.cuts(Arrays.asList(attackGraph.getVertexFromId(10))));
+        Assert.assertFalse(circuit.cuts(Arrays.asList(attackGraph.getVertexFromId(16))));
+        Assert.assertTrue(circuit.cuts(Arrays.asList(attackGraph.getVertexFromId(2), attackGraph.getVertexFromId(16))));
+
+        //The combinations are evaluated by words of 64 combinations
+        List<List<Vertex>> combinations = new ArrayList<List<Vertex>>();
+        for (int i = 0; i < 100; i++) {
+            combinations.add(Arrays.asList(attackGraph.getVertexFromId(i % 2 == 0 ? 9 : 4), attackGraph.getVertexFromId(i % 3 == 0 ? 16 : 3)));
+        }
+        boolean[] cuts = circuit.cuts(combinations);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i % 3 == 0, cuts[i]);
+        }
+    }
+
+    @Test
+    public void testReachabilityIndex() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        Assert.assertTrue(attackGraph.canContributeTo(attackGraph.getVertexFromId(1), attackGraph.getVertexFromId(15)));
+        Assert.assertTrue(attackGraph.canContributeTo(attackGraph.getVertexFromId(16), attackGraph.getVertexFromId(13)));
+        Assert.assertFalse(attackGraph.canContributeTo(attackGraph.getVertexFromId(16), attackGraph.getVertexFromId(8)));
+        Assert.assertFalse(attackGraph.canContributeTo(attackGraph.getVertexFromId(15), attackGraph.getVertexFromId(1)));
+        Assert.assertTrue(attackGraph.getReachabilityIndex().getStronglyConnectedComponents().isAcyclic());
+
+        //A cycle is contracted into one component
+        attackGraph.addArc(new Arc(attackGraph.getVertexFromId(13), attackGraph.getVertexFromId(8)));
+        StronglyConnectedComponents components = attackGraph.getReachabilityIndex().getStronglyConnectedComponents();
+        CompactAttackGraph compact = attackGraph.getCompactAttackGraph();
+        Assert.assertEquals(components.getComponent(compact.indexOf(8)), components.getComponent(compact.indexOf(13)));
+        Assert.assertTrue(components.isOnCycle(compact.indexOf(12)));
+        Assert.assertFalse(components.isOnCycle(compact.indexOf(14)));
+        Assert.assertTrue(attackGraph.canContributeTo(attackGraph.getVertexFromId(16), attackGraph.getVertexFromId(8)));
+
+        //The index follows the deletions
+        Vertex directAccess = attackGraph.getVertexFromId(17);
+        attackGraph.deleteVertex(attackGraph.getVertexFromId(16));
+        Assert.assertFalse(attackGraph.getReachabilityIndex().getStronglyConnectedComponents().isAcyclic());
+        Assert.assertFalse(attackGraph.canContributeTo(directAccess, attackGraph.getVertexFromId(8)));
+        Assert.assertTrue(attackGraph.canContributeTo(attackGraph.getVertexFromId(9), attackGraph.getVertexFromId(8)));
+    }
+
+    @Test
+    public void testMinimumPrerequisites() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        MinimumPrerequisites prerequisites = attackGraph.getMinimumPrerequisites();
+        Assert.assertEquals(4, prerequisites.getCost(attackGraph.getVertexFromId(15)), 0.);
+        Assert.assertArrayEquals(new Integer[]{1, 16, 11, 10}, ids(prerequisites.getPrerequisiteLeaves(attackGraph.getVertexFromId(15))));
+        Assert.assertEquals(17, prerequisites.getChosenParent(attackGraph.getVertexFromId(13)).id);
+        Assert.assertSame(prerequisites, attackGraph.getMinimumPrerequisites());
+
+        //An expensive direct access makes the attacker go through the web server
+        MinimumPrerequisites.LeafCost expensiveDirectAccess = new MinimumPrerequisites.LeafCost() {
+            @Override
+            public double getCost(Vertex leaf) {
+                return leaf.id == 16 ? 10 : 1;
+            }
+        };
+        prerequisites = new MinimumPrerequisites(attackGraph, expensiveDirectAccess);
+        Assert.assertEquals(7, prerequisites.getCost(attackGraph.getVertexFromId(15)), 0.);
+        Assert.assertEquals(12, prerequisites.getChosenParent(attackGraph.getVertexFromId(13)).id);
+
+        //On a cycle, a vertex is never derived from itself
+        attackGraph.addArc(new Arc(attackGraph.getVertexFromId(13), attackGraph.getVertexFromId(8)));
+        Assert.assertArrayEquals(new Integer[]{1, 16}, ids(attackGraph.getMinimumPrerequisiteLeavesTo(attackGraph.getVertexFromId(8))));
+        Assert.assertEquals(13, attackGraph.getMinimumPrerequisites().getChosenParent(attackGraph.getVertexFromId(8)).id);
+        attackGraph.deleteVertex(attackGraph.getVertexFromId(16));
+        Assert.assertArrayEquals(new Integer[]{1, 2, 3, 4}, ids(attackGraph.getMinimumPrerequisiteLeavesTo(attackGraph.getVertexFromId(8))));
+        Assert.assertArrayEquals(new Integer[]{1, 2, 3, 4, 9}, ids(attackGraph.getMinimumPrerequisiteLeavesTo(attackGraph.getVertexFromId(13))));
+    }
+
+    @Test
+    public void testRiskPropagation() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        //Without CVSS leaves, all the facts hold
+        Assert.assertEquals(1, attackGraph.getRiskPropagation().getProbability(attackGraph.getVertexFromId(15)), 0.);
+        Assert.assertSame(attackGraph.getRiskPropagation(), attackGraph.getRiskPropagation());
+
+        RiskPropagation.LeafProbability half = new RiskPropagation.LeafProbability() {
+            @Override
+            public double getProbability(Vertex leaf) {
+                return 0.5;
+            }
+        };
+        RiskPropagation risk = new RiskPropagation(attackGraph, half, RiskPropagation.CycleHandling.FIXED_POINT);
+        Assert.assertEquals(0.0625, risk.getProbability(attackGraph.getVertexFromId(8)), 1e-12);
+        //Noisy-OR of the multi-hop access (0.03125) and of the direct access (0.25)
+        Assert.assertEquals(1 - 0.96875 * 0.75, risk.getProbability(attackGraph.getVertexFromId(13)), 1e-12);
+        Assert.assertEquals((1 - 0.96875 * 0.75) / 4, risk.getProbability(attackGraph.getVertexFromId(15)), 1e-12);
+        Assert.assertEquals(attackGraph.getNumberOfVertices(), risk.getProbabilities().length);
+
+        //Cycle 8 -> 12 -> 13 -> 8
+        attackGraph.addArc(new Arc(attackGraph.getVertexFromId(13), attackGraph.getVertexFromId(8)));
+        risk = new RiskPropagation(attackGraph, half, RiskPropagation.CycleHandling.CUT);
+        Assert.assertEquals(0.0625, risk.getProbability(attackGraph.getVertexFromId(8)), 1e-12);
+        Assert.assertEquals(0, risk.getProbability(attackGraph.getVertexFromId(12)), 1e-12);
+        Assert.assertEquals(0.25, risk.getProbability(attackGraph.getVertexFromId(13)), 1e-12);
+        risk = new RiskPropagation(attackGraph, half, RiskPropagation.CycleHandling.FIXED_POINT);
+        Assert.assertEquals(0.296875 / 0.6484375, risk.getProbability(attackGraph.getVertexFromId(8)), 1e-8);
+        Assert.assertEquals(0.296875 / 0.6484375 / 2, risk.getProbability(attackGraph.getVertexFromId(12)), 1e-8);
+    }
+
+    @Test
+    public void testLoadFromFile() throws Exception {
+        File file = File.createTempFile("attack-graph", ".xml");
+        try {
+            FileWriter writer = new FileWriter(file);
+            writer.write(createTestAttackGraphXml().replace("<vertex>", "<!-- vertex --><vertex>\n  "));
+            writer.close();
+            MulvalAttackGraph loadedAttackGraph = new MulvalAttackGraph(file.getAbsolutePath());
+            MulvalAttackGraph attackGraph = createTestAttackGraph();
+
+            Assert.assertEquals(attackGraph.vertices.keySet(), loadedAttackGraph.vertices.keySet());
+            for (Vertex vertex : attackGraph.vertices.values()) {
+                Vertex loadedVertex = loadedAttackGraph.getVertexFromId(vertex.id);
+                Assert.assertEquals(vertex.type, loadedVertex.type);
+                Assert.assertEquals(vertex.fact.factString, loadedVertex.fact.factString);
+                Assert.assertEquals(vertex.mulvalMetric, loadedVertex.mulvalMetric, 0);
+            }
+            Assert.assertEquals(attackGraph.arcs.size(), loadedAttackGraph.arcs.size());
+            for (int i = 0; i < attackGraph.arcs.size(); i++) {
+                Assert.assertEquals(attackGraph.arcs.get(i).source.id, loadedAttackGraph.arcs.get(i).source.id);
+                Assert.assertEquals(attackGraph.arcs.get(i).destination.id, loadedAttackGraph.arcs.get(i).destination.id);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testAttackGraphSnapshot() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        List<AttackPath> attackPaths = attackGraph.generateAttackPaths();
+        attackGraph.getVertexFromId(15).impactMetrics.add(new ImpactMetric(0.8, 1));
+        File file = File.createTempFile("attack-graph", ".snapshot");
+        try {
+            AttackGraphSnapshot.save(attackGraph, attackPaths, file.getAbsolutePath());
+            AttackGraphSnapshot snapshot = AttackGraphSnapshot.load(file.getAbsolutePath());
+            MulvalAttackGraph loadedAttackGraph = snapshot.getAttackGraph();
+
+            Assert.assertEquals(attackGraph.vertices.keySet(), loadedAttackGraph.vertices.keySet());
+            for (Vertex vertex : attackGraph.vertices.values()) {
+                Vertex loadedVertex = loadedAttackGraph.getVertexFromId(vertex.id);
+                Assert.assertEquals(vertex.type, loadedVertex.type);
+                Assert.assertEquals(vertex.fact.factString, loadedVertex.fact.factString);
+                Assert.assertEquals(vertex.mulvalMetric, loadedVertex.mulvalMetric, 0);
+                Assert.assertEquals(vertex.impactMetrics.toString(), loadedVertex.impactMetrics.toString());
+            }
+            Assert.assertEquals(1, loadedAttackGraph.getVertexFromId(15).impactMetrics.size());
+            Assert.assertEquals(attackGraph.arcs.size(), loadedAttackGraph.arcs.size());
+            for (int i = 0; i < attackGraph.arcs.size(); i++) {
+                Assert.assertEquals(attackGraph.arcs.get(i).source.id, loadedAttackGraph.arcs.get(i).source.id);
+                Assert.assertEquals(attackGraph.arcs.get(i).destination.id, loadedAttackGraph.arcs.get(i).destination.id);
+            }
+
+            Assert.assertEquals(attackPaths.size(), snapshot.getAttackPaths().size());
+            for (int i = 0; i < attackPaths.size(); i++) {
+                AttackPath loadedAttackPath = snapshot.getAttackPaths().get(i);
+                Assert.assertEquals(attackPaths.get(i).scoring, loadedAttackPath.scoring, 0);
+                Assert.assertEquals(attackPaths.get(i).vertices.keySet(), loadedAttackPath.vertices.keySet());
+                Assert.assertEquals(attackPaths.get(i).arcs.size(), loadedAttackPath.arcs.size());
+                for (Vertex vertex : loadedAttackPath.vertices.values()) {
+                    Assert.assertSame(loadedAttackGraph.getVertexFromId(vertex.id), vertex);
+                }
+            }
+
+            //A file which is not a snapshot is refused
+            FileWriter writer = new FileWriter(file);
+            writer.write(createTestAttackGraphXml());
+            writer.close();
+            try {
+                AttackGraphSnapshot.load(file.getAbsolutePath());
+                Assert.fail();
+            } catch (IOException e) {
+                //expected
+            }
+
+            //A snapshot of another version is refused
+            DataOutputStream output = new DataOutputStream(new FileOutputStream(file));
+            output.writeInt(AttackGraphSnapshot.MAGIC_NUMBER);
+            output.writeInt(AttackGraphSnapshot.VERSION - 1);
+            output.close();
+            try {
+                AttackGraphSnapshot.load(file.getAbsolutePath());
+                Assert.fail();
+            } catch (IOException e) {
+                //expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDeleteArc() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        Vertex vertex16 = attackGraph.getVertexFromId(16);
+        Vertex vertex17 = attackGraph.getVertexFromId(17);
+        Assert.assertNotNull(attackGraph.getArc(vertex16, vertex17));
+
+        attackGraph.deleteArc(vertex16, vertex17);
+        Assert.assertNull(attackGraph.getArc(vertex16, vertex17));
+        Assert.assertEquals(TEST_ARCS.length - 1, attackGraph.arcs.size());
+        Assert.assertArrayEquals(new Integer[]{1}, ids(attackGraph.getParents(vertex17)));
+        for (Arc arc : attackGraph.arcs) {
+            Assert.assertSame(arc, attackGraph.getArc(arc.source, arc.destination));
+        }
+
+        //The index follows the arcs list even if it is modified directly
+        Arc arc16To17 = new Arc(vertex16, vertex17);
+        attackGraph.arcs.add(arc16To17);
+        Assert.assertArrayEquals(new Integer[]{1, 16}, ids(attackGraph.getParents(vertex17)));
+
+        //Even when the modification does not change the size of the list
+        Vertex vertex9 = attackGraph.getVertexFromId(9);
+        attackGraph.arcs.remove(arc16To17);
+        attackGraph.arcs.add(new Arc(vertex9, vertex17));
+        Assert.assertArrayEquals(new Integer[]{1, 9}, ids(attackGraph.getParents(vertex17)));
+        attackGraph.arcs.set(attackGraph.arcs.size() - 1, arc16To17);
+        Assert.assertArrayEquals(new Integer[]{1, 16}, ids(attackGraph.getParents(vertex17)));
+        Assert.assertNull(attackGraph.getArc(vertex9, vertex17));
+    }
+
+    @Test
+    public void testDuplicateArcs() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        Vertex vertex1 = attackGraph.getVertexFromId(1);
+        Vertex vertex5 = attackGraph.getVertexFromId(5);
+        Arc existing = attackGraph.getArc(vertex1, vertex5);
+
+        //addArc does not add a second arc between two vertices
+        Assert.assertFalse(attackGraph.addArc(new Arc(vertex1, vertex5)));
+        Assert.assertEquals(TEST_ARCS.length, attackGraph.arcs.size());
+
+        //A duplicate added directly to the arc list is kept, in the order of the list
+        Arc duplicate = new Arc(vertex1, vertex5);
+        attackGraph.arcs.add(duplicate);
+        List<Arc> arcsBefore = new ArrayList<Arc>(attackGraph.arcs);
+        Assert.assertArrayEquals(new Integer[]{1, 2, 1}, ids(attackGraph.getParents(vertex5)));
+        Assert.assertEquals(arcsBefore, attackGraph.arcs);
+        Assert.assertSame(existing, attackGraph.getArc(vertex1, vertex5));
+        Assert.assertEquals(TEST_ARCS.length + 1, attackGraph.clone().arcs.size());
+
+        //Deleting the arc deletes both, the other arcs keep their order
+        attackGraph.deleteArc(vertex1, vertex5);
+        arcsBefore.remove(duplicate);
+        arcsBefore.remove(existing);
+        Assert.assertEquals(arcsBefore, attackGraph.arcs);
+        Assert.assertArrayEquals(new Integer[]{2}, ids(attackGraph.getParents(vertex5)));
+
+        //A plain list assigned to the arcs is indexed without being replaced
+        ArrayList<Arc> plainArcs = new ArrayList<Arc>(attackGraph.arcs);
+        attackGraph.arcs = plainArcs;
+        Assert.assertArrayEquals(new Integer[]{2}, ids(attackGraph.getParents(vertex5)));
+        Assert.assertSame(plainArcs, attackGraph.arcs);
+    }
+
+    @Test
+    public void testDeleteVertex() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        attackGraph.deleteVertex(attackGraph.getVertexFromId(4));
+
+        //The exploitation of the web server is not possible anymore, the database is still reachable from internet
+        for (int deleted : Arrays.asList(4, 7, 8, 12)) {
+            Assert.assertFalse(attackGraph.vertices.containsKey(deleted));
+        }
+        Assert.assertTrue(attackGraph.vertices.containsKey(15));
+        Assert.assertArrayEquals(new Integer[]{17}, ids(attackGraph.getParents(attackGraph.getVertexFromId(13))));
+    }
+
+    @Test
+    public void testDeleteVertices() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        attackGraph.deleteVertices(Arrays.asList(attackGraph.getVertexFromId(4), attackGraph.getVertexFromId(10)));
+
+        //Both servers are patched : only the network access to the database remains
+        Assert.assertEquals(new TreeSet<Integer>(Arrays.asList(1, 2, 5, 6, 13, 16, 17)),
+                new TreeSet<Integer>(attackGraph.vertices.keySet()));
+        Assert.assertEquals(6, attackGraph.arcs.size());
+        Assert.assertArrayEquals(new Integer[]{17}, ids(attackGraph.getVertexFromId(13).parents));
+        Assert.assertEquals(0, attackGraph.getVertexFromId(13).children.size());
+
+        //The same deletions, one after the other
+        MulvalAttackGraph sequentialAttackGraph = createTestAttackGraph();
+        sequentialAttackGraph.deleteVertex(sequentialAttackGraph.getVertexFromId(4));
+        sequentialAttackGraph.deleteVertex(sequentialAttackGraph.getVertexFromId(10));
+        Assert.assertEquals(attackGraph.vertices.keySet(), sequentialAttackGraph.vertices.keySet());
+        Assert.assertEquals(attackGraph.arcs.size(), sequentialAttackGraph.arcs.size());
+
+        //Already deleted vertices are ignored
+        attackGraph.deleteVertices(Arrays.asList(sequentialAttackGraph.getVertexFromId(13), new Vertex(4)));
+        Assert.assertEquals(new TreeSet<Integer>(Arrays.asList(1, 2, 5, 6, 16, 17)),
+                new TreeSet<Integer>(attackGraph.vertices.keySet()));
+    }
+
+    @Test
+    public void testAttackGraphOverlay() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        AttackGraphOverlay overlay = new AttackGraphOverlay(attackGraph);
+        overlay.deleteVertices(Arrays.asList(attackGraph.getVertexFromId(4), attackGraph.getVertexFromId(10)));
+
+        //The base attack graph is not modified
+        Assert.assertEquals(17, attackGraph.getNumberOfVertices());
+        Assert.assertEquals(TEST_ARCS.length, attackGraph.arcs.size());
+        Assert.assertArrayEquals(new Integer[]{12, 17}, ids(attackGraph.getParents(attackGraph.getVertexFromId(13))));
+
+        //The overlay gives the same attack graph as the deletions on a copy
+        MulvalAttackGraph deletedAttackGraph = createTestAttackGraph();
+        deletedAttackGraph.deleteVertices(Arrays.asList(deletedAttackGraph.getVertexFromId(4), deletedAttackGraph.getVertexFromId(10)));
+        Assert.assertEquals(deletedAttackGraph.getNumberOfVertices(), overlay.getNumberOfVertices());
+        Assert.assertEquals(deletedAttackGraph.arcs.size(), overlay.getNumberOfArcs());
+        for (Vertex vertex : overlay.getVertices()) {
+            Assert.assertTrue(deletedAttackGraph.vertices.containsKey(vertex.id));
+        }
+        Assert.assertFalse(overlay.containsVertex(attackGraph.getVertexFromId(15)));
+        Assert.assertArrayEquals(new Integer[]{17}, ids(overlay.getParents(attackGraph.getVertexFromId(13))));
+        Assert.assertEquals(0, overlay.getChildren(attackGraph.getVertexFromId(13)).size());
+
+        MulvalAttackGraph loadedAttackGraph = new MulvalAttackGraph();
+        loadedAttackGraph.addArcsAndVerticesFromDomElement(overlay.toDomElement());
+        Assert.assertEquals(deletedAttackGraph.vertices.keySet(), loadedAttackGraph.vertices.keySet());
+        Assert.assertEquals(deletedAttackGraph.arcs.size(), loadedAttackGraph.arcs.size());
+
+        //An arc deletion is not propagated
+        overlay.deleteArc(attackGraph.getVertexFromId(16), attackGraph.getVertexFromId(17));
+        Assert.assertArrayEquals(new Integer[]{1}, ids(overlay.getParents(attackGraph.getVertexFromId(17))));
+        overlay.deleteUnreachableVertices();
+        Assert.assertTrue(overlay.containsVertex(attackGraph.getVertexFromId(13)));
+    }
+
+    @Test
+    public void testCompactAttackGraph() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        CompactAttackGraph compact = attackGraph.getCompactAttackGraph();
+        Assert.assertSame(compact, attackGraph.getCompactAttackGraph());
+        Assert.assertEquals(17, compact.getNumberOfVertices());
+        Assert.assertEquals(TEST_ARCS.length, compact.getNumberOfArcs());
+
+        int index13 = compact.indexOf(13);
+        Assert.assertEquals(13, compact.getVertexId(index13));
+        Assert.assertEquals(CompactAttackGraph.OR, compact.getType(index13));
+        Assert.assertEquals(2, compact.getInDegree(index13));
+        Assert.assertEquals(12, compact.getVertexId(compact.getParent(compact.getParentsStart(index13))));
+        Assert.assertEquals(17, compact.getVertexId(compact.getParent(compact.getParentsStart(index13) + 1)));
+        Assert.assertEquals(14, compact.getVertexId(compact.getChild(compact.getChildrenStart(index13))));
+        int arc = compact.getChildArc(compact.getChildrenStart(index13));
+        Assert.assertEquals(index13, compact.getParent(arc));
+
+        attackGraph.deleteVertex(attackGraph.getVertexFromId(4));
+        compact = attackGraph.getCompactAttackGraph();
+        Assert.assertEquals(attackGraph.getNumberOfVertices(), compact.getNumberOfVertices());
+        Assert.assertEquals(-1, compact.indexOf(4));
+        Assert.assertEquals(1, compact.getInDegree(compact.indexOf(13)));
+    }
+
+    @Test
+    public void testTraversalsAfterDeletion() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        Vertex vertex1 = attackGraph.getVertexFromId(1);
+        Vertex vertex15 = attackGraph.getVertexFromId(15);
+        Assert.assertEquals(2, attackGraph.getExistingAttackPathsBetween(vertex1, vertex15).size());
+        Assert.assertArrayEquals(new Integer[]{1, 2, 3, 4}, ids(attackGraph.getMinimumPrerequisiteLeavesTo(attackGraph.getVertexFromId(8))));
+
+        //The deletion leaves gaps in the vertex ids, the highest id is kept
+        attackGraph.deleteVertex(attackGraph.getVertexFromId(4));
+        Assert.assertEquals(17, attackGraph.getHighestVertexId());
+        int[][] adjacencyMatrix = attackGraph.getAdjacencyMatrix();
+        Assert.assertEquals(attackGraph.getNumberOfVertices(), adjacencyMatrix.length);
+
+        List<List<Vertex>> paths = attackGraph.getExistingAttackPathsBetween(vertex1, vertex15);
+        Assert.assertEquals(1, paths.size());
+        Assert.assertArrayEquals(new Integer[]{1, 17, 13, 14, 15}, ids(paths.get(0)));
+        Assert.assertArrayEquals(new Integer[]{1, 16}, ids(attackGraph.getMinimumPrerequisiteLeavesTo(attackGraph.getVertexFromId(13))));
+        Assert.assertEquals(1, attackGraph.getExistingAttackPathsBetween(vertex1, attackGraph.getVertexFromId(17)).size());
+    }
+
+    @Test
+    public void testEpochMarks() throws Exception {
+        final EpochMarks marks = EpochMarks.ofCurrentThread(4);
+        marks.mark(2);
+        marks.mark(10);
+        Assert.assertTrue(marks.isMarked(2));
+        Assert.assertTrue(marks.isMarked(10));
+        marks.unmark(2);
+        Assert.assertFalse(marks.isMarked(2));
+
+        //A new traversal of the thread reuses its marks, all unmarked
+        Assert.assertSame(marks, EpochMarks.ofCurrentThread(4));
+        Assert.assertFalse(marks.isMarked(10));
+
+        //Another thread has its own marks
+        final EpochMarks[] otherMarks = new EpochMarks[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                otherMarks[0] = EpochMarks.ofCurrentThread(4);
+            }
+        };
+        thread.start();
+        thread.join();
+        Assert.assertNotNull(otherMarks[0]);
+        Assert.assertNotSame(marks, otherMarks[0]);
+    }
+
+    @Test
+    public void testExistingAttackPathsLimits() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        Vertex vertex1 = attackGraph.getVertexFromId(1);
+        Vertex vertex15 = attackGraph.getVertexFromId(15);
+
+        List<List<Vertex>> paths = attackGraph.getExistingAttackPathsBetween(vertex1, vertex15);
+        Assert.assertArrayEquals(new Integer[]{1, 5, 6, 7, 8, 12, 13, 14, 15}, ids(paths.get(0)));
+        Assert.assertArrayEquals(new Integer[]{1, 17, 13, 14, 15}, ids(paths.get(1)));
+
+        Assert.assertEquals(1, attackGraph.getExistingAttackPathsBetween(vertex1, vertex15, 0, 1).size());
+        paths = attackGraph.getExistingAttackPathsBetween(vertex1, vertex15, 4, 0);
+        Assert.assertEquals(1, paths.size());
+        Assert.assertArrayEquals(new Integer[]{1, 17, 13, 14, 15}, ids(paths.get(0)));
+        Assert.assertEquals(0, attackGraph.getExistingAttackPathsBetween(vertex1, vertex15, 3, 0).size());
+        Assert.assertEquals(0, attackGraph.getExistingAttackPathsBetween(vertex15, vertex1).size());
+    }
+
+    @Test
+    public void testExistingAttackPathsConcurrently() throws Exception {
+        final MulvalAttackGraph attackGraph = createTestAttackGraph();
+        final Vertex vertex1 = attackGraph.getVertexFromId(1);
+        final Vertex vertex15 = attackGraph.getVertexFromId(15);
+        final List<List<Vertex>> expected = attackGraph.getExistingAttackPathsBetween(vertex1, vertex15);
+
+        //Each thread enumerates the paths with its own stack and taboo marks
+        final boolean[] identical = new boolean[4];
+        Thread[] threads = new Thread[identical.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        boolean result = true;
+                        for (int k = 0; k < 1000; k++) {
+                            result &= expected.equals(attackGraph.getExistingAttackPathsBetween(vertex1, vertex15));
+                        }
+                        identical[thread] = result;
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (boolean result : identical) {
+            Assert.assertTrue(result);
+        }
+    }
+
+    @Test
+    public void testGenerateAttackPaths() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        Vertex vertex15 = attackGraph.getVertexFromId(15);
+
+        Iterator<AttackPath> attackPaths = attackGraph.getPossibleAttackPathsToGoTo(vertex15);
+        AttackPath first = attackPaths.next();
+        Assert.assertEquals(15, first.vertices.size());
+        Assert.assertFalse(first.vertices.containsKey(17));
+        AttackPath second = attackPaths.next();
+        Assert.assertSame(vertex15, second.getGoal());
+        Assert.assertEquals(new HashSet<Integer>(Arrays.asList(1, 16, 17, 13, 14, 10, 11, 15)), second.vertices.keySet());
+        Assert.assertNotNull(second.getArc(second.vertices.get(17), second.vertices.get(13)));
+        Assert.assertFalse(attackPaths.hasNext());
+        Assert.assertEquals(second.vertices, second.getFragment().getVertices());
+        Assert.assertEquals(7, second.arcs.size());
+
+        List<AttackPath> generatedAttackPaths = attackGraph.generateAttackPaths();
+        Assert.assertEquals(3, generatedAttackPaths.size());
+        for (AttackPath attackPath : generatedAttackPaths) {
+            Assert.assertEquals(attackPath.getFragment().getVertices(), attackPath.vertices);
+        }
+        Assert.assertEquals(2, attackGraph.generateAttackPaths(new AttackPathGenerationOptions(2, 0)).size());
+    }
+
+    @Test
+    public void testGenerateAttackPathsInParallel() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        List<AttackPath> expected = attackGraph.generateAttackPaths();
+
+        AttackPathGenerationOptions options = new AttackPathGenerationOptions();
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        options.setForkJoinPool(forkJoinPool);
+        try {
+            List<AttackPath> result = attackGraph.generateAttackPaths(options);
+            Assert.assertEquals(expected.size(), result.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(expected.get(i).vertices.keySet(), result.get(i).vertices.keySet());
+                Assert.assertEquals(expected.get(i).arcs.size(), result.get(i).arcs.size());
+                Assert.assertEquals(expected.get(i).scoring, result.get(i).scoring, 0.);
+            }
+            Assert.assertEquals(0, attackGraph.getNumberOfDuplicateAttackPaths());
+
+            //The maximum number of attack paths gives the first attack paths of the sequential generation
+            options.setMaximumNumberOfAttackPaths(2);
+            result = attackGraph.generateAttackPaths(options);
+            Assert.assertEquals(2, result.size());
+            for (int i = 0; i < result.size(); i++) {
+                Assert.assertEquals(expected.get(i).getFingerprint(), result.get(i).getFingerprint());
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDuplicateAttackPathsInParallel() throws Exception {
+        //The web server can also be exploited directly, and give access to the exploitation of the database
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        attackGraph.addArc(new Arc(attackGraph.getVertexFromId(5), attackGraph.getVertexFromId(8)));
+        attackGraph.addArc(new Arc(attackGraph.getVertexFromId(8), attackGraph.getVertexFromId(14)));
+        List<AttackPath> expected = attackGraph.generateAttackPaths();
+        Assert.assertEquals(7, expected.size());
+        Assert.assertEquals(1, attackGraph.getNumberOfDuplicateAttackPaths());
+
+        //The duplicates do not count toward the maximum number of attack paths, in both generations
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            for (int maximumNumberOfAttackPaths = 1; maximumNumberOfAttackPaths <= expected.size(); maximumNumberOfAttackPaths++) {
+                AttackPathGenerationOptions options = new AttackPathGenerationOptions(maximumNumberOfAttackPaths, 0);
+                options.setForkJoinPool(forkJoinPool);
+                List<AttackPath> result = attackGraph.generateAttackPaths(options);
+                Assert.assertEquals(maximumNumberOfAttackPaths, result.size());
+                for (int i = 0; i < result.size(); i++) {
+                    Assert.assertEquals(expected.get(i).getFingerprint(), result.get(i).getFingerprint());
+                }
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testAttackPathFingerprint() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        List<AttackPath> attackPaths = attackGraph.generateAttackPaths();
+        Assert.assertEquals(3, attackPaths.size());
+        Assert.assertEquals(0, attackGraph.getNumberOfDuplicateAttackPaths());
+
+        //The fingerprint of a lazy attack path does not materialize it, and does not change when it is materialized
+        AttackPath lazy = attackGraph.getPossibleAttackPathsToGoTo(attackGraph.getVertexFromId(15)).next();
+        AttackPathFingerprint fingerprint = lazy.getFingerprint();
+        Assert.assertEquals(fingerprint, AttackPathFingerprint.of(lazy));
+        Assert.assertEquals(fingerprint, lazy.getFingerprint());
+
+        //The fingerprint does not depend on the order of the vertices and arcs
+        AttackPath reversed = new AttackPath();
+        for (int i = lazy.arcs.size() - 1; i >= 0; i--) {
+            Arc arc = lazy.arcs.get(i);
+            reversed.vertices.put(arc.destination.id, arc.destination);
+            reversed.vertices.put(arc.source.id, arc.source);
+            reversed.addArc(arc);
+        }
+        Assert.assertEquals(fingerprint, reversed.getFingerprint());
+        Assert.assertEquals(lazy, reversed);
+        Assert.assertEquals(lazy.hashCode(), reversed.hashCode());
+        Assert.assertNotEquals(attackPaths.get(0), attackPaths.get(1));
+
+        reversed.deleteVertex(reversed.getVertexFromId(10));
+        Assert.assertNotEquals(fingerprint, reversed.getFingerprint());
+
+        List<AttackPath> withDuplicates = new ArrayList<AttackPath>(attackPaths);
+        withDuplicates.add(1, attackPaths.get(0).clone());
+        withDuplicates.add(attackPaths.get(0));
+        Assert.assertEquals(2, AttackPath.removeDuplicates(withDuplicates));
+        Assert.assertEquals(attackPaths, withDuplicates);
+
+        withDuplicates.add(0, attackPaths.get(1).clone());
+        Assert.assertEquals(1, AttackPath.sortAndRemoveDuplicates(withDuplicates));
+        Assert.assertEquals(new HashSet<AttackPath>(attackPaths), new HashSet<AttackPath>(withDuplicates));
+        for (int i = 1; i < withDuplicates.size(); i++) {
+            Assert.assertTrue(withDuplicates.get(i - 1).scoring >= withDuplicates.get(i).scoring);
+        }
+    }
+
+    @Test
+    public void testScoreAttackGraphInMemory() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        //The attack paths to the two execCode vertices, without any file
+        List<AttackPath> attackPaths = attackGraph.scoreAttackGraphAndGetAttackPaths(null, attackGraph.getNumberOfVertices());
+        Assert.assertEquals(2, attackPaths.size());
+        Assert.assertTrue(attackPaths.get(0).scoring >= attackPaths.get(1).scoring);
+        TreeSet<Integer> goals = new TreeSet<Integer>();
+        for (AttackPath attackPath : attackPaths) {
+            goals.add(attackPath.getGoal().id);
+        }
+        Assert.assertEquals(new TreeSet<Integer>(Arrays.asList(8, 15)), goals);
+
+        //The debug file contains the same attack paths
+        File file = File.createTempFile("scored-attack-paths", ".xml");
+        file.deleteOnExit();
+        Assert.assertEquals(attackPaths, attackGraph.scoreAttackGraphAndGetAttackPaths(file.getAbsolutePath(), attackGraph.getNumberOfVertices()));
+        List<AttackPath> loadedAttackPaths = AttackPath.loadAttackPathsFromFile(file.getAbsolutePath(), attackGraph);
+        Assert.assertEquals(attackPaths, loadedAttackPaths);
+        for (int i = 0; i < attackPaths.size(); i++) {
+            Assert.assertEquals(attackPaths.get(i).scoring, loadedAttackPaths.get(i).scoring, 0);
+        }
+    }
+
+    @Test
+    public void testBestAttackPaths() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+
+        //The direct access to the database requires only the database vulnerability (scoring 1/2)
+        AttackPathGenerationOptions options = new AttackPathGenerationOptions();
+        options.setBestAttackPaths(1, true);
+        List<AttackPath> best = attackGraph.generateAttackPaths(options);
+        Assert.assertEquals(2, best.size());
+        for (AttackPath attackPath : best) {
+            Assert.assertEquals(0.5, attackPath.scoring, 0.);
+            Assert.assertFalse(attackPath.vertices.containsKey(4) && attackPath.vertices.containsKey(10));
+        }
+
+        options.setBestAttackPaths(3, false);
+        best = attackGraph.generateAttackPaths(options);
+        Assert.assertEquals(3, best.size());
+        Assert.assertEquals(0.25, best.get(2).scoring, 0.);
+        Assert.assertTrue(best.get(2).vertices.keySet().containsAll(Arrays.asList(4, 10, 15)));
+
+        //The duplicate attack paths do not count toward the number of best attack paths
+        attackGraph.addArc(new Arc(attackGraph.getVertexFromId(5), attackGraph.getVertexFromId(8)));
+        attackGraph.addArc(new Arc(attackGraph.getVertexFromId(8), attackGraph.getVertexFromId(14)));
+        Set<AttackPathFingerprint> expected = new HashSet<AttackPathFingerprint>();
+        for (AttackPath attackPath : attackGraph.generateAttackPaths()) {
+            expected.add(attackPath.getFingerprint());
+        }
+        Assert.assertEquals(7, expected.size());
+        options.setBestAttackPaths(expected.size(), false);
+        best = attackGraph.generateAttackPaths(options);
+        Assert.assertEquals(1, attackGraph.getNumberOfDuplicateAttackPaths());
+        Set<AttackPathFingerprint> result = new HashSet<AttackPathFingerprint>();
+        for (AttackPath attackPath : best) {
+            result.add(attackPath.getFingerprint());
+        }
+        Assert.assertEquals(expected, result);
+    }
+
+    @Test
+    public void testClone() throws Exception {
+        MulvalAttackGraph attackGraph = createTestAttackGraph();
+        AttackGraph copy = attackGraph.clone();
+        copy.deleteVertex(copy.getVertexFromId(16));
+
+        Assert.assertFalse(copy.vertices.containsKey(17));
+        Assert.assertTrue(attackGraph.vertices.containsKey(17));
+        Assert.assertArrayEquals(new Integer[]{12}, ids(copy.getVertexFromId(13).parents));
+        Assert.assertArrayEquals(new Integer[]{12, 17}, ids(attackGraph.getParents(attackGraph.getVertexFromId(13))));
+    }
+}
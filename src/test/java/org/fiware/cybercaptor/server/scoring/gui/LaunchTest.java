@@ -0,0 +1,110 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.scoring.gui;
+
+import org.fiware.cybercaptor.server.attackgraph.AttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.AttackGraphTest;
+import org.fiware.cybercaptor.server.attackgraph.AttackPath;
+import org.fiware.cybercaptor.server.scoring.math.AttackPathExplorerTest;
+import org.fiware.cybercaptor.server.scoring.types.Graph;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class to test the scoring and the saving of the attack paths of the scoring function.
+ */
+public class LaunchTest {
+
+    /**
+     * @param attackPaths the attack paths of the test attack graph
+     * @return many copies of these attack paths, with unreachable targets, so that the scoring is split in tasks
+     */
+    private static Graph[] repeat(Graph[] attackPaths) {
+        Graph[] result = new Graph[100];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = i % 7 == 3 ? null : attackPaths[i % attackPaths.length];
+        }
+        return result;
+    }
+
+    @Test
+    public void testScoreAttackPathsInParallel() throws Exception {
+        Graph[] attackPaths = repeat(Launch.generateAttackPaths(
+                AttackPathExplorerTest.createGraphToScore(AttackGraphTest.createTestAttackGraph())));
+        double[] scores = Launch.scoreAttackPaths(attackPaths, null);
+        Assert.assertEquals(attackPaths.length, scores.length);
+        for (int i = 0; i < attackPaths.length; i++) {
+            if (attackPaths[i] == null)
+                Assert.assertTrue(Double.isNaN(scores[i]));
+            else
+                Assert.assertEquals(Launch.attackPathScore(attackPaths[i]), scores[i], 0);
+        }
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                Assert.assertArrayEquals(scores, Launch.scoreAttackPaths(attackPaths, forkJoinPool), 0);
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+        Assert.assertEquals(0, Launch.scoreAttackPaths(null, null).length);
+    }
+
+    @Test
+    public void testSaveToXmlFile() throws Exception {
+        AttackGraph attackGraph = AttackGraphTest.createTestAttackGraph();
+        Graph[] attackPaths = repeat(Launch.generateAttackPaths(AttackPathExplorerTest.createGraphToScore(attackGraph)));
+        double[] scores = Launch.scoreAttackPaths(attackPaths, null);
+        List<AttackPath> expected = AttackPath.loadAttackPathsFromScoring(attackPaths, scores, attackGraph);
+        Assert.assertEquals(2, expected.size());
+
+        File file = File.createTempFile("scoring-attack-paths", ".xml");
+        file.deleteOnExit();
+        try {
+            Launch.saveToXmlFile(file.getAbsolutePath(), attackPaths, scores);
+            assertSameAttackPaths(expected, AttackPath.loadAttackPathsFromFile(file.getAbsolutePath(), attackGraph));
+
+            //The attack paths are scored when the scores are not given
+            Launch.saveToXmlFile(file.getAbsolutePath(), attackPaths);
+            assertSameAttackPaths(expected, AttackPath.loadAttackPathsFromFile(file.getAbsolutePath(), attackGraph));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * @param expected the expected attack paths
+     * @param actual   the actual attack paths
+     */
+    private static void assertSameAttackPaths(List<AttackPath> expected, List<AttackPath> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getFingerprint(), actual.get(i).getFingerprint());
+            Assert.assertEquals(expected.get(i).vertices.keySet(), actual.get(i).vertices.keySet());
+            Assert.assertEquals(expected.get(i).scoring, actual.get(i).scoring, 0);
+        }
+    }
+}
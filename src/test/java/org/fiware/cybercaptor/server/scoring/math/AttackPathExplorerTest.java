@@ -0,0 +1,129 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.scoring.math;
+
+import org.fiware.cybercaptor.server.attackgraph.AttackGraph;
+import org.fiware.cybercaptor.server.attackgraph.AttackGraphTest;
+import org.fiware.cybercaptor.server.scoring.types.Arc;
+import org.fiware.cybercaptor.server.scoring.types.Graph;
+import org.fiware.cybercaptor.server.scoring.types.Vertex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to test the exploration of the attack paths against the recursive exploration it replaces.
+ */
+@SuppressWarnings("deprecation")
+public class AttackPathExplorerTest {
+
+    /**
+     * @param attackGraph an attack graph
+     * @return the graph given to the scoring function for this attack graph (arcs in the MulVAL order)
+     */
+    public static Graph createGraphToScore(AttackGraph attackGraph) {
+        List<Vertex> vertices = new ArrayList<Vertex>();
+        for (org.fiware.cybercaptor.server.attackgraph.Vertex vertex : attackGraph.vertices.values()) {
+            vertices.add(new Vertex(vertex.id, vertex.fact.factString, vertex.mulvalMetric,
+                    vertex.type.toString().toUpperCase()));
+        }
+        List<Arc> arcs = new ArrayList<Arc>();
+        for (org.fiware.cybercaptor.server.attackgraph.Arc arc : attackGraph.arcs) {
+            arcs.add(new Arc(arc.destination.id, arc.source.id));
+        }
+        return new Graph(arcs.toArray(new Arc[arcs.size()]), vertices.toArray(new Vertex[vertices.size()]));
+    }
+
+    /**
+     * @param attackGraph an attack graph
+     * @param source      the id of the source vertex of the arc to add
+     * @param destination the id of the destination vertex of the arc to add
+     */
+    private static void addArc(AttackGraph attackGraph, int source, int destination) throws Exception {
+        attackGraph.addArc(new org.fiware.cybercaptor.server.attackgraph.Arc(attackGraph.getVertexFromId(source),
+                attackGraph.getVertexFromId(destination)));
+    }
+
+    /**
+     * Check that the explorer gives the same attack paths as the recursive exploration, for all the targets
+     *
+     * @param graph the graph to explore
+     * @return the number of attack paths found
+     */
+    private static int assertSameAttackPaths(Graph graph) {
+        Vertex[] targets = graph.getVerticesOnTypeAndFact("OR");
+        Graph[] attackPaths = AttackPaths.main(targets, graph);
+        Assert.assertEquals(targets.length, attackPaths.length);
+        int numberOfAttackPaths = 0;
+        for (int i = 0; i < targets.length; i++) {
+            Graph expected = AttackPaths.exploreAttackPath2(targets[i], null, graph);
+            assertSameGraph(expected, attackPaths[i]);
+            if (expected != null)
+                numberOfAttackPaths++;
+        }
+        return numberOfAttackPaths;
+    }
+
+    /**
+     * @param expected the expected graph, or null
+     * @param actual   the actual graph
+     */
+    private static void assertSameGraph(Graph expected, Graph actual) {
+        if (expected == null) {
+            Assert.assertNull(actual);
+            return;
+        }
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.getArcs().length, actual.getArcs().length);
+        for (int k = 0; k < expected.getArcs().length; k++) {
+            Assert.assertEquals(expected.getArcs()[k].getSource(), actual.getArcs()[k].getSource());
+            Assert.assertEquals(expected.getArcs()[k].getDestination(), actual.getArcs()[k].getDestination());
+        }
+        Assert.assertEquals(expected.getVertices().length, actual.getVertices().length);
+        for (int i = 0; i < expected.getVertices().length; i++) {
+            Assert.assertEquals(expected.getVertices()[i].getID(), actual.getVertices()[i].getID());
+            Assert.assertEquals(expected.getVertices()[i].getType(), actual.getVertices()[i].getType());
+            Assert.assertEquals(expected.getVertices()[i].getFact(), actual.getVertices()[i].getFact());
+        }
+    }
+
+    @Test
+    public void testSameAttackPaths() throws Exception {
+        AttackGraph attackGraph = AttackGraphTest.createTestAttackGraph();
+        Assert.assertEquals(2, assertSameAttackPaths(createGraphToScore(attackGraph)));
+
+        //The multi-hop access also needs the execution of code on the database and also gives an access to the web
+        //server : two cycles through the "AND" vertex 12
+        addArc(attackGraph, 15, 12);
+        addArc(attackGraph, 12, 6);
+        Assert.assertEquals(2, assertSameAttackPaths(createGraphToScore(attackGraph)));
+
+        //Without the direct access to the database, the database can only be reached through a cycle
+        attackGraph.deleteArc(attackGraph.getVertexFromId(17), attackGraph.getVertexFromId(13));
+        Assert.assertEquals(1, assertSameAttackPaths(createGraphToScore(attackGraph)));
+
+        //Without the direct access to the web server, neither
+        attackGraph.deleteArc(attackGraph.getVertexFromId(5), attackGraph.getVertexFromId(6));
+        Assert.assertEquals(0, assertSameAttackPaths(createGraphToScore(attackGraph)));
+    }
+}
@@ -0,0 +1,110 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.scoring.math;
+
+import org.fiware.cybercaptor.server.scoring.types.Arc;
+import org.fiware.cybercaptor.server.scoring.types.Graph;
+import org.fiware.cybercaptor.server.scoring.types.Vertex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Class to test the merge of the attack paths.
+ */
+public class AttackPathsTest {
+
+    /**
+     * The merge of two graphs with {@link AttackPaths#existsInSet}, copying the arrays for each added element
+     *
+     * @param successor   the first graph
+     * @param predecessor the second graph
+     * @return the merged graph
+     */
+    private static Graph mergeGraphsWithLinearScans(Graph successor, Graph predecessor) {
+        if (successor == null) {
+            return predecessor;
+        }
+        if (predecessor == null) {
+            return successor;
+        }
+        Arc[] ArcsBuffer = new Arc[successor.getArcs().length];
+        Vertex[] VertexBuffer = new Vertex[successor.getVertices().length];
+        System.arraycopy(successor.getArcs(), 0, ArcsBuffer, 0, successor.getArcs().length);
+        for (int k = 0; k < predecessor.getArcs().length; k++) {
+            if (AttackPaths.existsInSet(predecessor.getArcs()[k], successor.getArcs()) == 1) {
+                Arc[] TempBuffer = new Arc[ArcsBuffer.length + 1];
+                System.arraycopy(ArcsBuffer, 0, TempBuffer, 0, ArcsBuffer.length);
+                TempBuffer[TempBuffer.length - 1] = predecessor.getArcs()[k];
+                ArcsBuffer = TempBuffer;
+            }
+        }
+        System.arraycopy(successor.getVertices(), 0, VertexBuffer, 0, successor.getVertices().length);
+        int[] VertexIDs = new int[successor.getVertices().length];
+        for (int h = 0; h < successor.getVertices().length; h++) {
+            VertexIDs[h] = successor.getVertices()[h].getID();
+        }
+        for (int k = 0; k < predecessor.getVertices().length; k++) {
+            if (AttackPaths.existsInSet(predecessor.getVertices()[k].getID(), VertexIDs) == 1) {
+                Vertex[] TempBuffer = new Vertex[VertexBuffer.length + 1];
+                System.arraycopy(VertexBuffer, 0, TempBuffer, 0, VertexBuffer.length);
+                TempBuffer[TempBuffer.length - 1] = predecessor.getVertices()[k];
+                VertexBuffer = TempBuffer;
+            }
+        }
+        return new Graph(ArcsBuffer, VertexBuffer);
+    }
+
+    /**
+     * @param random the random generator
+     * @return a random graph, with ids between -3 and 8 (0 and negative ids included), duplicated vertex ids and
+     * duplicated arcs
+     */
+    private static Graph createRandomGraph(Random random) {
+        Vertex[] vertices = new Vertex[random.nextInt(8)];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = new Vertex(random.nextInt(12) - 3, "fact" + i, 0, "OR");
+        }
+        Arc[] arcs = new Arc[random.nextInt(10)];
+        for (int k = 0; k < arcs.length; k++) {
+            arcs[k] = new Arc(random.nextInt(12) - 3, random.nextInt(12) - 3);
+        }
+        return new Graph(arcs, vertices);
+    }
+
+    @Test
+    public void testMergeGraphs() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            Graph successor = createRandomGraph(random);
+            Graph predecessor = createRandomGraph(random);
+            Graph expected = mergeGraphsWithLinearScans(successor, predecessor);
+            Graph actual = AttackPaths.mergeGraphs(successor, predecessor);
+            Assert.assertArrayEquals(expected.getArcs(), actual.getArcs());
+            Assert.assertArrayEquals(expected.getVertices(), actual.getVertices());
+        }
+        Graph graph = createRandomGraph(random);
+        Assert.assertSame(graph, AttackPaths.mergeGraphs(graph, null));
+        Assert.assertSame(graph, AttackPaths.mergeGraphs(null, graph));
+        Assert.assertNull(AttackPaths.mergeGraphs(null, null));
+    }
+}
@@ -0,0 +1,93 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.scoring.math;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Class to test the set of primitive longs used to merge graphs.
+ */
+public class LongHashSetTest {
+
+    @Test
+    public void testZeroAndNegativeKeys() {
+        LongHashSet set = new LongHashSet(0);
+        Assert.assertFalse(set.contains(0));
+        Assert.assertTrue(set.add(0));
+        Assert.assertFalse(set.add(0));
+        Assert.assertTrue(set.contains(0));
+
+        Assert.assertFalse(set.contains(-1));
+        Assert.assertTrue(set.add(-1));
+        Assert.assertTrue(set.add(Long.MIN_VALUE));
+        Assert.assertTrue(set.add(Integer.MIN_VALUE));
+        Assert.assertFalse(set.add(-1));
+        Assert.assertTrue(set.contains(-1));
+        Assert.assertTrue(set.contains(Long.MIN_VALUE));
+        Assert.assertTrue(set.contains(Integer.MIN_VALUE));
+        Assert.assertFalse(set.contains(1));
+        Assert.assertFalse(set.contains(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testArcKeys() {
+        //A negative destination must not overwrite the bits of the source
+        Assert.assertNotEquals(LongHashSet.arcKey(1, -1), LongHashSet.arcKey(0, -1));
+        Assert.assertNotEquals(LongHashSet.arcKey(-1, -1), LongHashSet.arcKey(0, -1));
+        Assert.assertNotEquals(LongHashSet.arcKey(1, 2), LongHashSet.arcKey(2, 1));
+        Assert.assertEquals(0, LongHashSet.arcKey(0, 0));
+
+        int[] ids = {0, 1, 2, -1, -2, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        Set<Long> keys = new HashSet<Long>();
+        LongHashSet set = new LongHashSet(1);
+        for (int source : ids) {
+            for (int destination : ids) {
+                Assert.assertTrue(keys.add(LongHashSet.arcKey(source, destination)));
+                Assert.assertTrue(set.add(LongHashSet.arcKey(source, destination)));
+            }
+        }
+        for (int source : ids) {
+            for (int destination : ids) {
+                Assert.assertTrue(set.contains(LongHashSet.arcKey(source, destination)));
+                Assert.assertFalse(set.add(LongHashSet.arcKey(source, destination)));
+            }
+        }
+    }
+
+    @Test
+    public void testGrowth() {
+        Random random = new Random(7);
+        LongHashSet set = new LongHashSet(2);
+        Set<Long> expected = new HashSet<Long>();
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(30000) - 10000;
+            Assert.assertEquals(expected.add(key), set.add(key));
+        }
+        for (long key = -10000; key < 20000; key++) {
+            Assert.assertEquals(expected.contains(key), set.contains(key));
+        }
+    }
+}
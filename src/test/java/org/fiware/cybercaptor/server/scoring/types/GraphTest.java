@@ -0,0 +1,143 @@
+/****************************************************************************************
+ * This file is part of FIWARE CyberCAPTOR,                                             *
+ * instance of FIWARE Cyber Security Generic Enabler                                    *
+ * Copyright (C) 2012-2015  Thales Services S.A.S.,                                     *
+ * 20-22 rue Grande Dame Rose 78140 VELIZY-VILACOUBLAY FRANCE                           *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is free software; you can redistribute                            *
+ * it and/or modify it under the terms of the GNU General Public License                *
+ * as published by the Free Software Foundation; either version 3 of the License,       *
+ * or (at your option) any later version.                                               *
+ *                                                                                      *
+ * FIWARE CyberCAPTOR is distributed in the hope                                        *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied           *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                                         *
+ *                                                                                      *
+ * You should have received a copy of the GNU General Public License                    *
+ * along with FIWARE CyberCAPTOR.                                                       *
+ * If not, see <http://www.gnu.org/licenses/>.                                          *
+ ****************************************************************************************/
+package org.fiware.cybercaptor.server.scoring.types;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Class to test the indexed queries of the scoring graph against the linear scans.
+ */
+@SuppressWarnings("deprecation")
+public class GraphTest {
+
+    private static final String[] TYPES = {"LEAF", "AND", "OR", "UNKNOWN"};
+
+    /**
+     * @return a small graph with a duplicated vertex id and arcs to a vertex that is not in the graph
+     */
+    private static Graph createTestGraph() {
+        Vertex[] vertices = {
+                new Vertex(1, "execCode(web,root)", 0, "OR"),
+                new Vertex(2, "RULE 1 (remote exploit)", 0, "AND"),
+                new Vertex(3, "vulExists(web,'CVE-2014-0001')", 0, "LEAF"),
+                new Vertex(4, "netAccess(web,tcp,80)", 0, "OR"),
+                new Vertex(5, "hacl(internet,web,tcp,80)", 0, "LEAF"),
+                new Vertex(2, "execCode(db,root)", 0, "OR"),
+                new Vertex(6, "execCode(db,user)", 0, "OR")
+        };
+        Arc[] arcs = {
+                new Arc(1, 2), new Arc(2, 3), new Arc(2, 4), new Arc(4, 5), new Arc(2, 9), new Arc(6, 2), new Arc(4, 2)
+        };
+        return new Graph(arcs, vertices);
+    }
+
+    /**
+     * @param random           the random generator
+     * @param numberOfVertices the number of vertices
+     * @param numberOfArcs     the number of arcs
+     * @return a random graph, with duplicated arcs, cycles and arcs to vertices that are not in the graph
+     */
+    private static Graph createRandomGraph(Random random, int numberOfVertices, int numberOfArcs) {
+        Vertex[] vertices = new Vertex[numberOfVertices];
+        for (int i = 0; i < numberOfVertices; i++) {
+            String fact = random.nextBoolean() ? "execCode(h" + i + ",root)" : "netAccess(h" + i + ",tcp,80)";
+            vertices[i] = new Vertex(i + 1, fact, 0, TYPES[random.nextInt(TYPES.length - 1)]);
+        }
+        Arc[] arcs = new Arc[numberOfArcs];
+        for (int k = 0; k < numberOfArcs; k++) {
+            arcs[k] = new Arc(random.nextInt(numberOfVertices + 2), random.nextInt(numberOfVertices + 2));
+        }
+        return new Graph(arcs, vertices);
+    }
+
+    /**
+     * Check every indexed query of a graph against the linear scans of the deprecated static methods
+     *
+     * @param graph the graph
+     */
+    private static void assertSameAsLinearScans(Graph graph) {
+        Arc[] arcs = graph.getArcs();
+        Vertex[] vertices = graph.getVertices();
+        for (Vertex vertex : vertices) {
+            int id = vertex.getID();
+            Assert.assertSame(Graph.getVertexOnID(vertices, id), graph.getVertexOnID(id));
+            Assert.assertArrayEquals(Graph.getPredecessors(arcs, vertices, id), graph.getPredecessors(id));
+            Assert.assertEquals(Graph.getIngoingArcsNumber(arcs, id), graph.getIngoingArcsNumber(id), 0);
+            Assert.assertEquals(Graph.getOutgoingArcsNumber(arcs, id), graph.getOutgoingArcsNumber(id), 0);
+
+            //The positional accessors give the same predecessors
+            int[] predecessorIds = Graph.getPredecessors(arcs, id);
+            int position = graph.getPosition(id);
+            Assert.assertSame(graph.getVertexOnID(id), vertices[position]);
+            Assert.assertEquals(predecessorIds == null ? 0 : predecessorIds.length,
+                    graph.getPredecessorsEnd(position) - graph.getPredecessorsStart(position));
+            for (int k = graph.getPredecessorsStart(position); k < graph.getPredecessorsEnd(position); k++) {
+                int predecessor = graph.getPredecessor(k);
+                Vertex expected = Graph.getVertexOnID(vertices, predecessorIds[k - graph.getPredecessorsStart(position)]);
+                Assert.assertSame(expected, predecessor < 0 ? null : vertices[predecessor]);
+            }
+        }
+        Assert.assertNull(graph.getVertexOnID(-1));
+        Assert.assertNull(graph.getPredecessors(-1));
+        Assert.assertEquals(-1, graph.getPosition(-1));
+        for (String type : TYPES) {
+            Assert.assertArrayEquals(Graph.getVerticesOnType(vertices, type), graph.getVerticesOnType(type));
+            Assert.assertArrayEquals(Graph.getVerticesOnTypeAndFact(vertices, type), graph.getVerticesOnTypeAndFact(type));
+        }
+    }
+
+    @Test
+    public void testIndexedQueries() {
+        Graph graph = createTestGraph();
+        assertSameAsLinearScans(graph);
+
+        //The first vertex of a duplicated id is used, the vertices that are not in the graph are null predecessors
+        Assert.assertEquals("RULE 1 (remote exploit)", graph.getPredecessors(6)[0].getFact());
+        Assert.assertEquals(3, graph.getPredecessors(2).length);
+        Assert.assertNull(graph.getPredecessors(2)[2]);
+        Assert.assertNull(graph.getPredecessors(3));
+        Assert.assertNull(graph.getVerticesOnType("UNKNOWN"));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            assertSameAsLinearScans(createRandomGraph(random, 1 + random.nextInt(30), random.nextInt(80)));
+        }
+    }
+
+    @Test
+    public void testIndexDroppedBySetters() {
+        Graph graph = createTestGraph();
+        Assert.assertEquals(3, graph.getIngoingArcsNumber(2));
+
+        graph.setArcs(new Arc[]{new Arc(2, 3)});
+        Assert.assertEquals(1, graph.getIngoingArcsNumber(2));
+        assertSameAsLinearScans(graph);
+
+        graph.setVertices(new Vertex[]{new Vertex(3, "execCode(db,root)", 0, "OR")});
+        Assert.assertNull(graph.getVertexOnID(2));
+        Assert.assertEquals(0, graph.getIngoingArcsNumber(2));
+        Assert.assertEquals(1, graph.getOutgoingArcsNumber(3));
+        assertSameAsLinearScans(graph);
+    }
+}